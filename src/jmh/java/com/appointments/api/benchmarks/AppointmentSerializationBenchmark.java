@@ -0,0 +1,94 @@
+package com.appointments.api.benchmarks;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.appointments.api.JacksonConfiguration;
+import com.appointments.api.entities.Appointment;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Serialization and deserialization of appointment lists with the same
+ * ObjectMapper the API uses (JSR-310 module and spring.jackson.date-format
+ * from application.properties, customized by JacksonConfiguration).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AppointmentSerializationBenchmark {
+
+	@Param({ "10", "1000", "10000" })
+	private int size;
+
+	private ConfigurableApplicationContext context;
+
+	private ObjectMapper mapper;
+
+	private JavaType listType;
+
+	private List<Appointment> appointments;
+
+	private byte[] json;
+
+	@Setup
+	public void setUp() throws Exception {
+
+		context = new SpringApplicationBuilder(JacksonAutoConfiguration.class, JacksonConfiguration.class).web(false).run();
+		mapper = context.getBean(ObjectMapper.class);
+		listType = mapper.getTypeFactory().constructCollectionType(List.class, Appointment.class);
+
+		appointments = new ArrayList<>(size);
+		final LocalDateTime start = LocalDateTime.of(2017, 2, 13, 13, 0);
+
+		for (int i = 0; i < size; i++) {
+			final Appointment appointment = new Appointment();
+			appointment.setId(new ObjectId().toHexString());
+			appointment.setPatientId(new ObjectId().toHexString());
+			appointment.setStart(start.plusHours(i));
+			appointment.setEnd(start.plusHours(i).plusMinutes(45));
+			appointment.setRate(i % 3 == 0 ? null : i % 11);
+			appointments.add(appointment);
+		}
+
+		json = mapper.writeValueAsBytes(appointments);
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public byte[] serialize() throws Exception {
+		return mapper.writeValueAsBytes(appointments);
+	}
+
+	@Benchmark
+	public List<Appointment> deserialize() throws Exception {
+		return mapper.readValue(json, listType);
+	}
+
+}
@@ -0,0 +1,148 @@
+package com.appointments.api.benchmarks;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.appointments.api.Application;
+import com.appointments.api.dtos.InputRate;
+import com.appointments.api.entities.Appointment;
+import com.appointments.api.entities.Patient;
+import com.appointments.api.repositories.AppointmentRepository;
+import com.appointments.api.repositories.PatientRepository;
+import com.appointments.api.service.AppointmentService;
+
+/**
+ * AppointmentService hot paths against the embedded Mongo of profile-dev.
+ * 
+ * The trial seeds "patients" patients with one appointment per working day
+ * from two weeks ago to two weeks ahead, like AbstractTest.createAppointments.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AppointmentServiceBenchmark {
+
+	@Param({ "1000" })
+	private int patients;
+
+	private ConfigurableApplicationContext context;
+
+	private AppointmentService appointmentService;
+
+	private List<String> patientIds;
+
+	private LocalDateTime nextMonday;
+
+	private LocalDateTime nextSunday;
+
+	// spreads the created appointments far in the future, so they never overlap
+	private final AtomicLong createdSlots = new AtomicLong();
+
+	private LocalDateTime createdFrom;
+
+	@Setup
+	public void setUp() {
+
+		context = new SpringApplicationBuilder(Application.class).web(false).profiles("profile-dev").run();
+		appointmentService = context.getBean(AppointmentService.class);
+
+		final PatientRepository patientRepository = context.getBean(PatientRepository.class);
+		final AppointmentRepository appointmentRepository = context.getBean(AppointmentRepository.class);
+
+		patientIds = new ArrayList<>(patients);
+
+		final List<Patient> newPatients = new ArrayList<>(patients);
+		for (int i = 0; i < patients; i++) {
+			newPatients.add(new Patient("Name-" + i, "Surname-" + i));
+		}
+		patientRepository.insertUnordered(newPatients);
+		newPatients.forEach(patient -> patientIds.add(patient.getId()));
+
+		final LocalDateTime today = LocalDateTime.of(LocalDateTime.now().toLocalDate(), LocalTime.of(13, 0));
+		final List<Appointment> appointments = new ArrayList<>();
+
+		for (String patientId : patientIds) {
+			for (LocalDateTime day = today.minusWeeks(2); day.isBefore(today.plusWeeks(2)); day = day.plusDays(1)) {
+				if (day.getDayOfWeek() != DayOfWeek.SATURDAY && day.getDayOfWeek() != DayOfWeek.SUNDAY) {
+					appointments.add(appointment(patientId, day));
+				}
+			}
+		}
+		appointmentRepository.insertUnordered(appointments);
+
+		nextMonday = today.toLocalDate().atStartOfDay().with(TemporalAdjusters.next(DayOfWeek.MONDAY));
+		nextSunday = nextMonday.plusDays(6).with(LocalTime.MAX);
+		createdFrom = today.plusYears(1);
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public Appointment createAppointment() throws Exception {
+
+		final LocalDateTime start = createdFrom.plusMinutes(2 * createdSlots.getAndIncrement());
+		return appointmentService.createAppointment(appointment(randomPatient(), start));
+	}
+
+	@Benchmark
+	public Appointment getNextAppointmentByPatient() throws Exception {
+		return appointmentService.getNextAppointmentByPatient(randomPatient());
+	}
+
+	@Benchmark
+	public Appointment rateAppointment() throws Exception {
+
+		final InputRate inputRate = new InputRate();
+		inputRate.setRate(ThreadLocalRandom.current().nextInt(11));
+
+		return appointmentService.rateAppointment(randomPatient(), inputRate);
+	}
+
+	@Benchmark
+	public List<Appointment> getAppointmentsBetween() {
+		return appointmentService.getAppointmentsBetween(nextMonday, nextSunday);
+	}
+
+	private String randomPatient() {
+		return patientIds.get(ThreadLocalRandom.current().nextInt(patientIds.size()));
+	}
+
+	private static Appointment appointment(final String patientId, final LocalDateTime start) {
+
+		final Appointment appointment = new Appointment();
+		appointment.setPatientId(patientId);
+		appointment.setStart(start);
+		appointment.setEnd(start.plusMinutes(1));
+
+		return appointment;
+	}
+
+}
@@ -0,0 +1,134 @@
+package com.appointments.api.benchmarks;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+
+import com.appointments.api.JacksonConfiguration;
+import com.appointments.api.errors.ErrorResponses;
+import com.appointments.api.exceptions.ApiException;
+import com.appointments.api.exceptions.PatientNotFoundException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Cost of answering a "patient not found", thrown "depth" frames below the
+ * handler as it is below the servlet of a request.
+ *
+ * - stackTraceAndErrorAttributes: the previous error path, an exception
+ * capturing its stack trace and the error attributes of Spring Boot
+ * serialized for every response.
+ *
+ * - stacklessAndPrecomputedBody: an ApiException answered with the body
+ * precomputed by ErrorResponses.
+ *
+ * Run with the gc profiler (the default of the benchmarks profile) to compare
+ * the bytes allocated per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ErrorPathBenchmark {
+
+	private static final String REASON = "The Patient informed has not been found";
+
+	@Param({ "10", "100" })
+	private int depth;
+
+	private ConfigurableApplicationContext context;
+
+	private ObjectMapper mapper;
+
+	private ErrorResponses errorResponses;
+
+	@Setup
+	public void setUp() {
+
+		context = new SpringApplicationBuilder(JacksonAutoConfiguration.class, JacksonConfiguration.class,
+				ErrorResponses.class).web(false).run();
+		mapper = context.getBean(ObjectMapper.class);
+		errorResponses = context.getBean(ErrorResponses.class);
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public byte[] stackTraceAndErrorAttributes() throws Exception {
+
+		try {
+			throwAt(depth, true);
+			return null;
+
+		} catch (Exception e) {
+
+			final Map<String, Object> attributes = new LinkedHashMap<>();
+			attributes.put("timestamp", new Date());
+			attributes.put("status", 404);
+			attributes.put("error", "Not Found");
+			attributes.put("exception", e.getClass().getName());
+			attributes.put("message", e.getMessage());
+			attributes.put("path", "/api/v1/patients/58a075d93be8482fd8fec1f9/next-appointment");
+
+			return mapper.writeValueAsBytes(attributes);
+		}
+	}
+
+	@Benchmark
+	public byte[] stacklessAndPrecomputedBody() throws Exception {
+
+		try {
+			throwAt(depth, false);
+			return null;
+
+		} catch (ApiException e) {
+			return errorResponses.of(e).getBody().getBytes(MediaType.APPLICATION_JSON);
+		}
+	}
+
+	private static void throwAt(final int depth, final boolean stackTrace) throws Exception {
+
+		if (depth > 0) {
+			throwAt(depth - 1, stackTrace);
+		} else if (stackTrace) {
+			throw new StackTraceNotFoundException();
+		} else {
+			throw new PatientNotFoundException();
+		}
+	}
+
+	/**
+	 * PatientNotFoundException as it was before ApiException.
+	 */
+	private static class StackTraceNotFoundException extends Exception {
+
+		private static final long serialVersionUID = 1L;
+
+		StackTraceNotFoundException() {
+			super(REASON);
+		}
+	}
+
+}
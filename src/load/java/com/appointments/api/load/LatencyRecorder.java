@@ -0,0 +1,90 @@
+package com.appointments.api.load;
+
+import java.util.Arrays;
+
+/**
+ * Latencies of one endpoint recorded by one client thread.
+ * 
+ * Every client owns its recorders, so recording is not synchronized; they are
+ * only merged once the clients are done.
+ */
+class LatencyRecorder {
+
+	private long[] latencies = new long[1024];
+
+	private int count;
+
+	private int errors;
+
+	void record(final long latencyNanos, final boolean error) {
+
+		if (count == latencies.length) {
+			latencies = Arrays.copyOf(latencies, count * 2);
+		}
+		latencies[count++] = latencyNanos;
+
+		if (error) {
+			errors++;
+		}
+	}
+
+	void merge(final LatencyRecorder other) {
+
+		if (count + other.count > latencies.length) {
+			latencies = Arrays.copyOf(latencies, count + other.count);
+		}
+		System.arraycopy(other.latencies, 0, latencies, count, other.count);
+		count += other.count;
+		errors += other.errors;
+	}
+
+	int getCount() {
+		return count;
+	}
+
+	int getErrors() {
+		return errors;
+	}
+
+	/**
+	 * Sorts the recorded latencies, call it once before reading percentiles.
+	 */
+	void sort() {
+		Arrays.sort(latencies, 0, count);
+	}
+
+	/**
+	 * Nearest-rank percentile of the sorted latencies.
+	 * 
+	 * @param percentile
+	 *            between 0 and 100
+	 * @return latency in nanoseconds, 0 when nothing was recorded
+	 */
+	long percentile(final double percentile) {
+
+		if (count == 0) {
+			return 0;
+		}
+
+		final int rank = (int) Math.ceil(percentile / 100 * count);
+		return latencies[Math.max(rank, 1) - 1];
+	}
+
+	long max() {
+		return count == 0 ? 0 : latencies[count - 1];
+	}
+
+	double mean() {
+
+		if (count == 0) {
+			return 0;
+		}
+
+		double sum = 0;
+		for (int i = 0; i < count; i++) {
+			sum += latencies[i];
+		}
+		return sum / count;
+	}
+
+}
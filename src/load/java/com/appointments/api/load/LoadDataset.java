@@ -0,0 +1,104 @@
+package com.appointments.api.load;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.appointments.api.entities.Appointment;
+import com.appointments.api.entities.Patient;
+import com.appointments.api.repositories.AppointmentRepository;
+import com.appointments.api.repositories.PatientRepository;
+
+/**
+ * Patients with one appointment per week, half of the weeks in the past and
+ * half in the future, like AbstractTest.createAppointments but spread over
+ * the working days and hours so that no two appointments of a patient
+ * overlap.
+ */
+class LoadDataset {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(LoadDataset.class);
+
+	private static final int CHUNK_SIZE = 10000;
+
+	private final List<String> patientIds = new ArrayList<>();
+
+	// appointments created during the run take 2 minute slots far in the future
+	private final AtomicLong createdSlots = new AtomicLong();
+
+	private final LocalDateTime createdFrom = LocalDateTime.of(LocalDate.now().plusYears(5), LocalTime.MIDNIGHT);
+
+	void seed(final PatientRepository patientRepository, final AppointmentRepository appointmentRepository,
+			final int patients, final int weeks) {
+
+		final LocalDate firstMonday = LocalDate.now().minusWeeks(weeks / 2)
+				.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+
+		long appointments = 0;
+
+		for (int from = 0; from < patients; from += CHUNK_SIZE) {
+
+			final List<Patient> chunk = new ArrayList<>();
+			for (int i = from; i < Math.min(from + CHUNK_SIZE, patients); i++) {
+				chunk.add(new Patient("Name-" + i, "Surname-" + i));
+			}
+			patientRepository.insertUnordered(chunk);
+
+			final List<Appointment> weekly = new ArrayList<>();
+			for (Patient patient : chunk) {
+
+				patientIds.add(patient.getId());
+
+				final int patientIndex = patientIds.size() - 1;
+
+				for (int week = 0; week < weeks; week++) {
+
+					final LocalDateTime start = LocalDateTime.of(
+							firstMonday.plusWeeks(week).plusDays((patientIndex + week) % 5),
+							LocalTime.of(8 + (patientIndex + week) % 10, 0));
+
+					final Appointment appointment = new Appointment();
+					appointment.setPatientId(patient.getId());
+					appointment.setStart(start);
+					appointment.setEnd(start.plusMinutes(45));
+					weekly.add(appointment);
+
+					if (weekly.size() == CHUNK_SIZE) {
+						appointmentRepository.insertUnordered(weekly);
+						appointments += weekly.size();
+						weekly.clear();
+					}
+				}
+			}
+
+			appointmentRepository.insertUnordered(weekly);
+			appointments += weekly.size();
+
+			LOGGER.info("Seeded {} patients and {} appointments", patientIds.size(), appointments);
+		}
+	}
+
+	String patientId(final int index) {
+		return patientIds.get(index);
+	}
+
+	int getPatients() {
+		return patientIds.size();
+	}
+
+	/**
+	 * @return start of an appointment never overlapping another one
+	 */
+	LocalDateTime nextFreeStart() {
+		return createdFrom.plusMinutes(2 * createdSlots.getAndIncrement());
+	}
+
+}
@@ -0,0 +1,104 @@
+package com.appointments.api.load;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+
+/**
+ * The endpoints driven by the load test and how each request is built.
+ */
+enum LoadEndpoint {
+
+	CREATE_PATIENT("createPatient") {
+		@Override
+		LoadRequest request(final LoadDataset dataset, final Random random) {
+			return new LoadRequest("POST", "/api/v1/patients",
+					"{\"name\":\"Name-" + random.nextInt() + "\",\"surname\":\"Surname\"}");
+		}
+	},
+
+	CREATE_APPOINTMENT("createAppointment") {
+		@Override
+		LoadRequest request(final LoadDataset dataset, final Random random) {
+
+			final LocalDateTime start = dataset.nextFreeStart();
+
+			return new LoadRequest("POST", "/api/v1/appointments",
+					"{\"patientId\":\"" + randomPatient(dataset, random) + "\",\"start\":\"" + DATE_FORMAT.format(start)
+							+ "\",\"end\":\"" + DATE_FORMAT.format(start.plusMinutes(1)) + "\"}");
+		}
+	},
+
+	GET_APPOINTMENTS("getAppointments") {
+		@Override
+		LoadRequest request(final LoadDataset dataset, final Random random) {
+			return new LoadRequest("GET", "/api/v1/appointments?limit=50", null);
+		}
+	},
+
+	GET_NEXT_WEEK_APPOINTMENTS("getNextWeekAppointments") {
+		@Override
+		LoadRequest request(final LoadDataset dataset, final Random random) {
+			return new LoadRequest("GET", "/api/v1/appointments/next-week", null);
+		}
+	},
+
+	GET_NEXT_APPOINTMENT("getNextAppointment") {
+		@Override
+		LoadRequest request(final LoadDataset dataset, final Random random) {
+			return new LoadRequest("GET", "/api/v1/patients/" + randomPatient(dataset, random) + "/next-appointment",
+					null);
+		}
+	},
+
+	RATE_APPOINTMENT("rateAppointment") {
+		@Override
+		LoadRequest request(final LoadDataset dataset, final Random random) {
+			return new LoadRequest("PUT", "/api/v1/patients/" + randomPatient(dataset, random) + "/rate",
+					"{\"rate\":" + random.nextInt(11) + "}");
+		}
+	};
+
+	private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+	private final String label;
+
+	LoadEndpoint(final String label) {
+		this.label = label;
+	}
+
+	String getLabel() {
+		return label;
+	}
+
+	abstract LoadRequest request(LoadDataset dataset, Random random);
+
+	static LoadEndpoint fromLabel(final String label) {
+
+		for (LoadEndpoint endpoint : values()) {
+			if (endpoint.label.equals(label)) {
+				return endpoint;
+			}
+		}
+
+		throw new IllegalArgumentException("Unknown endpoint in load.mix: " + label);
+	}
+
+	private static String randomPatient(final LoadDataset dataset, final Random random) {
+		return dataset.patientId(random.nextInt(dataset.getPatients()));
+	}
+
+	static class LoadRequest {
+
+		final String method;
+		final String path;
+		final String body;
+
+		LoadRequest(final String method, final String path, final String body) {
+			this.method = method;
+			this.path = path;
+			this.body = body;
+		}
+	}
+
+}
@@ -0,0 +1,291 @@
+package com.appointments.api.load;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+
+import com.appointments.api.Application;
+import com.appointments.api.load.LoadEndpoint.LoadRequest;
+import com.appointments.api.repositories.AppointmentRepository;
+import com.appointments.api.repositories.PatientRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Boots the application on a random port, seeds a LoadDataset and drives a
+ * weighted mix of the endpoints from concurrent clients over HTTP.
+ * 
+ * Latency percentiles and throughput of every endpoint are printed and
+ * written as JSON to "load.report", so the reports of two builds can be
+ * diffed. Every setting is read from the application environment, e.g.
+ * "--load.clients=128" or "--spring.profiles.active=profile-prod".
+ */
+public class LoadTest {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(LoadTest.class);
+
+	private static final String DEFAULT_MIX = "getNextAppointment=30,getAppointments=20,getNextWeekAppointments=20,"
+			+ "rateAppointment=15,createAppointment=10,createPatient=5";
+
+	private final ConfigurableApplicationContext context;
+
+	private final int patients;
+	private final int weeks;
+	private final int clients;
+	private final int warmupSeconds;
+	private final int durationSeconds;
+	private final String mix;
+	private final String report;
+
+	private final LoadEndpoint[] endpoints;
+	private final int[] cumulativeWeights;
+
+	private final LoadDataset dataset = new LoadDataset();
+
+	private String baseUrl;
+
+	public static void main(final String[] args) throws Exception {
+
+		final ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+				.properties("server.port=0").run(args);
+
+		try {
+			new LoadTest(context).run();
+		} finally {
+			context.close();
+		}
+	}
+
+	LoadTest(final ConfigurableApplicationContext context) {
+
+		this.context = context;
+
+		final Environment environment = context.getEnvironment();
+
+		patients = environment.getProperty("load.patients", Integer.class, 20000);
+		weeks = environment.getProperty("load.weeks", Integer.class, 50);
+		clients = environment.getProperty("load.clients", Integer.class, 64);
+		warmupSeconds = environment.getProperty("load.warmup-seconds", Integer.class, 10);
+		durationSeconds = environment.getProperty("load.duration-seconds", Integer.class, 60);
+		mix = environment.getProperty("load.mix", DEFAULT_MIX);
+		report = environment.getProperty("load.report", "target/load-report.json");
+
+		final String[] entries = mix.split(",");
+		endpoints = new LoadEndpoint[entries.length];
+		cumulativeWeights = new int[entries.length];
+
+		int total = 0;
+		for (int i = 0; i < entries.length; i++) {
+			final String[] entry = entries[i].trim().split("=");
+			endpoints[i] = LoadEndpoint.fromLabel(entry[0].trim());
+			total += Integer.parseInt(entry[1].trim());
+			cumulativeWeights[i] = total;
+		}
+	}
+
+	void run() throws Exception {
+
+		baseUrl = "http://localhost:"
+				+ ((EmbeddedWebApplicationContext) context).getEmbeddedServletContainer().getPort();
+
+		LOGGER.info("Seeding {} patients x {} weekly appointments", patients, weeks);
+		dataset.seed(context.getBean(PatientRepository.class), context.getBean(AppointmentRepository.class),
+				patients, weeks);
+
+		// keeps a pooled keep-alive connection per client
+		System.setProperty("http.maxConnections", String.valueOf(clients));
+
+		LOGGER.info("Running {} clients: {}s warmup, {}s measured, mix {}", clients, warmupSeconds, durationSeconds,
+				mix);
+
+		final long measureFrom = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+		final long measureTo = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+		final ExecutorService executor = Executors.newFixedThreadPool(clients);
+		final List<Future<Map<LoadEndpoint, LatencyRecorder>>> futures = new ArrayList<>();
+
+		for (int i = 0; i < clients; i++) {
+			futures.add(executor.submit(() -> drive(measureFrom, measureTo)));
+		}
+
+		final Map<LoadEndpoint, LatencyRecorder> merged = new EnumMap<>(LoadEndpoint.class);
+		final LatencyRecorder total = new LatencyRecorder();
+
+		for (Future<Map<LoadEndpoint, LatencyRecorder>> future : futures) {
+			for (Map.Entry<LoadEndpoint, LatencyRecorder> entry : future.get().entrySet()) {
+				merged.computeIfAbsent(entry.getKey(), endpoint -> new LatencyRecorder()).merge(entry.getValue());
+				total.merge(entry.getValue());
+			}
+		}
+		executor.shutdown();
+
+		writeReport(merged, total);
+	}
+
+	private Map<LoadEndpoint, LatencyRecorder> drive(final long measureFrom, final long measureTo) {
+
+		final ThreadLocalRandom random = ThreadLocalRandom.current();
+		final Map<LoadEndpoint, LatencyRecorder> recorders = new EnumMap<>(LoadEndpoint.class);
+
+		long now;
+		while ((now = System.nanoTime()) < measureTo) {
+
+			final LoadEndpoint endpoint = pickEndpoint(random);
+			final LoadRequest request = endpoint.request(dataset, random);
+
+			final boolean error = !send(request);
+			final long latency = System.nanoTime() - now;
+
+			if (now >= measureFrom) {
+				recorders.computeIfAbsent(endpoint, e -> new LatencyRecorder()).record(latency, error);
+			}
+		}
+
+		return recorders;
+	}
+
+	private LoadEndpoint pickEndpoint(final ThreadLocalRandom random) {
+
+		final int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+
+		for (int i = 0; i < cumulativeWeights.length; i++) {
+			if (pick < cumulativeWeights[i]) {
+				return endpoints[i];
+			}
+		}
+		return endpoints[endpoints.length - 1];
+	}
+
+	/**
+	 * @return true when the response is a 2xx
+	 */
+	private boolean send(final LoadRequest request) {
+
+		try {
+			final HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + request.path).openConnection();
+			connection.setRequestMethod(request.method);
+			connection.setRequestProperty("Accept", "application/json");
+
+			if (request.body != null) {
+				connection.setDoOutput(true);
+				connection.setRequestProperty("Content-Type", "application/json");
+				try (OutputStream out = connection.getOutputStream()) {
+					out.write(request.body.getBytes(StandardCharsets.UTF_8));
+				}
+			}
+
+			final int status = connection.getResponseCode();
+
+			// the body is read to the end, otherwise the connection is not reused
+			try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+				if (in != null) {
+					final byte[] buffer = new byte[8192];
+					while (in.read(buffer) != -1) {
+						// drain
+					}
+				}
+			}
+
+			return status >= 200 && status < 300;
+
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private void writeReport(final Map<LoadEndpoint, LatencyRecorder> recorders, final LatencyRecorder total)
+			throws IOException {
+
+		final Map<String, Object> settings = new LinkedHashMap<>();
+		settings.put("patients", patients);
+		settings.put("weeks", weeks);
+		settings.put("clients", clients);
+		settings.put("warmupSeconds", warmupSeconds);
+		settings.put("durationSeconds", durationSeconds);
+		settings.put("mix", mix);
+
+		final Map<String, Object> results = new LinkedHashMap<>();
+		for (Map.Entry<LoadEndpoint, LatencyRecorder> entry : recorders.entrySet()) {
+			results.put(entry.getKey().getLabel(), summary(entry.getValue()));
+		}
+
+		final Map<String, Object> document = new LinkedHashMap<>();
+		document.put("timestamp", LocalDateTime.now());
+		document.put("settings", settings);
+		document.put("endpoints", results);
+		document.put("total", summary(total));
+
+		final File file = new File(report);
+		if (file.getParentFile() != null) {
+			file.getParentFile().mkdirs();
+		}
+
+		final ObjectMapper mapper = context.getBean(ObjectMapper.class);
+		mapper.writerWithDefaultPrettyPrinter().writeValue(file, document);
+
+		System.out.printf("%n%-24s %9s %7s %10s %9s %9s %9s %9s%n", "endpoint", "requests", "errors", "req/s",
+				"p50 ms", "p95 ms", "p99 ms", "max ms");
+		for (Map.Entry<String, Object> entry : results.entrySet()) {
+			print(entry.getKey(), entry.getValue());
+		}
+		print("total", document.get("total"));
+		System.out.printf("%nReport written to %s%n", file.getAbsolutePath());
+	}
+
+	private Map<String, Object> summary(final LatencyRecorder recorder) {
+
+		recorder.sort();
+
+		final Map<String, Object> latency = new LinkedHashMap<>();
+		latency.put("mean", millis(recorder.mean()));
+		latency.put("p50", millis(recorder.percentile(50)));
+		latency.put("p95", millis(recorder.percentile(95)));
+		latency.put("p99", millis(recorder.percentile(99)));
+		latency.put("max", millis(recorder.max()));
+
+		final Map<String, Object> summary = new LinkedHashMap<>();
+		summary.put("requests", recorder.getCount());
+		summary.put("errors", recorder.getErrors());
+		summary.put("throughput", Math.round(recorder.getCount() * 10.0 / durationSeconds) / 10.0);
+		summary.put("latencyMillis", latency);
+
+		return summary;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void print(final String name, final Object value) {
+
+		final Map<String, Object> summary = (Map<String, Object>) value;
+		final Map<String, Object> latency = (Map<String, Object>) summary.get("latencyMillis");
+
+		System.out.printf("%-24s %9s %7s %10s %9s %9s %9s %9s%n", name, summary.get("requests"), summary.get("errors"),
+				summary.get("throughput"), latency.get("p50"), latency.get("p95"), latency.get("p99"),
+				latency.get("max"));
+	}
+
+	private static double millis(final double nanos) {
+		return Math.round(nanos / 1000) / 1000.0;
+	}
+
+}
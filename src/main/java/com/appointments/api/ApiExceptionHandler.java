@@ -0,0 +1,33 @@
+package com.appointments.api;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+import com.appointments.api.errors.ErrorBody;
+import com.appointments.api.errors.ErrorResponses;
+import com.appointments.api.exceptions.ApiException;
+
+/**
+ * Answers the API exceptions with their precomputed responses, see
+ * ErrorResponses. The status is the one of their ResponseStatus (404 for the
+ * missing patients and appointments, 400 for the invalid dates, fields, page
+ * tokens and slot searches, 409, 411, 413 and 503 otherwise) and the body is
+ * {"errorMessage": reason}, the shape of the errors of the batch items.
+ * 
+ * Handled here, the exceptions no longer go through the error dispatch of
+ * the servlet container and the error controller of Spring Boot.
+ */
+@ControllerAdvice
+public class ApiExceptionHandler {
+
+	@Autowired
+	private ErrorResponses errorResponses;
+
+	@ExceptionHandler(ApiException.class)
+	public ResponseEntity<ErrorBody> handleApiException(final ApiException exception) {
+		return errorResponses.of(exception);
+	}
+
+}
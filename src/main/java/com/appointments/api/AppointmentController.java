@@ -1,27 +1,41 @@
 package com.appointments.api;
 
-import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
-import java.time.temporal.TemporalAdjusters;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.appointments.api.async.AsyncRequests;
+import com.appointments.api.batch.BatchRequest;
+import com.appointments.api.dtos.BatchItemResult;
+import com.appointments.api.dtos.FreeSlot;
+import com.appointments.api.dtos.RatingSummary;
 import com.appointments.api.entities.Appointment;
-import com.appointments.api.exceptions.InvalidAppointmentDatesException;
-import com.appointments.api.exceptions.PatientNotFoundException;
+import com.appointments.api.etag.VersionedResource;
+import com.appointments.api.service.AppointmentFields;
 import com.appointments.api.service.AppointmentService;
 
+/**
+ * Appointment endpoints, run through AsyncRequests in the execution mode of
+ * the API: a future failing with an API exception is answered as the
+ * exception.
+ */
 @RestController
 @RequestMapping("/api/v1/appointments")
 public class AppointmentController {
@@ -29,31 +43,91 @@ public class AppointmentController {
 	@Autowired
 	private AppointmentService appointmentService;
 
+	@Autowired
+	private AppointmentExporter appointmentExporter;
+
+	@Autowired
+	private AsyncRequests asyncRequests;
+
 	/**
 	 * as a doctor I want to create appointments for a patient
 	 * 
 	 * @param appointment
-	 * @return appointment created
-	 * @throws PatientNotFoundException
-	 * @throws InvalidAppointmentDatesException
+	 * @return appointment created, or PatientNotFoundException,
+	 *         InvalidAppointmentDatesException, AppointmentConflictException
 	 */
 	@RequestMapping(method = RequestMethod.POST)
 	@ResponseStatus(HttpStatus.CREATED)
-	public Appointment create(@RequestBody @Valid final Appointment appointment)
-			throws PatientNotFoundException, InvalidAppointmentDatesException {
-		return appointmentService.createAppointment(appointment);
+	public CompletableFuture<Appointment> create(@RequestBody @Valid final Appointment appointment) {
+		return asyncRequests.supply(() -> appointmentService.createAppointment(appointment));
+	}
+
+	/**
+	 * Creates a batch of appointments, e.g. from a scheduling importer.
+	 * 
+	 * Each appointment is validated as in the single creation. The valid ones
+	 * are created even when others fail, the result of each one is reported
+	 * in the request order. The body is bounded in bytes before being read,
+	 * then in appointments.
+	 * 
+	 * @param appointments
+	 * @return result of every appointment, or BatchSizeExceededException
+	 */
+	@BatchRequest
+	@RequestMapping(method = RequestMethod.POST, path = "/batch")
+	@ResponseStatus(HttpStatus.OK)
+	public CompletableFuture<List<BatchItemResult<Appointment>>> createBatch(
+			@RequestBody final List<Appointment> appointments) {
+		return asyncRequests.supply(() -> appointmentService.createAppointments(appointments));
 	}
 
 	/**
 	 * as a doctor I want to see an overview of all appointments and their
 	 * ratings
 	 * 
-	 * @return List of Appointments
+	 * The overview is paginated by start desc. The "next" token of a page is
+	 * informed as pageToken to get the following one.
+	 * 
+	 * @param pageToken
+	 * @param limit
+	 * @param fields
+	 *            appointment fields to return, e.g. "id,start,end", all when
+	 *            absent
+	 * @return page of Appointments, or InvalidPageTokenException,
+	 *         InvalidFieldsException
 	 */
+	@VersionedResource
 	@RequestMapping(method = RequestMethod.GET)
 	@ResponseStatus(HttpStatus.OK)
-	public List<Appointment> findAppointments() {
-		return appointmentService.getAllAppointmens();
+	public CompletableFuture<MappingJacksonValue> findAppointments(
+			@RequestParam(required = false) final String pageToken, @RequestParam(defaultValue = "50") final int limit,
+			@RequestParam(required = false) final String fields) {
+
+		return asyncRequests.supply(() -> {
+			final AppointmentFields appointmentFields = AppointmentFields.parse(fields);
+			return appointmentFields.filter(appointmentService.getAppointmentsPage(pageToken, limit, appointmentFields));
+		});
+	}
+
+	/**
+	 * Exports all appointments and their ratings as newline-delimited JSON,
+	 * ordered by start, see AppointmentExporter. Streamed to the response by
+	 * the task itself, the future completing empty.
+	 * 
+	 * @param response
+	 * @return completion of the export
+	 */
+	@RequestMapping(method = RequestMethod.GET, path = "/export")
+	public CompletableFuture<Void> exportAppointments(final HttpServletResponse response) {
+
+		return asyncRequests.supply(() -> {
+			response.setStatus(HttpStatus.OK.value());
+			response.setContentType(AppointmentExporter.NDJSON);
+			response.flushBuffer();
+
+			appointmentExporter.export(response.getOutputStream());
+			return null;
+		});
 	}
 
 	/**
@@ -61,18 +135,72 @@ public class AppointmentController {
 	 * 
 	 * Assuming next week is from next Monday to subsequent Sunday.
 	 * 
-	 * @return List of appointments
+	 * @param fields
+	 *            appointment fields to return, e.g. "id,start,end", all when
+	 *            absent
+	 * @return List of appointments, or InvalidFieldsException
 	 */
+	@VersionedResource
 	@RequestMapping(method = RequestMethod.GET, path = "/next-week")
 	@ResponseStatus(HttpStatus.OK)
-	public List<Appointment> findNextWeekAppointments() {
+	public CompletableFuture<MappingJacksonValue> findNextWeekAppointments(
+			@RequestParam(required = false) final String fields) {
+
+		return asyncRequests.supply(() -> {
+			final AppointmentFields appointmentFields = AppointmentFields.parse(fields);
+			return appointmentFields.filter(appointmentService.getNextWeekAppointments(appointmentFields));
+		});
+	}
 
-		LocalDateTime todayAtMidnight = LocalDateTime.of(LocalDate.now(), LocalTime.MIDNIGHT);
-		LocalDateTime nextMonday = todayAtMidnight.with(TemporalAdjusters.next(DayOfWeek.MONDAY));
-		LocalDateTime sunday = LocalDateTime.of(nextMonday.with(TemporalAdjusters.next(DayOfWeek.SUNDAY)).toLocalDate(),
-				LocalTime.MAX);
+	/**
+	 * as a patient I want to find when the next free hour is
+	 * 
+	 * Periods booked by no appointment, cut in slots of the requested length.
+	 * 
+	 * @param from
+	 *            ISO date time, now by default
+	 * @param to
+	 *            ISO date time, a week after from by default
+	 * @param length
+	 *            length of the slots in minutes
+	 * @param limit
+	 *            maximum number of slots
+	 * @return first free slots ordered by start, or InvalidSlotSearchException
+	 */
+	@RequestMapping(method = RequestMethod.GET, path = "/free-slots")
+	@ResponseStatus(HttpStatus.OK)
+	public CompletableFuture<List<FreeSlot>> findFreeSlots(
+			@RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME) final LocalDateTime from,
+			@RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME) final LocalDateTime to,
+			@RequestParam(defaultValue = "60") final int length, @RequestParam(defaultValue = "1") final int limit) {
+		return asyncRequests.supply(() -> appointmentService.findFreeSlots(from, to, length, limit));
+	}
 
-		return appointmentService.getAppointmentsBetween(nextMonday, sunday);
+	/**
+	 * Rating statistics of all appointments, maintained on every rating.
+	 * 
+	 * @return count, mean and histogram of the rates
+	 */
+	@VersionedResource
+	@RequestMapping(method = RequestMethod.GET, path = "/ratings")
+	@ResponseStatus(HttpStatus.OK)
+	public CompletableFuture<RatingSummary> findRatings() {
+		return asyncRequests.supply(appointmentService::getRatingSummary);
+	}
+
+	/**
+	 * Rating statistics of the appointments started on a day.
+	 * 
+	 * @param day
+	 *            ISO date, e.g. 2017-02-13
+	 * @return count, mean and histogram of the rates
+	 */
+	@VersionedResource
+	@RequestMapping(method = RequestMethod.GET, path = "/ratings/days/{day}")
+	@ResponseStatus(HttpStatus.OK)
+	public CompletableFuture<RatingSummary> findDayRatings(
+			@PathVariable @DateTimeFormat(iso = ISO.DATE) final LocalDate day) {
+		return asyncRequests.supply(() -> appointmentService.getDayRatingSummary(day));
 	}
 
 }
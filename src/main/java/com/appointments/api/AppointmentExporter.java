@@ -0,0 +1,60 @@
+package com.appointments.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.appointments.api.entities.Appointment;
+import com.appointments.api.service.AppointmentService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Writes all appointments as newline-delimited JSON, ordered by start.
+ * 
+ * Appointments are written straight from the Mongo cursor to the output and
+ * flushed every appointments.export.flush-size lines, so memory use doesn't
+ * depend on the collection size.
+ */
+@Component
+class AppointmentExporter {
+
+	static final String NDJSON = "application/x-ndjson";
+
+	@Autowired
+	private AppointmentService appointmentService;
+
+	@Autowired
+	private ObjectMapper mapper;
+
+	@Value("${appointments.export.flush-size:500}")
+	private int exportFlushSize;
+
+	void export(final OutputStream out) throws IOException {
+
+		try (Stream<Appointment> appointments = appointmentService.streamAllAppointments();
+				JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+
+			generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			generator.setRootValueSeparator(null);
+
+			final Iterator<Appointment> iterator = appointments.iterator();
+			int lines = 0;
+
+			while (iterator.hasNext()) {
+				generator.writeObject(iterator.next());
+				generator.writeRaw('\n');
+
+				if (++lines % exportFlushSize == 0) {
+					generator.flush();
+				}
+			}
+		}
+	}
+
+}
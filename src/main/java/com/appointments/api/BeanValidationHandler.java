@@ -1,32 +1,40 @@
 
 package com.appointments.api;
 
-import org.springframework.http.HttpStatus;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.ObjectError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
-import org.springframework.web.bind.annotation.ResponseBody;
-import org.springframework.web.bind.annotation.ResponseStatus;
-
-import com.appointments.api.dtos.ValidationError;
 
+import com.appointments.api.errors.ErrorBody;
+import com.appointments.api.errors.ErrorResponses;
 
+/**
+ * Answers the failed bean validations of the request bodies with a 400
+ * listing the violated constraints, serialized once per combination of
+ * constraints.
+ */
 @ControllerAdvice
 public class BeanValidationHandler {
 
+	@Autowired
+	private ErrorResponses errorResponses;
+
 	@ExceptionHandler
-	@ResponseStatus(HttpStatus.BAD_REQUEST)
-	@ResponseBody
-	public ValidationError handleException(final MethodArgumentNotValidException exception) {
-
-		final ValidationError error = new ValidationError(
-				"Validation failed. " + exception.getBindingResult().getErrorCount() + " error(s)");
-		for (final ObjectError objectError : exception.getBindingResult().getAllErrors()) {
-			error.addValidationError(objectError.getDefaultMessage());
+	public ResponseEntity<ErrorBody> handleException(final MethodArgumentNotValidException exception) {
+
+		final List<ObjectError> objectErrors = exception.getBindingResult().getAllErrors();
+		final List<String> errors = new ArrayList<>(objectErrors.size());
+		for (final ObjectError objectError : objectErrors) {
+			errors.add(objectError.getDefaultMessage());
 		}
 
-		return error;
+		return errorResponses.validationFailed(errors);
 	}
 
 }
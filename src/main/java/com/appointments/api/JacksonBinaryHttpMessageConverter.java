@@ -0,0 +1,23 @@
+package com.appointments.api;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Reads and writes a binary Jackson format (Smile, CBOR) with an ObjectMapper
+ * built on the format's factory. Spring 4.3 only ships the JSON and XML
+ * converters.
+ */
+public class JacksonBinaryHttpMessageConverter extends AbstractJackson2HttpMessageConverter {
+
+	public static final MediaType APPLICATION_SMILE = MediaType.valueOf("application/x-jackson-smile");
+
+	public static final MediaType APPLICATION_CBOR = MediaType.valueOf("application/cbor");
+
+	public JacksonBinaryHttpMessageConverter(final ObjectMapper objectMapper, final MediaType mediaType) {
+		super(objectMapper, mediaType);
+	}
+
+}
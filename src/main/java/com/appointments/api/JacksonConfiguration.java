@@ -0,0 +1,111 @@
+package com.appointments.api;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.boot.autoconfigure.web.HttpMessageConverters;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.appointments.api.entities.Appointment;
+import com.appointments.api.service.AppointmentFields;
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Customizes the ObjectMapper auto-configured by Spring Boot.
+ * 
+ * Appointment is bound to the field filter of AppointmentFields through a
+ * mix-in, so the entity itself stays free of it. Without a filter in the
+ * request every field is written.
+ * 
+ * Smile (application/x-jackson-smile) and CBOR (application/cbor) are
+ * negotiated besides JSON on every endpoint. Their ObjectMappers are
+ * configured by the same builder as the JSON one (JSR-310, date format,
+ * mix-ins and filters), only the factory differs. JSON stays the default:
+ * the binary converters are ordered after the JSON one, so a request
+ * without Accept, or accepting any type, is answered in JSON.
+ */
+@Configuration
+public class JacksonConfiguration {
+
+	@Bean
+	public Jackson2ObjectMapperBuilderCustomizer appointmentFieldsCustomizer() {
+		return builder -> builder.mixIn(Appointment.class, AppointmentFilterMixIn.class)
+				.filters(new SimpleFilterProvider().setFailOnUnknownId(false));
+	}
+
+	@Bean
+	public JacksonBinaryHttpMessageConverter smileHttpMessageConverter(final Jackson2ObjectMapperBuilder builder) {
+		return new JacksonBinaryHttpMessageConverter(configure(builder, new ObjectMapper(new SmileFactory())),
+				JacksonBinaryHttpMessageConverter.APPLICATION_SMILE);
+	}
+
+	@Bean
+	public JacksonBinaryHttpMessageConverter cborHttpMessageConverter(final Jackson2ObjectMapperBuilder builder) {
+		return new JacksonBinaryHttpMessageConverter(configure(builder, new ObjectMapper(new CBORFactory())),
+				JacksonBinaryHttpMessageConverter.APPLICATION_CBOR);
+	}
+
+	/**
+	 * The converters of Spring Boot, the binary ones moved after JSON.
+	 */
+	@Bean
+	public HttpMessageConverters messageConverters(final List<HttpMessageConverter<?>> converters) {
+		return new JsonFirstHttpMessageConverters(converters);
+	}
+
+	/**
+	 * Applies the builder settings without changing its factory, the builder
+	 * being shared with the JSON ObjectMapper.
+	 */
+	private static ObjectMapper configure(final Jackson2ObjectMapperBuilder builder, final ObjectMapper objectMapper) {
+		builder.configure(objectMapper);
+		return objectMapper;
+	}
+
+	/**
+	 * Spring Boot puts the additional converters ahead of the defaults, where
+	 * the binary ones would be picked for any Accept.
+	 */
+	public static class JsonFirstHttpMessageConverters extends HttpMessageConverters {
+
+		public JsonFirstHttpMessageConverters(final Collection<HttpMessageConverter<?>> additionalConverters) {
+			super(additionalConverters);
+		}
+
+		@Override
+		protected List<HttpMessageConverter<?>> postProcessConverters(final List<HttpMessageConverter<?>> converters) {
+
+			final List<HttpMessageConverter<?>> binary = converters.stream()
+					.filter(JacksonBinaryHttpMessageConverter.class::isInstance).collect(Collectors.toList());
+			final List<HttpMessageConverter<?>> ordered = new ArrayList<>(converters);
+			ordered.removeAll(binary);
+
+			int json = ordered.size();
+
+			for (int i = 0; i < ordered.size(); i++) {
+				if (ordered.get(i) instanceof MappingJackson2HttpMessageConverter) {
+					json = i + 1;
+				}
+			}
+
+			ordered.addAll(json, binary);
+			return ordered;
+		}
+	}
+
+	@JsonFilter(AppointmentFields.APPOINTMENT_FILTER)
+	private abstract static class AppointmentFilterMixIn {
+	}
+
+}
@@ -1,5 +1,8 @@
 package com.appointments.api;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 import javax.validation.Valid;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -8,26 +11,38 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.appointments.api.async.AsyncRequests;
+import com.appointments.api.batch.BatchRequest;
+import com.appointments.api.dtos.BatchItemResult;
 import com.appointments.api.dtos.InputRate;
+import com.appointments.api.dtos.RatingSummary;
 import com.appointments.api.entities.Appointment;
 import com.appointments.api.entities.Patient;
-import com.appointments.api.exceptions.PatientNotFoundException;
-import com.appointments.api.repositories.PatientRepository;
+import com.appointments.api.etag.VersionedResource;
 import com.appointments.api.service.AppointmentService;
+import com.appointments.api.service.PatientService;
 
+/**
+ * Patient endpoints, run through AsyncRequests in the execution mode of the
+ * API, see AppointmentController.
+ */
 @RestController
 @RequestMapping("/api/v1/patients")
 public class PatientsController {
 
 	@Autowired
-	private PatientRepository patientRepository;
+	private PatientService patientService;
 	
 	@Autowired
 	private AppointmentService 	appointmentService;
 
+	@Autowired
+	private AsyncRequests asyncRequests;
+
 	/**
 	 * 
 	 * as a doctor I want to create my patients
@@ -38,23 +53,57 @@ public class PatientsController {
 
 	@RequestMapping(method = RequestMethod.POST)
 	@ResponseStatus(HttpStatus.CREATED)
-	public Patient create(@RequestBody @Valid final Patient customer) {
-		return patientRepository.save(customer);
+	public CompletableFuture<Patient> create(@RequestBody @Valid final Patient customer) {
+		return asyncRequests.supply(() -> patientService.createPatient(customer));
+	}
+
+	/**
+	 * Creates a batch of patients, e.g. when onboarding a new practice.
+	 * 
+	 * Each patient is validated as in the single creation. The valid ones are
+	 * created even when others fail, the result of each one is reported in the
+	 * request order. The body is bounded in bytes before being read, then in
+	 * patients.
+	 * 
+	 * @param patients
+	 * @return result of every patient, or BatchSizeExceededException
+	 */
+	@BatchRequest
+	@RequestMapping(method = RequestMethod.POST, path = "/batch")
+	@ResponseStatus(HttpStatus.OK)
+	public CompletableFuture<List<BatchItemResult<Patient>>> createBatch(@RequestBody final List<Patient> patients) {
+		return asyncRequests.supply(() -> patientService.createPatients(patients));
 	}
 	
+	/**
+	 * as a doctor I want to find a patient by the first letters of the name
+	 * or surname
+	 * 
+	 * @param q
+	 *            prefix of the surname or name, or of both, e.g. "col" or
+	 *            "andrew col"
+	 * @param limit
+	 *            maximum number of patients
+	 * @return patients matching, surname matches first
+	 */
+	@RequestMapping(method = RequestMethod.GET, path = "/search")
+	@ResponseStatus(HttpStatus.OK)
+	public CompletableFuture<List<Patient>> search(@RequestParam(defaultValue = "") final String q,
+			@RequestParam(defaultValue = "10") final int limit) {
+		return asyncRequests.supply(() -> patientService.searchPatients(q, limit));
+	}
+
 	/**
 	 * as a patient I want to see my next appointment
 	 * 
 	 * @param id
-	 * @return appointment
-	 * @throws PatientNotFoundException
+	 * @return appointment, or PatientNotFoundException
 	 */
+	@VersionedResource
 	@RequestMapping(method = RequestMethod.GET, path = "/{id}/next-appointment")
 	@ResponseStatus(HttpStatus.OK)
-	public Appointment findNextAppointmentByCustomer(@PathVariable final String id) throws PatientNotFoundException {
-
-		return appointmentService.getNextAppointmentByPatient(id);
-
+	public CompletableFuture<Appointment> findNextAppointmentByCustomer(@PathVariable final String id) {
+		return asyncRequests.supply(() -> appointmentService.getNextAppointmentByPatient(id));
 	}
 
 	/**
@@ -69,15 +118,30 @@ public class PatientsController {
 	 * 
 	 * @param id
 	 * @param rate
-	 * @return appointment
-	 * @throws PatientNotFoundException 
+	 * @return appointment, or PatientNotFoundException,
+	 *         AppointmentNotFoundException, ServiceOverloadedException if the
+	 *         ratings write-behind queue is full
 	 */
 	@RequestMapping(method = RequestMethod.PUT, path = "/{id}/rate")
 	@ResponseStatus(HttpStatus.OK)
-	public Appointment rate(@RequestBody @Valid final InputRate inputRate, @PathVariable final String id) throws PatientNotFoundException {
-
-		return appointmentService.rateAppointment(id, inputRate);
+	public CompletableFuture<Appointment> rate(@RequestBody @Valid final InputRate inputRate,
+			@PathVariable final String id) {
+		return asyncRequests.supply(() -> appointmentService.rateAppointment(id, inputRate));
+	}
 
+	/**
+	 * Rating statistics of the appointments of a patient, maintained on every
+	 * rating.
+	 * 
+	 * @param id
+	 * @return count, mean and histogram of the rates, or
+	 *         PatientNotFoundException
+	 */
+	@VersionedResource
+	@RequestMapping(method = RequestMethod.GET, path = "/{id}/ratings")
+	@ResponseStatus(HttpStatus.OK)
+	public CompletableFuture<RatingSummary> findRatings(@PathVariable final String id) {
+		return asyncRequests.supply(() -> appointmentService.getPatientRatingSummary(id));
 	}
 
 }
@@ -0,0 +1,535 @@
+package com.appointments.api.archive;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.annotation.PostConstruct;
+
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import com.appointments.api.entities.Appointment;
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+
+/**
+ * Cold storage of the appointments started before the archive horizon
+ * ("appointments.archive.horizon-days"), moved there by AppointmentArchiveJob.
+ *
+ * The archived appointments are bucketed by patient and month of their
+ * start, one document per bucket:
+ *
+ * <pre>
+ * { _id : "patientId:2016-05", patientId, month : "2016-05",
+ *   appointments : [ { _id, start, end, rate } ] }
+ * </pre>
+ *
+ * so a patient's history is a few documents and a date range only reads
+ * the buckets of its months. The buckets are read and written by hand,
+ * independently of the layout of the appointment collection.
+ *
+ * The ordered reads (the pagination and the export) go through a flat
+ * collection of one small entry per archived appointment, indexed by
+ * (start, _id):
+ *
+ * <pre>
+ * { _id, start, patientId }
+ * </pre>
+ *
+ * A page reads its entries with a bound and a limit, then the buckets they
+ * point to, so its cost doesn't depend on the size of the months.
+ *
+ * Every appointment started after the horizon is in the appointment
+ * collection, so the archive is only read when a date range or a rating
+ * lookup reaches before it.
+ */
+@Component
+public class AppointmentArchive {
+
+	public static final String COLLECTION = "appointmentArchive";
+
+	public static final String STARTS_COLLECTION = "appointmentArchiveStarts";
+
+	// entries resolved per bucket query by the export
+	private static final int STREAM_BATCH_SIZE = 500;
+
+	private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyy-MM");
+
+	private static final String ID = "_id";
+	private static final String PATIENT_ID = "patientId";
+	private static final String MONTH_FIELD = "month";
+	private static final String APPOINTMENTS = "appointments";
+	private static final String START = "start";
+	private static final String END = "end";
+	private static final String RATE = "rate";
+
+	private static final DBObject START_ID_ASC = new BasicDBObject(START, 1).append(ID, 1);
+	private static final DBObject START_ID_DESC = new BasicDBObject(START, -1).append(ID, -1);
+
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+	@Value("${appointments.archive.enabled:false}")
+	private boolean enabled;
+
+	@Value("${appointments.archive.horizon-days:365}")
+	private int horizonDays;
+
+	@PostConstruct
+	public void init() {
+
+		if (enabled) {
+			final DBCollection collection = collection();
+			collection.createIndex(new BasicDBObject(PATIENT_ID, 1).append(MONTH_FIELD, -1));
+			collection.createIndex(new BasicDBObject(MONTH_FIELD, 1));
+
+			starts().createIndex(START_ID_ASC);
+			backfillStarts();
+		}
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @return start before which the appointments are archived
+	 */
+	public LocalDateTime getHorizon() {
+		return LocalDateTime.now().minusDays(horizonDays);
+	}
+
+	/**
+	 * @param from
+	 *            lower bound of a date range, null if unbounded
+	 * @return whether the range may hold archived appointments
+	 */
+	public boolean reaches(final LocalDateTime from) {
+		return enabled && (from == null || from.isBefore(getHorizon()));
+	}
+
+	/**
+	 * Upserts the appointments in their buckets, with one ordered bulk write,
+	 * then their start entries. An appointment already in its bucket, e.g.
+	 * archived by an interrupted run, is replaced.
+	 *
+	 * @param appointments
+	 */
+	void archive(final List<Appointment> appointments) {
+
+		final Map<String, List<Appointment>> buckets = new LinkedHashMap<>();
+
+		for (Appointment appointment : appointments) {
+			buckets.computeIfAbsent(bucketId(appointment.getPatientId(), appointment.getStart()),
+					id -> new ArrayList<>()).add(appointment);
+		}
+
+		final BulkWriteOperation bulk = collection().initializeOrderedBulkOperation();
+
+		for (Map.Entry<String, List<Appointment>> bucket : buckets.entrySet()) {
+
+			final Appointment first = bucket.getValue().get(0);
+			final BasicDBList ids = new BasicDBList();
+			final BasicDBList documents = new BasicDBList();
+
+			for (Appointment appointment : bucket.getValue()) {
+				ids.add(new ObjectId(appointment.getId()));
+				documents.add(toDocument(appointment));
+			}
+
+			final DBObject bucketQuery = new BasicDBObject(ID, bucket.getKey());
+
+			bulk.find(bucketQuery).update(new BasicDBObject("$pull",
+					new BasicDBObject(APPOINTMENTS, new BasicDBObject(ID, new BasicDBObject("$in", ids)))));
+
+			bulk.find(bucketQuery).upsert().updateOne(new BasicDBObject("$setOnInsert",
+					new BasicDBObject(PATIENT_ID, first.getPatientId()).append(MONTH_FIELD, month(first.getStart())))
+							.append("$push", new BasicDBObject(APPOINTMENTS, new BasicDBObject("$each", documents))));
+		}
+
+		bulk.execute();
+
+		// after the buckets, an entry always points to an archived appointment
+		final BulkWriteOperation startsBulk = starts().initializeUnorderedBulkOperation();
+
+		for (Appointment appointment : appointments) {
+			final ObjectId id = new ObjectId(appointment.getId());
+			startsBulk.find(new BasicDBObject(ID, id)).upsert()
+					.replaceOne(startEntry(id, appointment.getPatientId(), toDate(appointment.getStart())));
+		}
+
+		startsBulk.execute();
+	}
+
+	/**
+	 * Archived appointments started between two dates, exclusive, like
+	 * AppointmentRepository.findByStartBetween.
+	 *
+	 * @param from
+	 * @param to
+	 * @return appointments in no particular order
+	 */
+	public List<Appointment> findBetween(final LocalDateTime from, final LocalDateTime to) {
+
+		final DBObject query = new BasicDBObject(MONTH_FIELD,
+				new BasicDBObject("$gte", month(from)).append("$lte", month(to))).append(APPOINTMENTS,
+						new BasicDBObject("$elemMatch", new BasicDBObject(START,
+								new BasicDBObject("$gt", toDate(from)).append("$lt", toDate(to)))));
+
+		final List<Appointment> appointments = new ArrayList<>();
+
+		for (Appointment appointment : find(query)) {
+			if (appointment.getStart().isAfter(from) && appointment.getStart().isBefore(to)) {
+				appointments.add(appointment);
+			}
+		}
+
+		return appointments;
+	}
+
+	/**
+	 * Archived appointments by start desc, id desc, strictly after the given
+	 * key. The entries of the page are read from the (start, _id) index with
+	 * the key as bound, then the buckets holding them.
+	 *
+	 * @param start
+	 *            start of the last appointment of the previous page, null to
+	 *            start from the latest archived appointment
+	 * @param id
+	 *            id of the last appointment of the previous page
+	 * @param limit
+	 * @return page of appointments
+	 */
+	public List<Appointment> findPageAfter(final LocalDateTime start, final ObjectId id, final int limit) {
+
+		final List<Appointment> page = new ArrayList<>(limit);
+		Date lastStart = start == null ? null : toDate(start);
+		Object lastId = id;
+
+		while (page.size() < limit) {
+
+			final DBObject query = lastStart == null ? new BasicDBObject()
+					: new BasicDBObject("$or",
+							Arrays.asList(new BasicDBObject(START, new BasicDBObject("$lt", lastStart)),
+									new BasicDBObject(START, lastStart).append(ID, new BasicDBObject("$lt", lastId))));
+
+			final List<DBObject> entries = new ArrayList<>(limit - page.size());
+
+			try (DBCursor cursor = starts().find(query).sort(START_ID_DESC).limit(limit - page.size())) {
+				while (cursor.hasNext()) {
+					entries.add(cursor.next());
+				}
+			}
+
+			if (entries.isEmpty()) {
+				break;
+			}
+
+			// an appointment briefly out of its bucket, being archived again,
+			// is skipped and the page completed by the next entries
+			page.addAll(resolve(entries));
+
+			final DBObject last = entries.get(entries.size() - 1);
+			lastStart = (Date) last.get(START);
+			lastId = last.get(ID);
+		}
+
+		return page;
+	}
+
+	/**
+	 * Streams every archived appointment ordered by start, id, reading the
+	 * entries with a cursor and resolving them by batches of
+	 * STREAM_BATCH_SIZE. The stream must be closed.
+	 *
+	 * @return stream of appointments
+	 */
+	public Stream<Appointment> streamAll() {
+
+		final DBCursor entries = starts().find().sort(START_ID_ASC);
+
+		final Iterator<Appointment> appointments = new Iterator<Appointment>() {
+
+			private Iterator<Appointment> batch = Collections.emptyIterator();
+
+			@Override
+			public boolean hasNext() {
+
+				while (!batch.hasNext() && entries.hasNext()) {
+
+					final List<DBObject> next = new ArrayList<>(STREAM_BATCH_SIZE);
+
+					while (next.size() < STREAM_BATCH_SIZE && entries.hasNext()) {
+						next.add(entries.next());
+					}
+
+					batch = resolve(next).iterator();
+				}
+
+				return batch.hasNext();
+			}
+
+			@Override
+			public Appointment next() {
+
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+
+				return batch.next();
+			}
+		};
+
+		return StreamSupport
+				.stream(Spliterators.spliteratorUnknownSize(appointments, Spliterator.ORDERED | Spliterator.NONNULL),
+						false)
+				.onClose(entries::close);
+	}
+
+	/**
+	 * Atomically sets the rate of an archived appointment of the patient.
+	 *
+	 * @param id
+	 * @param patientId
+	 * @param rate
+	 * @return the appointment before the update, null if the patient has no
+	 *         such archived appointment
+	 */
+	public Appointment rateById(final String id, final String patientId, final Integer rate) {
+
+		if (!ObjectId.isValid(id)) {
+			return null;
+		}
+
+		final ObjectId appointmentId = new ObjectId(id);
+
+		final DBObject query = new BasicDBObject(PATIENT_ID, patientId).append(APPOINTMENTS + "." + ID,
+				appointmentId);
+		final DBObject update = new BasicDBObject("$set", new BasicDBObject(APPOINTMENTS + ".$." + RATE, rate));
+
+		final DBObject bucket = collection().findAndModify(query, null, null, false, update, false, false);
+
+		if (bucket == null) {
+			return null;
+		}
+
+		for (Object appointment : (BasicDBList) bucket.get(APPOINTMENTS)) {
+			if (appointmentId.equals(((DBObject) appointment).get(ID))) {
+				return fromDocument(patientId, (DBObject) appointment);
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Atomically sets the rate of the latest archived appointment of the
+	 * patient started before the given date.
+	 *
+	 * @param patientId
+	 * @param before
+	 * @param rate
+	 * @return the appointment before the update, null if the patient has no
+	 *         archived appointment started before the date
+	 */
+	public Appointment rateLastStartedBefore(final String patientId, final LocalDateTime before, final Integer rate) {
+
+		final DBObject query = new BasicDBObject(PATIENT_ID, patientId).append(MONTH_FIELD,
+				new BasicDBObject("$lte", month(before)));
+
+		try (DBCursor buckets = collection().find(query).sort(new BasicDBObject(MONTH_FIELD, -1))) {
+
+			while (buckets.hasNext()) {
+
+				Appointment last = null;
+
+				for (Appointment appointment : appointmentsOf(buckets.next())) {
+					if (appointment.getStart().isBefore(before)
+							&& (last == null || appointment.getStart().isAfter(last.getStart()))) {
+						last = appointment;
+					}
+				}
+
+				if (last != null) {
+					return rateById(last.getId(), patientId, rate);
+				}
+			}
+		}
+
+		return null;
+	}
+
+	private List<Appointment> find(final DBObject query) {
+
+		final List<Appointment> appointments = new ArrayList<>();
+
+		try (DBCursor buckets = collection().find(query)) {
+			while (buckets.hasNext()) {
+				appointments.addAll(appointmentsOf(buckets.next()));
+			}
+		}
+
+		return appointments;
+	}
+
+	/**
+	 * Reads the appointments of the start entries from their buckets, with
+	 * one query.
+	 *
+	 * @return the appointments found, in the order of the entries
+	 */
+	private List<Appointment> resolve(final List<DBObject> entries) {
+
+		final Set<String> bucketIds = new LinkedHashSet<>();
+
+		for (DBObject entry : entries) {
+			bucketIds.add(bucketId((String) entry.get(PATIENT_ID), toLocalDateTime((Date) entry.get(START))));
+		}
+
+		final Map<String, Appointment> archived = new HashMap<>();
+
+		for (Appointment appointment : find(
+				new BasicDBObject(ID, new BasicDBObject("$in", new ArrayList<>(bucketIds))))) {
+			archived.put(appointment.getId(), appointment);
+		}
+
+		final List<Appointment> appointments = new ArrayList<>(entries.size());
+
+		for (DBObject entry : entries) {
+
+			final Appointment appointment = archived.get(((ObjectId) entry.get(ID)).toHexString());
+
+			if (appointment != null) {
+				appointments.add(appointment);
+			}
+		}
+
+		return appointments;
+	}
+
+	/**
+	 * Creates the start entries of an archive written before them, in
+	 * batches of STREAM_BATCH_SIZE entries.
+	 */
+	private void backfillStarts() {
+
+		if (starts().count() > 0) {
+			return;
+		}
+
+		BulkWriteOperation bulk = starts().initializeUnorderedBulkOperation();
+		int pending = 0;
+
+		try (DBCursor cursor = collection().find()) {
+
+			while (cursor.hasNext()) {
+
+				final DBObject bucket = cursor.next();
+
+				for (Object appointment : (BasicDBList) bucket.get(APPOINTMENTS)) {
+					final ObjectId id = (ObjectId) ((DBObject) appointment).get(ID);
+					bulk.find(new BasicDBObject(ID, id)).upsert().replaceOne(
+							startEntry(id, (String) bucket.get(PATIENT_ID), (Date) ((DBObject) appointment).get(START)));
+
+					if (++pending == STREAM_BATCH_SIZE) {
+						bulk.execute();
+						bulk = starts().initializeUnorderedBulkOperation();
+						pending = 0;
+					}
+				}
+			}
+		}
+
+		if (pending > 0) {
+			bulk.execute();
+		}
+	}
+
+	private DBCollection collection() {
+		return mongoTemplate.getCollection(COLLECTION);
+	}
+
+	private DBCollection starts() {
+		return mongoTemplate.getCollection(STARTS_COLLECTION);
+	}
+
+	private static DBObject startEntry(final ObjectId id, final String patientId, final Date start) {
+		return new BasicDBObject(ID, id).append(START, start).append(PATIENT_ID, patientId);
+	}
+
+	private static List<Appointment> appointmentsOf(final DBObject bucket) {
+
+		final String patientId = (String) bucket.get(PATIENT_ID);
+		final List<Appointment> appointments = new ArrayList<>();
+
+		for (Object appointment : (BasicDBList) bucket.get(APPOINTMENTS)) {
+			appointments.add(fromDocument(patientId, (DBObject) appointment));
+		}
+
+		return appointments;
+	}
+
+	private static DBObject toDocument(final Appointment appointment) {
+
+		final BasicDBObject document = new BasicDBObject(ID, new ObjectId(appointment.getId()))
+				.append(START, toDate(appointment.getStart())).append(END, toDate(appointment.getEnd()));
+
+		if (appointment.getRate() != null) {
+			document.append(RATE, appointment.getRate());
+		}
+
+		return document;
+	}
+
+	private static Appointment fromDocument(final String patientId, final DBObject document) {
+
+		final Appointment appointment = new Appointment();
+		appointment.setId(((ObjectId) document.get(ID)).toHexString());
+		appointment.setPatientId(patientId);
+		appointment.setStart(toLocalDateTime((Date) document.get(START)));
+		appointment.setEnd(toLocalDateTime((Date) document.get(END)));
+		appointment.setRate((Integer) document.get(RATE));
+		return appointment;
+	}
+
+	private static String bucketId(final String patientId, final LocalDateTime start) {
+		return patientId + ":" + month(start);
+	}
+
+	private static String month(final LocalDateTime dateTime) {
+		return MONTH.format(dateTime);
+	}
+
+	private static Date toDate(final LocalDateTime dateTime) {
+		return Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant());
+	}
+
+	private static LocalDateTime toLocalDateTime(final Date date) {
+		return LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault());
+	}
+
+}
@@ -0,0 +1,169 @@
+package com.appointments.api.archive;
+
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import com.appointments.api.entities.Appointment;
+
+/**
+ * Moves the appointments started before the archive horizon to the
+ * AppointmentArchive, oldest first, in batches.
+ *
+ * A batch is upserted in its buckets before being removed from the
+ * appointment collection, and only the appointments left unchanged since
+ * they were read are removed: one rated meanwhile stays and is archived
+ * again by the next batch. The readers merge both collections by id, so an
+ * appointment briefly present in both is returned once.
+ *
+ * Every instance schedules the job, but a run only archives under the
+ * archive lease, renewed after each batch: two runs archiving the same
+ * appointments at once could leave it twice in its bucket.
+ */
+public class AppointmentArchiveJob {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(AppointmentArchiveJob.class);
+
+	private static final Sort START_ASC = new Sort(Direction.ASC, "start");
+
+	private static final String LOCKS_COLLECTION = "locks";
+	private static final String ARCHIVE_LOCK = "appointmentArchive.job";
+
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+	@Autowired
+	private AppointmentArchive appointmentArchive;
+
+	@Value("${appointments.archive.batch-size:1000}")
+	private int batchSize;
+
+	/**
+	 * Lifetime of the archive lease without renewal, after which an instance
+	 * that died while archiving is taken over. Longer than a batch.
+	 */
+	@Value("${appointments.archive.lock-seconds:600}")
+	private long lockSeconds;
+
+	private final String instanceId = UUID.randomUUID().toString();
+
+	@Scheduled(initialDelayString = "${appointments.archive.interval-millis:3600000}",
+			fixedDelayString = "${appointments.archive.interval-millis:3600000}")
+	public void run() {
+
+		final long archived = archiveBefore(appointmentArchive.getHorizon());
+
+		if (archived > 0) {
+			LOGGER.info("Archived {} appointments", archived);
+		}
+	}
+
+	/**
+	 * Archives under the archive lease, nothing when another instance holds
+	 * it.
+	 * 
+	 * @param horizon
+	 * @return appointments moved to the archive
+	 */
+	public long archiveBefore(final LocalDateTime horizon) {
+
+		if (!acquireLock()) {
+			LOGGER.debug("Archive run skipped, another instance is archiving");
+			return 0;
+		}
+
+		try {
+			return archiveBatchesBefore(horizon);
+		} finally {
+			releaseLock();
+		}
+	}
+
+	private long archiveBatchesBefore(final LocalDateTime horizon) {
+
+		final Query older = new Query(Criteria.where("start").lt(horizon)).with(START_ASC).limit(batchSize);
+		long archived = 0;
+
+		while (true) {
+
+			if (!renewLock()) {
+				LOGGER.warn("Archive lease lost, left to the next run");
+				return archived;
+			}
+
+			final List<Appointment> batch = mongoTemplate.find(older, Appointment.class);
+
+			if (batch.isEmpty()) {
+				return archived;
+			}
+
+			appointmentArchive.archive(batch);
+
+			final Criteria[] unchanged = batch.stream()
+					.map(appointment -> Criteria.where("id").is(appointment.getId()).and("rate")
+							.is(appointment.getRate()))
+					.toArray(Criteria[]::new);
+
+			final Query removable = new Query(new Criteria().orOperator(unchanged));
+			final int removed = mongoTemplate.remove(removable, Appointment.class).getN();
+
+			archived += removed;
+
+			if (removed == 0) {
+				// all rated meanwhile, left to the next run
+				return archived;
+			}
+		}
+	}
+
+	/**
+	 * Takes the archive lease when free or expired: the upsert matches an
+	 * expired lease, or inserts a new one and fails on a live one.
+	 * 
+	 * @return whether this instance holds the lease
+	 */
+	private boolean acquireLock() {
+
+		try {
+			mongoTemplate.upsert(new Query(Criteria.where("_id").is(ARCHIVE_LOCK).and("expiresAt").lt(new Date())),
+					new Update().set("owner", instanceId).set("expiresAt", leaseEnd()), LOCKS_COLLECTION);
+			return true;
+
+		} catch (DuplicateKeyException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return whether this instance still held the lease, now extended
+	 */
+	private boolean renewLock() {
+		return mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(ARCHIVE_LOCK).and("owner").is(instanceId)),
+				Update.update("expiresAt", leaseEnd()), LOCKS_COLLECTION).getN() > 0;
+	}
+
+	private void releaseLock() {
+		mongoTemplate.remove(new Query(Criteria.where("_id").is(ARCHIVE_LOCK).and("owner").is(instanceId)),
+				LOCKS_COLLECTION);
+	}
+
+	private Date leaseEnd() {
+		return new Date(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(lockSeconds));
+	}
+
+}
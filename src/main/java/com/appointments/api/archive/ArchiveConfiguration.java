@@ -0,0 +1,22 @@
+package com.appointments.api.archive;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Schedules the AppointmentArchiveJob when "appointments.archive.enabled" is
+ * true.
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "appointments.archive.enabled")
+public class ArchiveConfiguration {
+
+	@Bean
+	public AppointmentArchiveJob appointmentArchiveJob() {
+		return new AppointmentArchiveJob();
+	}
+
+}
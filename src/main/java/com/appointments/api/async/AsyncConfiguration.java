@@ -0,0 +1,63 @@
+package com.appointments.api.async;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+import com.appointments.api.reads.ReadRouting;
+
+/**
+ * Asynchronous execution mode of the API, on when
+ * "appointments.async.enabled" is true.
+ * 
+ * The AsyncRequests of the controllers then queue the requests on a fixed
+ * pool sized by "appointments.async.pool-size", and the servlet threads are
+ * released until the result is ready. The pool bounds the Mongo calls run at
+ * once: the requests beyond it wait in the queue, they are not in flight.
+ * The same pool runs the async tasks of Spring MVC, instead of its unbounded
+ * default.
+ */
+@Configuration
+@ConditionalOnProperty(name = "appointments.async.enabled")
+public class AsyncConfiguration extends WebMvcConfigurerAdapter {
+
+	@Value("${appointments.async.pool-size:16}")
+	private int poolSize;
+
+	@Value("${appointments.async.queue-capacity:10000}")
+	private int queueCapacity;
+
+	@Value("${appointments.async.timeout-millis:30000}")
+	private long timeoutMillis;
+
+	@Bean
+	public ThreadPoolTaskExecutor appointmentsExecutor() {
+
+		final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(poolSize);
+		executor.setMaxPoolSize(poolSize);
+		executor.setQueueCapacity(queueCapacity);
+		executor.setThreadNamePrefix("appointments-");
+		executor.setWaitForTasksToCompleteOnShutdown(true);
+		// the read-your-writes pin of the request follows it on the pool
+		executor.setTaskDecorator(ReadRouting::propagate);
+
+		return executor;
+	}
+
+	@Bean
+	public AsyncRequests asyncRequests() {
+		return new AsyncRequests(appointmentsExecutor());
+	}
+
+	@Override
+	public void configureAsyncSupport(final AsyncSupportConfigurer configurer) {
+		configurer.setTaskExecutor(appointmentsExecutor());
+		configurer.setDefaultTimeout(timeoutMillis);
+	}
+
+}
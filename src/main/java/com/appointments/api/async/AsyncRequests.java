@@ -0,0 +1,51 @@
+package com.appointments.api.async;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.appointments.api.exceptions.ServiceOverloadedException;
+
+/**
+ * Runs the work of a request in the execution mode of the API, the
+ * controllers declaring their endpoints once for both.
+ * 
+ * In the asynchronous mode the executor is the appointments pool of
+ * AsyncConfiguration, so the servlet thread is released while the work waits
+ * on Mongo. In the blocking mode it runs the work on the calling thread, see
+ * BlockingConfiguration.
+ * 
+ * Failures complete the future with the exception thrown by the task, not
+ * wrapped, so the @ResponseStatus of the API exceptions still applies. When
+ * the executor queue is full the request fails fast with a 503 instead of
+ * piling up.
+ */
+public class AsyncRequests {
+
+	private final Executor executor;
+
+	public AsyncRequests(final Executor executor) {
+		this.executor = executor;
+	}
+
+	public <T> CompletableFuture<T> supply(final Callable<T> task) {
+
+		final CompletableFuture<T> future = new CompletableFuture<>();
+
+		try {
+			executor.execute(() -> {
+				try {
+					future.complete(task.call());
+				} catch (Exception e) {
+					future.completeExceptionally(e);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			future.completeExceptionally(new ServiceOverloadedException());
+		}
+
+		return future;
+	}
+
+}
@@ -0,0 +1,53 @@
+package com.appointments.api.async;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.support.HandlerMethodReturnValueHandler;
+import org.springframework.web.method.support.HandlerMethodReturnValueHandlerComposite;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+/**
+ * Blocking execution mode of the API, the default, when
+ * "appointments.async.enabled" is false.
+ * 
+ * AsyncRequests then runs the work of a request on its servlet thread, and
+ * the future it returns, already complete, is answered right away by
+ * CompletedFutureReturnValueHandler: a request is handled as by a plain
+ * controller, without an async dispatch.
+ */
+@Configuration
+@ConditionalOnProperty(name = "appointments.async.enabled", havingValue = "false", matchIfMissing = true)
+public class BlockingConfiguration {
+
+	@Autowired
+	private RequestMappingHandlerAdapter handlerAdapter;
+
+	@Bean
+	public AsyncRequests asyncRequests() {
+		return new AsyncRequests(Runnable::run);
+	}
+
+	/**
+	 * Puts the CompletedFutureReturnValueHandler ahead of the handler of
+	 * Spring MVC for the futures, delegating to all of them.
+	 */
+	@PostConstruct
+	public void init() {
+
+		final List<HandlerMethodReturnValueHandler> handlers = new ArrayList<>(
+				handlerAdapter.getReturnValueHandlers());
+
+		handlers.add(0, new CompletedFutureReturnValueHandler(
+				new HandlerMethodReturnValueHandlerComposite().addHandlers(handlerAdapter.getReturnValueHandlers())));
+
+		handlerAdapter.setReturnValueHandlers(handlers);
+	}
+
+}
@@ -0,0 +1,110 @@
+package com.appointments.api.async;
+
+import java.lang.reflect.Type;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.core.ResolvableType;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.AsyncHandlerMethodReturnValueHandler;
+import org.springframework.web.method.support.HandlerMethodReturnValueHandlerComposite;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+/**
+ * Answers a CompletableFuture already complete when returned, as in the
+ * blocking mode, with its value on the servlet thread, instead of going
+ * through an async dispatch.
+ * 
+ * The value is handled by the other return value handlers as if returned
+ * by the handler, and a failure is thrown to the exception resolvers. A
+ * null value is an empty body, as after an async dispatch. A future still
+ * running goes to the other handlers as is.
+ */
+public class CompletedFutureReturnValueHandler implements AsyncHandlerMethodReturnValueHandler {
+
+	private final HandlerMethodReturnValueHandlerComposite handlers;
+
+	public CompletedFutureReturnValueHandler(final HandlerMethodReturnValueHandlerComposite handlers) {
+		this.handlers = handlers;
+	}
+
+	@Override
+	public boolean supportsReturnType(final MethodParameter returnType) {
+		return CompletableFuture.class.isAssignableFrom(returnType.getParameterType());
+	}
+
+	/**
+	 * Spring MVC only offers the futures to the handlers of async values.
+	 */
+	@Override
+	public boolean isAsyncReturnValue(final Object returnValue, final MethodParameter returnType) {
+		return returnValue instanceof CompletableFuture;
+	}
+
+	@Override
+	public void handleReturnValue(final Object returnValue, final MethodParameter returnType,
+			final ModelAndViewContainer mavContainer, final NativeWebRequest webRequest) throws Exception {
+
+		final CompletableFuture<?> future = (CompletableFuture<?>) returnValue;
+
+		if (future == null || !future.isDone()) {
+			handlers.handleReturnValue(returnValue, returnType, mavContainer, webRequest);
+			return;
+		}
+
+		final Object value;
+
+		try {
+			value = future.get();
+		} catch (ExecutionException | CompletionException e) {
+			throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+		}
+
+		if (value == null) {
+			mavContainer.setRequestHandled(true);
+			return;
+		}
+
+		handlers.handleReturnValue(value, new CompletedValueParameter(returnType, value), mavContainer, webRequest);
+	}
+
+	/**
+	 * The return type of the handler, seen as the type of the value of its
+	 * future.
+	 */
+	private static class CompletedValueParameter extends MethodParameter {
+
+		private final Class<?> valueType;
+
+		private final Type genericValueType;
+
+		CompletedValueParameter(final MethodParameter returnType, final Object value) {
+			this(returnType, value.getClass(), ResolvableType.forMethodParameter(returnType).getGeneric(0).getType());
+		}
+
+		private CompletedValueParameter(final MethodParameter original, final Class<?> valueType,
+				final Type genericValueType) {
+			super(original);
+			this.valueType = valueType;
+			this.genericValueType = genericValueType;
+		}
+
+		@Override
+		public Class<?> getParameterType() {
+			return valueType;
+		}
+
+		@Override
+		public Type getGenericParameterType() {
+			return genericValueType;
+		}
+
+		@Override
+		public CompletedValueParameter clone() {
+			return new CompletedValueParameter(this, valueType, genericValueType);
+		}
+	}
+
+}
@@ -0,0 +1,51 @@
+package com.appointments.api.batch;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import com.appointments.api.exceptions.BatchLengthRequiredException;
+import com.appointments.api.exceptions.BatchSizeExceededException;
+
+/**
+ * Bounds the body of the @BatchRequest handlers by its Content-Length.
+ * 
+ * The check runs before the handler, so an oversized batch is answered with
+ * a 413 without being read nor deserialized: the element count is only
+ * known once the whole list is in memory. A body without Content-Length,
+ * i.e. chunked, can't be bounded up front and is answered with a 411.
+ */
+public class BatchBodyInterceptor extends HandlerInterceptorAdapter {
+
+	private final long maxBytes;
+
+	public BatchBodyInterceptor(final long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	@Override
+	public boolean preHandle(final HttpServletRequest request, final HttpServletResponse response,
+			final Object handler) throws BatchSizeExceededException, BatchLengthRequiredException {
+
+		if (!(handler instanceof HandlerMethod) || request.getDispatcherType() == DispatcherType.ASYNC
+				|| !((HandlerMethod) handler).hasMethodAnnotation(BatchRequest.class)) {
+			return true;
+		}
+
+		final long contentLength = request.getContentLengthLong();
+
+		if (contentLength < 0) {
+			throw new BatchLengthRequiredException();
+		}
+
+		if (contentLength > maxBytes) {
+			throw new BatchSizeExceededException();
+		}
+
+		return true;
+	}
+
+}
@@ -0,0 +1,23 @@
+package com.appointments.api.batch;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+/**
+ * Registers the BatchBodyInterceptor, bounding the batch bodies to
+ * "appointments.batch.max-bytes".
+ */
+@Configuration
+public class BatchConfiguration extends WebMvcConfigurerAdapter {
+
+	@Value("${appointments.batch.max-bytes:1048576}")
+	private long maxBytes;
+
+	@Override
+	public void addInterceptors(final InterceptorRegistry registry) {
+		registry.addInterceptor(new BatchBodyInterceptor(maxBytes));
+	}
+
+}
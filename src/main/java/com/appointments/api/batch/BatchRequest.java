@@ -0,0 +1,18 @@
+package com.appointments.api.batch;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a handler reading a batch of elements from its body, whose size is
+ * checked by BatchBodyInterceptor before the body is read.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface BatchRequest {
+
+}
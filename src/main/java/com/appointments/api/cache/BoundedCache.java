@@ -0,0 +1,234 @@
+package com.appointments.api.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size and TTL bounded in-memory cache.
+ * 
+ * Entries are kept in access order, so once the maximum size is reached the
+ * least recently used entry is evicted. Every entry has its own expiration,
+ * expired entries are dropped on read. Hits, misses and evictions are counted
+ * for the metrics endpoint.
+ *
+ * @param <K>
+ *            key type
+ * @param <V>
+ *            value type
+ */
+public class BoundedCache<K, V> {
+
+	private final String name;
+
+	private final int maxSize;
+
+	private final long ttlNanos;
+
+	private final LinkedHashMap<K, Entry<V>> entries;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * The Constructor.
+	 * 
+	 * @param name
+	 *            name used by the metrics.
+	 * @param maxSize
+	 *            maximum number of entries.
+	 * @param ttl
+	 *            default time to live of the entries.
+	 * @param unit
+	 *            unit of the ttl.
+	 */
+	public BoundedCache(final String name, final int maxSize, final long ttl, final TimeUnit unit) {
+		this.name = name;
+		this.maxSize = maxSize;
+		this.ttlNanos = unit.toNanos(ttl);
+		this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+				if (size() > BoundedCache.this.maxSize) {
+					evictions.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Gets a cached value.
+	 * 
+	 * @param key
+	 * @return the value, null if absent or expired.
+	 */
+	public V get(final K key) {
+
+		synchronized (entries) {
+
+			final Entry<V> entry = entries.get(key);
+
+			if (entry == null) {
+				misses.incrementAndGet();
+				return null;
+			}
+
+			if (entry.isExpired(System.nanoTime())) {
+				entries.remove(key);
+				evictions.incrementAndGet();
+				misses.incrementAndGet();
+				return null;
+			}
+
+			hits.incrementAndGet();
+			return entry.value;
+		}
+	}
+
+	/**
+	 * Gets a cached value without counting a hit or a miss, for write paths
+	 * updating values in place.
+	 * 
+	 * @param key
+	 * @return the value, null if absent or expired.
+	 */
+	public V peek(final K key) {
+
+		synchronized (entries) {
+
+			final Entry<V> entry = entries.get(key);
+
+			return entry == null || entry.isExpired(System.nanoTime()) ? null : entry.value;
+		}
+	}
+
+	/**
+	 * Caches a value with the default time to live.
+	 * 
+	 * @param key
+	 * @param value
+	 */
+	public void put(final K key, final V value) {
+		put(key, value, ttlNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Caches a value with its own time to live.
+	 * 
+	 * @param key
+	 * @param value
+	 * @param ttl
+	 * @param unit
+	 */
+	public void put(final K key, final V value, final long ttl, final TimeUnit unit) {
+
+		final Entry<V> entry = new Entry<>(value, System.nanoTime() + unit.toNanos(ttl));
+
+		synchronized (entries) {
+			entries.put(key, entry);
+		}
+	}
+
+	/**
+	 * Removes a value.
+	 * 
+	 * @param key
+	 */
+	public void invalidate(final K key) {
+
+		synchronized (entries) {
+			entries.remove(key);
+		}
+	}
+
+	/**
+	 * Removes all values.
+	 */
+	public void invalidateAll() {
+
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	/**
+	 * Drops the expired entries, counting them as evictions.
+	 */
+	public void cleanUp() {
+
+		final long now = System.nanoTime();
+
+		synchronized (entries) {
+
+			final Iterator<Entry<V>> iterator = entries.values().iterator();
+
+			while (iterator.hasNext()) {
+				if (iterator.next().isExpired(now)) {
+					iterator.remove();
+					evictions.incrementAndGet();
+				}
+			}
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int size() {
+
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * @return hits over requests, 0 when nothing has been requested yet.
+	 */
+	public double getHitRatio() {
+
+		final long hitCount = hits.get();
+		final long requests = hitCount + misses.get();
+
+		return requests == 0 ? 0 : (double) hitCount / requests;
+	}
+
+	private static class Entry<V> {
+
+		private final V value;
+
+		private final long expiresAt;
+
+		Entry(final V value, final long expiresAt) {
+			this.value = value;
+			this.expiresAt = expiresAt;
+		}
+
+		boolean isExpired(final long now) {
+			return now - expiresAt >= 0;
+		}
+	}
+
+}
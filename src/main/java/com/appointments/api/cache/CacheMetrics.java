@@ -0,0 +1,57 @@
+package com.appointments.api.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import com.appointments.api.slots.FreeSlots;
+import com.appointments.api.timeline.PatientTimelines;
+
+/**
+ * Publishes the counters of the in-memory caches on the /metrics endpoint.
+ */
+@Component
+public class CacheMetrics implements PublicMetrics {
+
+	@Autowired
+	private PatientExistenceCache patientExistenceCache;
+
+	@Autowired
+	private NextWeekAppointmentsCache nextWeekAppointmentsCache;
+
+	@Autowired
+	private PatientTimelines patientTimelines;
+
+	@Autowired
+	private FreeSlots freeSlots;
+
+	@Override
+	public Collection<Metric<?>> metrics() {
+
+		final List<Metric<?>> metrics = new ArrayList<>();
+
+		addMetrics(metrics, patientExistenceCache.getCache());
+		addMetrics(metrics, nextWeekAppointmentsCache.getCache());
+		addMetrics(metrics, patientTimelines.getCache());
+		addMetrics(metrics, freeSlots.getCache());
+
+		return metrics;
+	}
+
+	private void addMetrics(final List<Metric<?>> metrics, final BoundedCache<?, ?> cache) {
+
+		final String prefix = "cache." + cache.getName() + ".";
+
+		metrics.add(new Metric<Integer>(prefix + "size", cache.size()));
+		metrics.add(new Metric<Long>(prefix + "hits", cache.getHits()));
+		metrics.add(new Metric<Long>(prefix + "misses", cache.getMisses()));
+		metrics.add(new Metric<Long>(prefix + "evictions", cache.getEvictions()));
+		metrics.add(new Metric<Double>(prefix + "hit.ratio", cache.getHitRatio()));
+	}
+
+}
@@ -0,0 +1,151 @@
+package com.appointments.api.cache;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.appointments.api.entities.Appointment;
+
+/**
+ * Appointments of the next week (next Monday to the subsequent Sunday).
+ * 
+ * The list is cached per week window, so it rolls over by itself once the
+ * week changes. Writes invalidate it only when the appointment falls inside
+ * the window. The ttl bounds the staleness of writes made by other instances.
+ */
+@Component
+public class NextWeekAppointmentsCache {
+
+	@Value("${appointments.cache.next-week.ttl-seconds:60}")
+	private long ttlSeconds;
+
+	private BoundedCache<LocalDateTime, List<Appointment>> cache;
+
+	// bumped by every invalidation, so a load racing with a write isn't cached
+	private long version;
+
+	@PostConstruct
+	public void init() {
+		cache = new BoundedCache<>("next-week", 2, ttlSeconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Gets the next week's appointments, loading them on a miss.
+	 * 
+	 * @param loader
+	 *            loads the appointments between two dates
+	 * @return unmodifiable list of appointments
+	 */
+	public List<Appointment> get(final BiFunction<LocalDateTime, LocalDateTime, List<Appointment>> loader) {
+
+		final LocalDateTime nextMonday = nextMonday();
+		final List<Appointment> cached = cache.get(nextMonday);
+
+		return cached != null ? cached : reload(loader);
+	}
+
+	/**
+	 * Loads the next week's appointments ignoring the cached ones, and caches
+	 * them, e.g. for a client which must see the writes of other instances.
+	 * 
+	 * @param loader
+	 *            loads the appointments between two dates
+	 * @return unmodifiable list of appointments
+	 */
+	public List<Appointment> reload(final BiFunction<LocalDateTime, LocalDateTime, List<Appointment>> loader) {
+
+		final LocalDateTime nextMonday = nextMonday();
+		final long loadVersion = getVersion();
+		final List<Appointment> appointments = Collections
+				.unmodifiableList(loader.apply(nextMonday, sundayAfter(nextMonday)));
+
+		synchronized (this) {
+			if (version == loadVersion) {
+				cache.put(nextMonday, appointments);
+			}
+		}
+
+		return appointments;
+	}
+
+	/**
+	 * Gets the next week's appointments, loading them on a miss without
+	 * caching them, e.g. when the loader only reads some fields.
+	 * 
+	 * @param loader
+	 *            loads the appointments between two dates
+	 * @return list of appointments
+	 */
+	public List<Appointment> peekOrLoad(final BiFunction<LocalDateTime, LocalDateTime, List<Appointment>> loader) {
+
+		final LocalDateTime nextMonday = nextMonday();
+		final List<Appointment> cached = cache.get(nextMonday);
+
+		return cached != null ? cached : load(loader);
+	}
+
+	/**
+	 * Loads the next week's appointments ignoring the cached ones, without
+	 * caching them.
+	 * 
+	 * @param loader
+	 *            loads the appointments between two dates
+	 * @return list of appointments
+	 */
+	public List<Appointment> load(final BiFunction<LocalDateTime, LocalDateTime, List<Appointment>> loader) {
+
+		final LocalDateTime nextMonday = nextMonday();
+		return loader.apply(nextMonday, sundayAfter(nextMonday));
+	}
+
+	/**
+	 * Invalidates the cached week when the appointment falls inside it.
+	 * 
+	 * @param appointment
+	 *            appointment created or rated
+	 */
+	public void onAppointmentChanged(final Appointment appointment) {
+
+		final LocalDateTime nextMonday = nextMonday();
+		final LocalDateTime start = appointment.getStart();
+
+		if (start == null || start.isBefore(nextMonday) || start.isAfter(sundayAfter(nextMonday))) {
+			return;
+		}
+
+		synchronized (this) {
+			version++;
+			cache.invalidate(nextMonday);
+		}
+	}
+
+	public BoundedCache<LocalDateTime, List<Appointment>> getCache() {
+		return cache;
+	}
+
+	private synchronized long getVersion() {
+		return version;
+	}
+
+	private static LocalDateTime nextMonday() {
+
+		final LocalDateTime todayAtMidnight = LocalDateTime.of(LocalDate.now(), LocalTime.MIDNIGHT);
+		return todayAtMidnight.with(TemporalAdjusters.next(DayOfWeek.MONDAY));
+	}
+
+	private static LocalDateTime sundayAfter(final LocalDateTime monday) {
+		return LocalDateTime.of(monday.with(TemporalAdjusters.next(DayOfWeek.SUNDAY)).toLocalDate(), LocalTime.MAX);
+	}
+
+}
@@ -0,0 +1,141 @@
+package com.appointments.api.cache;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.appointments.api.entities.Patient;
+import com.appointments.api.repositories.PatientRepository;
+
+/**
+ * Known patient ids in front of PatientRepository.exists.
+ * 
+ * Found ids are kept for "appointments.cache.patients.ttl-seconds", unknown
+ * ids are kept for the much shorter
+ * "appointments.cache.patients.negative-ttl-seconds" so a patient created by
+ * another instance becomes visible quickly.
+ */
+@Component
+public class PatientExistenceCache {
+
+	@Autowired
+	private PatientRepository patientRepository;
+
+	@Value("${appointments.cache.patients.max-size:100000}")
+	private int maxSize;
+
+	@Value("${appointments.cache.patients.ttl-seconds:600}")
+	private long ttlSeconds;
+
+	@Value("${appointments.cache.patients.negative-ttl-seconds:5}")
+	private long negativeTtlSeconds;
+
+	private BoundedCache<String, Boolean> cache;
+
+	@PostConstruct
+	public void init() {
+		cache = new BoundedCache<>("patients", maxSize, ttlSeconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Checks whether the patient exists, going to the database only on a
+	 * cache miss.
+	 * 
+	 * @param id
+	 * @return true if the patient exists
+	 */
+	public boolean exists(final String id) {
+
+		if (id == null) {
+			return false;
+		}
+
+		final Boolean cached = cache.get(id);
+
+		if (cached != null) {
+			return cached;
+		}
+
+		final boolean exists = patientRepository.exists(id);
+
+		if (exists) {
+			cache.put(id, Boolean.TRUE);
+		} else {
+			cache.put(id, Boolean.FALSE, negativeTtlSeconds, TimeUnit.SECONDS);
+		}
+
+		return exists;
+	}
+
+	/**
+	 * Checks a set of patients at once, resolving every cache miss with a
+	 * single $in query.
+	 * 
+	 * @param ids
+	 * @return the ids of the existing patients
+	 */
+	public Set<String> findExisting(final Collection<String> ids) {
+
+		final Set<String> existing = new HashSet<>();
+		final Set<String> unknown = new HashSet<>();
+
+		for (String id : ids) {
+
+			final Boolean cached = id == null ? Boolean.FALSE : cache.get(id);
+
+			if (cached == null) {
+				unknown.add(id);
+			} else if (cached) {
+				existing.add(id);
+			}
+		}
+
+		if (unknown.isEmpty()) {
+			return existing;
+		}
+
+		for (Patient patient : patientRepository.findByIdIn(unknown)) {
+			existing.add(patient.getId());
+		}
+
+		for (String id : unknown) {
+			if (existing.contains(id)) {
+				cache.put(id, Boolean.TRUE);
+			} else {
+				cache.put(id, Boolean.FALSE, negativeTtlSeconds, TimeUnit.SECONDS);
+			}
+		}
+
+		return existing;
+	}
+
+	/**
+	 * Registers a patient just inserted.
+	 * 
+	 * @param id
+	 */
+	public void add(final String id) {
+		cache.put(id, Boolean.TRUE);
+	}
+
+	/**
+	 * Forgets a patient, e.g. after its removal.
+	 * 
+	 * @param id
+	 */
+	public void invalidate(final String id) {
+		cache.invalidate(id);
+	}
+
+	public BoundedCache<String, Boolean> getCache() {
+		return cache;
+	}
+
+}
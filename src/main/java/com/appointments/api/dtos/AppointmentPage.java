@@ -0,0 +1,44 @@
+package com.appointments.api.dtos;
+
+import java.util.List;
+
+import com.appointments.api.entities.Appointment;
+
+public class AppointmentPage {
+
+	private final List<Appointment> appointments;
+
+	private final String next;
+
+	/**
+	 * The Constructor.
+	 * 
+	 * @param appointments
+	 *            appointments of the page.
+	 * @param next
+	 *            continuation token of the following page, null on the last
+	 *            page.
+	 */
+	public AppointmentPage(final List<Appointment> appointments, final String next) {
+		this.appointments = appointments;
+		this.next = next;
+	}
+
+	/**
+	 * @return appointments of the page.
+	 */
+	public List<Appointment> getAppointments() {
+		return appointments;
+	}
+
+	/**
+	 * Gets the continuation token to be informed as pageToken for the
+	 * following page.
+	 * 
+	 * @return continuation token, null when there are no more appointments.
+	 */
+	public String getNext() {
+		return next;
+	}
+
+}
@@ -0,0 +1,98 @@
+package com.appointments.api.dtos;
+
+import org.springframework.http.HttpStatus;
+
+import com.appointments.api.exceptions.ApiException;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Outcome of one element of a batch request.
+ *
+ * @param <T>
+ *            type of the created element
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemResult<T> {
+
+	private static final String MISSING_ITEM = "The batch element is null";
+
+	private final int index;
+
+	private final int status;
+
+	private final T item;
+
+	private final ValidationError error;
+
+	private BatchItemResult(final int index, final HttpStatus status, final T item, final ValidationError error) {
+		this.index = index;
+		this.status = status.value();
+		this.item = item;
+		this.error = error;
+	}
+
+	/**
+	 * @param index
+	 *            position of the element in the request.
+	 * @param item
+	 *            the element created.
+	 * @return a created result.
+	 */
+	public static <T> BatchItemResult<T> created(final int index, final T item) {
+		return new BatchItemResult<>(index, HttpStatus.CREATED, item, null);
+	}
+
+	/**
+	 * @param index
+	 *            position of the element in the request.
+	 * @param status
+	 *            status the single element request would have answered.
+	 * @param error
+	 *            the error.
+	 * @return a failed result.
+	 */
+	public static <T> BatchItemResult<T> failed(final int index, final HttpStatus status,
+			final ValidationError error) {
+		return new BatchItemResult<>(index, status, null, error);
+	}
+
+	/**
+	 * @param index
+	 *            position of the null element in the request.
+	 * @return a failed result, as a body failing the validation.
+	 */
+	public static <T> BatchItemResult<T> missing(final int index) {
+		return failed(index, HttpStatus.BAD_REQUEST, new ValidationError(MISSING_ITEM));
+	}
+
+	/**
+	 * Maps a domain exception through its ResponseStatus, as the single
+	 * element request would.
+	 * 
+	 * @param index
+	 *            position of the element in the request.
+	 * @param exception
+	 *            the domain exception.
+	 * @return a failed result.
+	 */
+	public static <T> BatchItemResult<T> failed(final int index, final ApiException exception) {
+		return failed(index, exception.getStatus(), new ValidationError(exception.getReason()));
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	public int getStatus() {
+		return status;
+	}
+
+	public T getItem() {
+		return item;
+	}
+
+	public ValidationError getError() {
+		return error;
+	}
+
+}
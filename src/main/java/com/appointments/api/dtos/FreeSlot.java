@@ -0,0 +1,32 @@
+package com.appointments.api.dtos;
+
+import java.time.LocalDateTime;
+
+public class FreeSlot {
+
+	private final LocalDateTime start;
+
+	private final LocalDateTime end;
+
+	/**
+	 * The Constructor.
+	 * 
+	 * @param start
+	 *            start of the slot.
+	 * @param end
+	 *            end of the slot, exclusive.
+	 */
+	public FreeSlot(final LocalDateTime start, final LocalDateTime end) {
+		this.start = start;
+		this.end = end;
+	}
+
+	public LocalDateTime getStart() {
+		return start;
+	}
+
+	public LocalDateTime getEnd() {
+		return end;
+	}
+
+}
@@ -0,0 +1,48 @@
+package com.appointments.api.dtos;
+
+public class RatingSummary {
+
+	private final long count;
+
+	private final Double mean;
+
+	private final long[] histogram;
+
+	/**
+	 * The Constructor.
+	 * 
+	 * @param count
+	 *            rated appointments.
+	 * @param mean
+	 *            mean rate, null when nothing was rated.
+	 * @param histogram
+	 *            rated appointments by rate, from 0 to 10.
+	 */
+	public RatingSummary(final long count, final Double mean, final long[] histogram) {
+		this.count = count;
+		this.mean = mean;
+		this.histogram = histogram;
+	}
+
+	/**
+	 * @return rated appointments.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return mean rate, null when nothing was rated.
+	 */
+	public Double getMean() {
+		return mean;
+	}
+
+	/**
+	 * @return rated appointments by rate, the position being the rate.
+	 */
+	public long[] getHistogram() {
+		return histogram;
+	}
+
+}
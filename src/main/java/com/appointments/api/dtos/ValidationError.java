@@ -2,11 +2,22 @@ package com.appointments.api.dtos;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+
+import javax.validation.ConstraintViolation;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 
 public class ValidationError  {
 
+	private static final String[] VALIDATION_FAILED = new String[16];
+
+	static {
+		for (int i = 0; i < VALIDATION_FAILED.length; i++) {
+			VALIDATION_FAILED[i] = validationFailed(i);
+		}
+	}
+
 	@JsonInclude(JsonInclude.Include.NON_EMPTY)
 	private final List<String> errors = new ArrayList<>();
 
@@ -22,6 +33,43 @@ public class ValidationError  {
 		this.errorMessage = errorMessage;
 	}
 
+	/**
+	 * Creates the error of a failed bean validation.
+	 * 
+	 * @param errors
+	 *            messages of the violated constraints.
+	 * @return validation error
+	 */
+	public static ValidationError of(final List<String> errors) {
+
+		final ValidationError error = new ValidationError(errors.size() < VALIDATION_FAILED.length
+				? VALIDATION_FAILED[errors.size()] : validationFailed(errors.size()));
+		error.errors.addAll(errors);
+
+		return error;
+	}
+
+	/**
+	 * Creates the error of a failed bean validation.
+	 * 
+	 * @param violations
+	 *            violated constraints.
+	 * @return validation error
+	 */
+	public static ValidationError of(final Set<? extends ConstraintViolation<?>> violations) {
+
+		final List<String> errors = new ArrayList<>();
+		for (final ConstraintViolation<?> violation : violations) {
+			errors.add(violation.getMessage());
+		}
+
+		return of(errors);
+	}
+
+	private static String validationFailed(final int errors) {
+		return "Validation failed. " + errors + " error(s)";
+	}
+
 	/**
 	 * Adds a new validation error.
 	 * 
@@ -8,7 +8,10 @@ import javax.validation.constraints.Null;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 
-@Document
+/**
+ * The collection depends on the layout chosen by AppointmentStorage.
+ */
+@Document(collection = "#{@appointmentStorage.collection}")
 public class Appointment {
 
 	@Id
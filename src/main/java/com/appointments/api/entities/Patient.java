@@ -1,5 +1,9 @@
 package com.appointments.api.entities;
 
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
 import javax.validation.constraints.NotNull;
 
 import org.springframework.data.annotation.Id;
@@ -8,6 +12,8 @@ import org.springframework.data.mongodb.core.mapping.Document;
 @Document
 public class Patient {
 
+	private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
 	@Id
 	private String id;
 
@@ -17,9 +23,14 @@ public class Patient {
 	@NotNull (message = "Patient's surname is mandatory")
 	private String surname;
 
+	// case and accent folded copies backing the prefix search, not exposed
+	private String nameKey;
+
+	private String surnameKey;
+
 	public Patient(String name, String surname) {
-		this.name = name;
-		this.surname = surname;
+		setName(name);
+		setSurname(surname);
 	}
 	
 	public Patient(){
@@ -39,6 +50,7 @@ public class Patient {
 
 	public void setName(String name) {
 		this.name = name;
+		this.nameKey = searchKey(name);
 	}
 
 	public String getSurname() {
@@ -47,6 +59,24 @@ public class Patient {
 
 	public void setSurname(String surname) {
 		this.surname = surname;
+		this.surnameKey = searchKey(surname);
+	}
+
+	/**
+	 * Folds a name for the prefix search: lower case, without accents and
+	 * surrounding spaces, so "Çolins " is stored and searched as "colins".
+	 * 
+	 * @param value
+	 * @return the folded value, null if null
+	 */
+	public static String searchKey(String value) {
+
+		if (value == null) {
+			return null;
+		}
+
+		return MARKS.matcher(Normalizer.normalize(value, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT)
+				.trim();
 	}
 
 	@Override
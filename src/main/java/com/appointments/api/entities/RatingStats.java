@@ -0,0 +1,60 @@
+package com.appointments.api.entities;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Rating counters of a scope (all appointments, a patient or a day),
+ * maintained with $inc on every rating.
+ * 
+ * The histogram is keyed by the rate, as an embedded document rather than an
+ * array so the first upsert of a scope can create it.
+ */
+@Document(collection = "ratingStats")
+public class RatingStats {
+
+	@Id
+	private String id;
+
+	private long count;
+
+	private long sum;
+
+	private Map<String, Long> histogram = new HashMap<>();
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public void setCount(long count) {
+		this.count = count;
+	}
+
+	public long getSum() {
+		return sum;
+	}
+
+	public void setSum(long sum) {
+		this.sum = sum;
+	}
+
+	public Map<String, Long> getHistogram() {
+		return histogram;
+	}
+
+	public void setHistogram(Map<String, Long> histogram) {
+		this.histogram = histogram;
+	}
+
+}
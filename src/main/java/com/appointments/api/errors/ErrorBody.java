@@ -0,0 +1,51 @@
+package com.appointments.api.errors;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.http.MediaType;
+
+/**
+ * Error response body serialized once in every negotiated format, written
+ * as is by ErrorBodyHttpMessageConverter.
+ */
+public class ErrorBody {
+
+	private final Map<MediaType, byte[]> representations;
+
+	/**
+	 * The Constructor.
+	 * 
+	 * @param representations
+	 *            serialized body by media type, in order of preference
+	 */
+	public ErrorBody(final Map<MediaType, byte[]> representations) {
+		this.representations = Collections.unmodifiableMap(new LinkedHashMap<>(representations));
+	}
+
+	/**
+	 * @param mediaType
+	 *            media type negotiated for the response
+	 * @return the body in that type, the first one when none matches
+	 */
+	public byte[] getBytes(final MediaType mediaType) {
+
+		final byte[] exact = mediaType == null ? null : representations.get(mediaType);
+
+		if (exact != null) {
+			return exact;
+		}
+
+		if (mediaType != null) {
+			for (Map.Entry<MediaType, byte[]> representation : representations.entrySet()) {
+				if (representation.getKey().isCompatibleWith(mediaType)) {
+					return representation.getValue();
+				}
+			}
+		}
+
+		return representations.values().iterator().next();
+	}
+
+}
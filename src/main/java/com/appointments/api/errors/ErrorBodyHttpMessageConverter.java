@@ -0,0 +1,48 @@
+package com.appointments.api.errors;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+/**
+ * Writes the precomputed bytes of an ErrorBody in the media type negotiated
+ * for the response, without serializing anything.
+ */
+public class ErrorBodyHttpMessageConverter extends AbstractHttpMessageConverter<ErrorBody> {
+
+	public ErrorBodyHttpMessageConverter(final List<MediaType> mediaTypes) {
+		setSupportedMediaTypes(mediaTypes);
+	}
+
+	@Override
+	protected boolean supports(final Class<?> type) {
+		return ErrorBody.class == type;
+	}
+
+	@Override
+	protected boolean canRead(final MediaType mediaType) {
+		return false;
+	}
+
+	@Override
+	protected ErrorBody readInternal(final Class<? extends ErrorBody> type, final HttpInputMessage inputMessage)
+			throws IOException {
+		throw new HttpMessageNotReadableException("Error bodies are only written");
+	}
+
+	@Override
+	protected Long getContentLength(final ErrorBody body, final MediaType contentType) {
+		return (long) body.getBytes(contentType).length;
+	}
+
+	@Override
+	protected void writeInternal(final ErrorBody body, final HttpOutputMessage outputMessage) throws IOException {
+		outputMessage.getBody().write(body.getBytes(outputMessage.getHeaders().getContentType()));
+	}
+
+}
@@ -0,0 +1,102 @@
+package com.appointments.api.errors;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import com.appointments.api.JacksonBinaryHttpMessageConverter;
+import com.appointments.api.dtos.ValidationError;
+import com.appointments.api.exceptions.ApiException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Error responses of the API, serialized once and reused.
+ * 
+ * The body of an ApiException only depends on its class, so it is serialized
+ * on the first occurrence in JSON and in every binary format negotiated by
+ * JacksonConfiguration. The bodies of the failed bean validations depend on
+ * the violated constraints, whose messages are few: the first
+ * "MAX_VALIDATION_BODIES" combinations are kept. The response entities are
+ * shared as well, their headers being read-only.
+ */
+@Component
+public class ErrorResponses {
+
+	static final int MAX_VALIDATION_BODIES = 256;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private List<JacksonBinaryHttpMessageConverter> binaryConverters;
+
+	private final ConcurrentMap<Class<?>, ResponseEntity<ErrorBody>> exceptionResponses = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<List<String>, ResponseEntity<ErrorBody>> validationResponses = new ConcurrentHashMap<>();
+
+	/**
+	 * @param exception
+	 * @return the response declared by the exception's ResponseStatus, with
+	 *         its reason as error message
+	 */
+	public ResponseEntity<ErrorBody> of(final ApiException exception) {
+
+		return exceptionResponses.computeIfAbsent(exception.getClass(), type -> new ResponseEntity<>(
+				serialize(new ValidationError(exception.getReason())), exception.getStatus()));
+	}
+
+	/**
+	 * @param errors
+	 *            messages of the violated constraints
+	 * @return a 400 response listing them
+	 */
+	public ResponseEntity<ErrorBody> validationFailed(final List<String> errors) {
+
+		ResponseEntity<ErrorBody> response = validationResponses.get(errors);
+
+		if (response == null) {
+
+			response = new ResponseEntity<>(serialize(ValidationError.of(errors)), HttpStatus.BAD_REQUEST);
+
+			if (validationResponses.size() < MAX_VALIDATION_BODIES) {
+				validationResponses.putIfAbsent(new ArrayList<>(errors), response);
+			}
+		}
+
+		return response;
+	}
+
+	private ErrorBody serialize(final ValidationError error) {
+
+		final Map<MediaType, byte[]> representations = new LinkedHashMap<>();
+
+		try {
+			representations.put(MediaType.APPLICATION_JSON, objectMapper.writeValueAsBytes(error));
+
+			for (JacksonBinaryHttpMessageConverter converter : binaryConverters) {
+
+				final byte[] bytes = converter.getObjectMapper().writeValueAsBytes(error);
+
+				for (MediaType mediaType : converter.getSupportedMediaTypes()) {
+					representations.put(mediaType, bytes);
+				}
+			}
+
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException("Failed to serialize the error " + error.getErrorMessage(), e);
+		}
+
+		return new ErrorBody(representations);
+	}
+
+}
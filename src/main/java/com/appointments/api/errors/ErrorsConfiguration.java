@@ -0,0 +1,24 @@
+package com.appointments.api.errors;
+
+import java.util.Arrays;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+
+import com.appointments.api.JacksonBinaryHttpMessageConverter;
+
+/**
+ * Registers the converter of the precomputed error bodies, picked up by
+ * Spring Boot besides the default converters.
+ */
+@Configuration
+public class ErrorsConfiguration {
+
+	@Bean
+	public ErrorBodyHttpMessageConverter errorBodyHttpMessageConverter() {
+		return new ErrorBodyHttpMessageConverter(Arrays.asList(MediaType.APPLICATION_JSON,
+				JacksonBinaryHttpMessageConverter.APPLICATION_SMILE, JacksonBinaryHttpMessageConverter.APPLICATION_CBOR));
+	}
+
+}
@@ -0,0 +1,44 @@
+package com.appointments.api.etag;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Version of the appointment collection as seen by this instance, bumped
+ * after every appointment written (created or rated).
+ * 
+ * The entity tag derived from it also holds a random epoch, so tags don't
+ * survive a restart, and the current time window of
+ * "appointments.etag.window-seconds", which bounds the staleness of writes
+ * made by other instances and of the time based answers (next week, next
+ * appointment).
+ */
+@Component
+public class AppointmentsVersion {
+
+	private final long epoch = ThreadLocalRandom.current().nextLong() >>> 1;
+
+	private final AtomicLong version = new AtomicLong();
+
+	@Value("${appointments.etag.window-seconds:60}")
+	private long windowSeconds;
+
+	public void increment() {
+		version.incrementAndGet();
+	}
+
+	/**
+	 * @return strong entity tag of the current version, quoted
+	 */
+	public String getETag() {
+
+		final long window = System.currentTimeMillis() / (windowSeconds * 1000);
+
+		return "\"" + Long.toString(epoch, 36) + "-" + Long.toString(version.get(), 36) + "-"
+				+ Long.toString(window, 36) + "\"";
+	}
+
+}
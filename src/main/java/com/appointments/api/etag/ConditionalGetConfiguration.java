@@ -0,0 +1,25 @@
+package com.appointments.api.etag;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+/**
+ * Registers the ConditionalGetInterceptor, unless
+ * "appointments.etag.enabled" is false.
+ */
+@Configuration
+@ConditionalOnProperty(name = "appointments.etag.enabled", matchIfMissing = true)
+public class ConditionalGetConfiguration extends WebMvcConfigurerAdapter {
+
+	@Autowired
+	private AppointmentsVersion appointmentsVersion;
+
+	@Override
+	public void addInterceptors(final InterceptorRegistry registry) {
+		registry.addInterceptor(new ConditionalGetInterceptor(appointmentsVersion));
+	}
+
+}
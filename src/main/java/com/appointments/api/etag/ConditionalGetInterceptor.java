@@ -0,0 +1,94 @@
+package com.appointments.api.etag;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import com.appointments.api.reads.ReadRouting;
+
+/**
+ * Conditional GET of the @VersionedResource handlers.
+ * 
+ * The check runs before the handler, so a matching If-None-Match is answered
+ * with a 304 without querying Mongo. The version is read before the handler
+ * too: a write racing with the request can only make the tag older than the
+ * body, costing a full response on the next request, never a stale 304.
+ * 
+ * The version only counts the writes of this instance, so a request pinned
+ * to the primary by ReadYourWritesInterceptor is always answered in full.
+ */
+public class ConditionalGetInterceptor extends HandlerInterceptorAdapter {
+
+	private final AppointmentsVersion appointmentsVersion;
+
+	public ConditionalGetInterceptor(final AppointmentsVersion appointmentsVersion) {
+		this.appointmentsVersion = appointmentsVersion;
+	}
+
+	@Override
+	public boolean preHandle(final HttpServletRequest request, final HttpServletResponse response,
+			final Object handler) {
+
+		if (!(handler instanceof HandlerMethod) || request.getDispatcherType() == DispatcherType.ASYNC
+				|| !"GET".equals(request.getMethod())
+				|| !((HandlerMethod) handler).hasMethodAnnotation(VersionedResource.class)) {
+			return true;
+		}
+
+		final String etag = representationTag(appointmentsVersion.getETag(), request.getHeader(HttpHeaders.ACCEPT));
+		response.setHeader(HttpHeaders.ETAG, etag);
+		response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+
+		if (!ReadRouting.isPinned() && matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+			response.setStatus(HttpStatus.NOT_MODIFIED.value());
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * A strong tag must differ between representations (JSON, Smile, CBOR),
+	 * so the Accept header the content is negotiated from is part of it.
+	 */
+	private static String representationTag(final String etag, final String accept) {
+
+		if (accept == null) {
+			return etag;
+		}
+
+		return etag.substring(0, etag.length() - 1) + "-" + Integer.toString(accept.hashCode() & Integer.MAX_VALUE, 36)
+				+ "\"";
+	}
+
+	/**
+	 * Weak comparison of If-None-Match, as required by RFC 7232.
+	 */
+	private static boolean matches(final String ifNoneMatch, final String etag) {
+
+		if (ifNoneMatch == null) {
+			return false;
+		}
+
+		for (String candidate : ifNoneMatch.split(",")) {
+
+			String tag = candidate.trim();
+
+			if (tag.startsWith("W/")) {
+				tag = tag.substring(2);
+			}
+
+			if (tag.equals(etag) || tag.equals("*")) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+}
@@ -0,0 +1,19 @@
+package com.appointments.api.etag;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a GET handler whose response only depends on the appointments, so it
+ * is tagged with the AppointmentsVersion and answered with a 304 by
+ * ConditionalGetInterceptor when the client already has it.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface VersionedResource {
+
+}
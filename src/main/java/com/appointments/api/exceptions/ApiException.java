@@ -0,0 +1,55 @@
+package com.appointments.api.exceptions;
+
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Base of the exceptions answered to the client, declared with the
+ * {@link ResponseStatus} of their response.
+ * 
+ * They are part of the normal flow of invalid requests, so they don't
+ * capture a stack trace nor accept suppressed exceptions: creating one costs
+ * an object. Their message is the reason of their ResponseStatus, resolved
+ * once per class.
+ */
+public abstract class ApiException extends Exception {
+
+	private static final long serialVersionUID = 4187640173902418457L;
+
+	private static final ClassValue<ResponseStatus> RESPONSE_STATUSES = new ClassValue<ResponseStatus>() {
+
+		@Override
+		protected ResponseStatus computeValue(final Class<?> type) {
+			return AnnotationUtils.findAnnotation(type, ResponseStatus.class);
+		}
+	};
+
+	protected ApiException() {
+		super(null, null, false, false);
+	}
+
+	/**
+	 * @return status of the response, 500 when not declared
+	 */
+	public HttpStatus getStatus() {
+
+		final ResponseStatus responseStatus = RESPONSE_STATUSES.get(getClass());
+		return responseStatus == null ? HttpStatus.INTERNAL_SERVER_ERROR : responseStatus.code();
+	}
+
+	/**
+	 * @return reason of the response, the class name when not declared
+	 */
+	public String getReason() {
+
+		final ResponseStatus responseStatus = RESPONSE_STATUSES.get(getClass());
+		return responseStatus == null ? getClass().getSimpleName() : responseStatus.reason();
+	}
+
+	@Override
+	public String getMessage() {
+		return getReason();
+	}
+
+}
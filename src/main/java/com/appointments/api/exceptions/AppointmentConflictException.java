@@ -0,0 +1,11 @@
+package com.appointments.api.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.CONFLICT, reason = "The appointment overlaps another appointment of the patient")
+public class AppointmentConflictException extends ApiException {
+
+	private static final long serialVersionUID = -4467093862135907218L;
+
+}
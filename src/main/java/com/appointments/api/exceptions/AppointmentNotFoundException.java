@@ -0,0 +1,11 @@
+package com.appointments.api.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.NOT_FOUND, reason = "The Appointment informed has not been found for the patient")
+public class AppointmentNotFoundException extends ApiException {
+
+	private static final long serialVersionUID = -2816330153592361720L;
+
+}
@@ -0,0 +1,11 @@
+package com.appointments.api.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.LENGTH_REQUIRED, reason = "The batch informed must be sent with its Content-Length")
+public class BatchLengthRequiredException extends ApiException {
+
+	private static final long serialVersionUID = 2964185720318446103L;
+
+}
@@ -0,0 +1,11 @@
+package com.appointments.api.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.PAYLOAD_TOO_LARGE, reason = "The batch informed exceeds the maximum batch size")
+public class BatchSizeExceededException extends ApiException {
+
+	private static final long serialVersionUID = 5713628427917310941L;
+
+}
@@ -0,0 +1,11 @@
+package com.appointments.api.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.BAD_REQUEST, reason = "The fields informed are invalid, they must be among id, patientId, start, end and rate")
+public class InvalidFieldsException extends ApiException {
+
+	private static final long serialVersionUID = -6435170352849718302L;
+
+}
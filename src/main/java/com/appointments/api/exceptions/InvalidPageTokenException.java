@@ -0,0 +1,11 @@
+package com.appointments.api.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.BAD_REQUEST, reason = "The page token informed is invalid")
+public class InvalidPageTokenException extends ApiException {
+
+	private static final long serialVersionUID = 3190529617764384602L;
+
+}
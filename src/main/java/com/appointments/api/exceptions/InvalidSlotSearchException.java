@@ -0,0 +1,11 @@
+package com.appointments.api.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.BAD_REQUEST, reason = "The free slot search is invalid, to must be after from and within the maximum range, length and limit must be positive")
+public class InvalidSlotSearchException extends ApiException {
+
+	private static final long serialVersionUID = 3517460912263410745L;
+
+}
@@ -0,0 +1,11 @@
+package com.appointments.api.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE, reason = "Too many requests in progress, try again later")
+public class ServiceOverloadedException extends ApiException {
+
+	private static final long serialVersionUID = -2876359183004127461L;
+
+}
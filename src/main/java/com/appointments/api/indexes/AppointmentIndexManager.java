@@ -0,0 +1,265 @@
+package com.appointments.api.indexes;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.IndexOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.stereotype.Component;
+
+import com.appointments.api.entities.Appointment;
+import com.appointments.api.storage.AppointmentStorage;
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+
+/**
+ * Owns the indexes of the appointment collection.
+ *
+ * At startup every index needed by the query paths of
+ * AppointmentRepository is created (optionally in background) and then each
+ * query shape is explained against the server. A query whose winning plan is
+ * a COLLSCAN either aborts the boot or is logged as a warning, depending on
+ * "appointments.indexes.on-collscan".
+ *
+ * Field names and values follow the layout of AppointmentStorage, as the
+ * index operations don't go through the entity mapping.
+ */
+@Component
+public class AppointmentIndexManager {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(AppointmentIndexManager.class);
+
+	public static final String START_ID_INDEX = "start_id";
+	public static final String PATIENT_START_INDEX = "patientId_start";
+
+	private static final String COLLSCAN = "COLLSCAN";
+	private static final String IXSCAN = "IXSCAN";
+
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+	@Autowired
+	private AppointmentStorage storage;
+
+	@Value("${appointments.indexes.background:false}")
+	private boolean background;
+
+	@Value("${appointments.indexes.verify:true}")
+	private boolean verify;
+
+	@Value("${appointments.indexes.on-collscan:warn}")
+	private String onCollscan;
+
+	@PostConstruct
+	public void init() {
+
+		createIndexes();
+
+		if (verify) {
+			verifyQueryPlans();
+		}
+	}
+
+	/**
+	 * Declares the indexes backing every AppointmentRepository query path.
+	 *
+	 * @return index definitions
+	 */
+	public List<Index> getIndexes() {
+		return getIndexes(storage.isCompact());
+	}
+
+	/**
+	 * @param compact
+	 *            layout of the indexed collection
+	 * @return index definitions
+	 */
+	public List<Index> getIndexes(final boolean compact) {
+
+		final String startField = AppointmentStorage.field("start", compact);
+		final String patientIdField = AppointmentStorage.field(AppointmentStorage.PATIENT_ID, compact);
+
+		// the _id suffix keeps the keyset pagination on (start, id) sort free
+		Index start = new Index().on(startField, Direction.ASC).on("_id", Direction.ASC).named(START_ID_INDEX);
+		Index patientStart = new Index().on(patientIdField, Direction.ASC).on(startField, Direction.ASC)
+				.named(PATIENT_START_INDEX);
+
+		if (background) {
+			start.background();
+			patientStart.background();
+		}
+
+		return Arrays.asList(start, patientStart);
+	}
+
+	private void createIndexes() {
+
+		IndexOperations indexOperations = mongoTemplate.indexOps(Appointment.class);
+
+		for (Index index : getIndexes()) {
+			indexOperations.ensureIndex(index);
+		}
+	}
+
+	/**
+	 * Explains every query shape of AppointmentRepository.
+	 *
+	 * @return names of the queries not resolved through an index scan
+	 */
+	public List<String> findCollscans() {
+
+		List<String> collscans = new ArrayList<>();
+
+		for (QueryShape shape : getQueryShapes()) {
+
+			DBObject plan = explain(shape);
+
+			if (containsStage(plan, COLLSCAN) || !containsStage(plan, IXSCAN)) {
+				collscans.add(shape.name);
+			}
+		}
+
+		return collscans;
+	}
+
+	private void verifyQueryPlans() {
+
+		List<String> collscans = findCollscans();
+
+		if (collscans.isEmpty()) {
+			return;
+		}
+
+		String message = "Appointment queries not covered by an index: " + collscans;
+
+		if ("fail".equalsIgnoreCase(onCollscan)) {
+			throw new IllegalStateException(message);
+		}
+
+		LOGGER.warn(message);
+	}
+
+	private DBObject explain(QueryShape shape) {
+
+		DBCollection collection = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Appointment.class));
+		DBObject explain = collection.find(shape.query).sort(shape.sort).limit(shape.limit).explain();
+
+		DBObject queryPlanner = (DBObject) explain.get("queryPlanner");
+		return queryPlanner == null ? explain : (DBObject) queryPlanner.get("winningPlan");
+	}
+
+	private boolean containsStage(Object plan, String stage) {
+
+		if (!(plan instanceof DBObject)) {
+			return false;
+		}
+
+		DBObject node = (DBObject) plan;
+
+		if (stage.equals(node.get("stage"))) {
+			return true;
+		}
+
+		if (containsStage(node.get("inputStage"), stage)) {
+			return true;
+		}
+
+		Object inputStages = node.get("inputStages");
+
+		if (inputStages instanceof BasicDBList) {
+			for (Object inputStage : (BasicDBList) inputStages) {
+				if (containsStage(inputStage, stage)) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Mirrors the queries of AppointmentRepository.
+	 */
+	private List<QueryShape> getQueryShapes() {
+
+		Date now = toDate(LocalDateTime.now());
+		Date nextWeek = toDate(LocalDateTime.now().plusWeeks(1));
+		ObjectId id = new ObjectId("000000000000000000000000");
+		Object patientId = storage.patientIdValue(id.toHexString());
+		String patientIdField = storage.field(AppointmentStorage.PATIENT_ID);
+		String start = storage.field("start");
+		String end = storage.field("end");
+
+		List<QueryShape> shapes = new ArrayList<>();
+
+		shapes.add(new QueryShape("streamAllByOrderByStartAsc", new BasicDBObject(), new BasicDBObject(start, 1), 0));
+
+		shapes.add(new QueryShape("findAllBy(start desc, id desc)", new BasicDBObject(),
+				new BasicDBObject(start, -1).append("_id", -1), 51));
+
+		BasicDBList pageAfter = new BasicDBList();
+		pageAfter.add(new BasicDBObject(start, new BasicDBObject("$lt", now)));
+		pageAfter.add(new BasicDBObject(start, now).append("_id", new BasicDBObject("$lt", id)));
+
+		shapes.add(new QueryShape("findPageAfter", new BasicDBObject("$or", pageAfter),
+				new BasicDBObject(start, -1).append("_id", -1), 51));
+
+		shapes.add(new QueryShape("findByStartBetween",
+				new BasicDBObject(start, new BasicDBObject("$gt", now).append("$lt", nextWeek)),
+				new BasicDBObject(), 0));
+
+		shapes.add(new QueryShape("findFirstByPatientIdAndStartAfterOrderByStartAsc",
+				new BasicDBObject(patientIdField, patientId).append(start, new BasicDBObject("$gt", now)),
+				new BasicDBObject(start, 1), 1));
+
+		shapes.add(new QueryShape("findFirstByPatientIdAndStartBeforeOrderByStartDesc",
+				new BasicDBObject(patientIdField, patientId).append(start, new BasicDBObject("$lt", now)),
+				new BasicDBObject(start, -1), 1));
+
+		shapes.add(new QueryShape("findByPatientIdAndStartGreaterThanEqual",
+				new BasicDBObject(patientIdField, patientId).append(start, new BasicDBObject("$gte", now)),
+				new BasicDBObject(), 0));
+
+		shapes.add(new QueryShape("findFirstByPatientIdAndStartLessThanAndEndGreaterThan",
+				new BasicDBObject(patientIdField, patientId).append(start, new BasicDBObject("$lt", nextWeek))
+						.append(end, new BasicDBObject("$gt", now)),
+				new BasicDBObject(), 1));
+
+		return shapes;
+	}
+
+	private static Date toDate(LocalDateTime dateTime) {
+		return Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant());
+	}
+
+	private static class QueryShape {
+
+		private final String name;
+		private final DBObject query;
+		private final DBObject sort;
+		private final int limit;
+
+		QueryShape(String name, DBObject query, DBObject sort, int limit) {
+			this.name = name;
+			this.query = query;
+			this.sort = sort;
+			this.limit = limit;
+		}
+	}
+
+}
@@ -0,0 +1,135 @@
+package com.appointments.api.indexes;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.IndexOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.stereotype.Component;
+
+import com.appointments.api.entities.Patient;
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+
+/**
+ * Owns the indexes of the patient collection, backing the prefix search of
+ * PatientRepository.
+ *
+ * The folded name and surname are set by Patient itself. The patients
+ * stored before them are backfilled at startup, found through the
+ * surnameKey_nameKey index on a missing key, in batches of
+ * "appointments.patients.search.backfill-batch-size".
+ */
+@Component
+public class PatientIndexManager {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PatientIndexManager.class);
+
+	public static final String SURNAME_NAME_INDEX = "surnameKey_nameKey";
+	public static final String NAME_SURNAME_INDEX = "nameKey_surnameKey";
+
+	private static final String ID = "_id";
+	private static final String NAME = "name";
+	private static final String SURNAME = "surname";
+	private static final String NAME_KEY = "nameKey";
+	private static final String SURNAME_KEY = "surnameKey";
+
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+	@Value("${appointments.indexes.background:false}")
+	private boolean background;
+
+	@Value("${appointments.patients.search.backfill-batch-size:1000}")
+	private int backfillBatchSize;
+
+	@PostConstruct
+	public void init() {
+
+		final IndexOperations indexOperations = mongoTemplate.indexOps(Patient.class);
+
+		// the _id suffix keeps the (key, other key, id) sort of the search free
+		final Index surnameName = new Index().on(SURNAME_KEY, Direction.ASC).on(NAME_KEY, Direction.ASC)
+				.on(ID, Direction.ASC).named(SURNAME_NAME_INDEX);
+		final Index nameSurname = new Index().on(NAME_KEY, Direction.ASC).on(SURNAME_KEY, Direction.ASC)
+				.on(ID, Direction.ASC).named(NAME_SURNAME_INDEX);
+
+		if (background) {
+			surnameName.background();
+			nameSurname.background();
+		}
+
+		indexOperations.ensureIndex(surnameName);
+		indexOperations.ensureIndex(nameSurname);
+
+		final long backfilled = backfillSearchKeys();
+
+		if (backfilled > 0) {
+			LOGGER.info("Backfilled the search keys of {} patients", backfilled);
+		}
+	}
+
+	/**
+	 * Sets the folded name and surname of the patients missing them.
+	 *
+	 * @return patients updated
+	 */
+	public long backfillSearchKeys() {
+
+		final DBCollection collection = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Patient.class));
+		final DBObject fields = new BasicDBObject(NAME, 1).append(SURNAME, 1);
+
+		long backfilled = 0;
+		Object lastId = null;
+
+		while (true) {
+
+			final BasicDBObject query = new BasicDBObject(SURNAME_KEY, null);
+
+			if (lastId != null) {
+				query.append(ID, new BasicDBObject("$gt", lastId));
+			}
+
+			final BulkWriteOperation bulk = collection.initializeUnorderedBulkOperation();
+			int batch = 0;
+
+			// missing keys are null keys, in _id order in the index
+			try (DBCursor cursor = collection.find(query, fields)
+					.sort(new BasicDBObject(SURNAME_KEY, 1).append(NAME_KEY, 1).append(ID, 1))
+					.hint(SURNAME_NAME_INDEX).limit(backfillBatchSize)) {
+
+				while (cursor.hasNext()) {
+
+					final DBObject patient = cursor.next();
+					lastId = patient.get(ID);
+
+					// a patient stored without surname gets an empty key, so
+					// it isn't selected again
+					final String surnameKey = Patient.searchKey((String) patient.get(SURNAME));
+					final String nameKey = Patient.searchKey((String) patient.get(NAME));
+
+					bulk.find(new BasicDBObject(ID, lastId)).updateOne(new BasicDBObject("$set",
+							new BasicDBObject(SURNAME_KEY, surnameKey == null ? "" : surnameKey).append(NAME_KEY,
+									nameKey == null ? "" : nameKey)));
+					batch++;
+				}
+			}
+
+			if (batch == 0) {
+				return backfilled;
+			}
+
+			bulk.execute();
+			backfilled += batch;
+		}
+	}
+
+}
@@ -0,0 +1,61 @@
+package com.appointments.api.metrics;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+/**
+ * Records the latency of every controller handler method, from the handler
+ * lookup to the completion of the response (streamed bodies included).
+ */
+public class EndpointLatencyInterceptor extends HandlerInterceptorAdapter {
+
+	private static final String START_ATTRIBUTE = EndpointLatencyInterceptor.class.getName() + ".start";
+
+	private final ConcurrentMap<Method, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+	@Override
+	public boolean preHandle(final HttpServletRequest request, final HttpServletResponse response,
+			final Object handler) {
+
+		// the asynchronous requests are dispatched again once their result is ready
+		if (handler instanceof HandlerMethod && request.getAttribute(START_ATTRIBUTE) == null) {
+			request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+		}
+		return true;
+	}
+
+	@Override
+	public void afterCompletion(final HttpServletRequest request, final HttpServletResponse response,
+			final Object handler, final Exception ex) {
+
+		final Object start = request.getAttribute(START_ATTRIBUTE);
+
+		if (start == null) {
+			return;
+		}
+
+		final Method method = ((HandlerMethod) handler).getMethod();
+
+		LatencyHistogram histogram = histograms.get(method);
+		if (histogram == null) {
+			histogram = histograms.computeIfAbsent(method, m -> new LatencyHistogram(
+					"http." + m.getDeclaringClass().getSimpleName() + "." + m.getName()));
+		}
+
+		histogram.record(System.nanoTime() - (Long) start, TimeUnit.NANOSECONDS);
+	}
+
+	public Collection<LatencyHistogram> getHistograms() {
+		return histograms.values();
+	}
+
+}
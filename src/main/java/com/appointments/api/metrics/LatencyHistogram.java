@@ -0,0 +1,134 @@
+package com.appointments.api.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with HDR-style log-linear buckets.
+ * 
+ * Latencies are recorded in microseconds. Every power of two is split in 32
+ * linear sub-buckets, so a percentile is reported with at most ~3% error
+ * whatever the magnitude, up to 2^40 microseconds. Recording is a few atomic
+ * increments and never allocates.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int MAX_EXPONENT = 40;
+	private static final int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final String name;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+	private final LongAdder count = new LongAdder();
+
+	private final LongAdder sum = new LongAdder();
+
+	private final AtomicLong max = new AtomicLong();
+
+	public LatencyHistogram(final String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void record(final long duration, final TimeUnit unit) {
+
+		final long micros = Math.max(0, unit.toMicros(duration));
+
+		buckets.incrementAndGet(bucketOf(micros));
+		count.increment();
+		sum.add(micros);
+
+		long current;
+		while (micros > (current = max.get()) && !max.compareAndSet(current, micros)) {
+			// retry until max is at least micros
+		}
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * @return mean latency in microseconds
+	 */
+	public double getMean() {
+
+		final long total = count.sum();
+		return total == 0 ? 0 : (double) sum.sum() / total;
+	}
+
+	/**
+	 * @return max latency in microseconds
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Highest latency of the bucket holding the given percentile.
+	 * 
+	 * @param percentile
+	 *            between 0 and 100
+	 * @return latency in microseconds, 0 when nothing was recorded
+	 */
+	public long getPercentile(final double percentile) {
+
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			total += buckets.get(i);
+		}
+
+		if (total == 0) {
+			return 0;
+		}
+
+		final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += buckets.get(i);
+			if (seen >= rank) {
+				return Math.min(highestValueOf(i), getMax());
+			}
+		}
+
+		return getMax();
+	}
+
+	static int bucketOf(final long micros) {
+
+		if (micros < SUB_BUCKETS) {
+			return (int) micros;
+		}
+
+		final int exponent = 63 - Long.numberOfLeadingZeros(micros);
+
+		if (exponent > MAX_EXPONENT) {
+			return BUCKETS - 1;
+		}
+
+		final int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+	}
+
+	static long highestValueOf(final int bucket) {
+
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+
+		final int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+		final long subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+
+		return ((SUB_BUCKETS + subBucket) << shift) + (1L << shift) - 1;
+	}
+
+}
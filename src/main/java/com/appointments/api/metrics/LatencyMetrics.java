@@ -0,0 +1,65 @@
+package com.appointments.api.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import com.appointments.api.metrics.MongoCommandLatencyListener.CommandStats;
+
+/**
+ * Publishes the latency histograms of the endpoints and of the Mongo commands
+ * on the /metrics endpoint, in milliseconds.
+ */
+public class LatencyMetrics implements PublicMetrics {
+
+	private final EndpointLatencyInterceptor endpointLatencyInterceptor;
+
+	private final MongoCommandLatencyListener mongoCommandLatencyListener;
+
+	public LatencyMetrics(final EndpointLatencyInterceptor endpointLatencyInterceptor,
+			final MongoCommandLatencyListener mongoCommandLatencyListener) {
+		this.endpointLatencyInterceptor = endpointLatencyInterceptor;
+		this.mongoCommandLatencyListener = mongoCommandLatencyListener;
+	}
+
+	@Override
+	public Collection<Metric<?>> metrics() {
+
+		final List<Metric<?>> metrics = new ArrayList<>();
+
+		for (LatencyHistogram histogram : endpointLatencyInterceptor.getHistograms()) {
+			addMetrics(metrics, histogram);
+		}
+
+		for (CommandStats stats : mongoCommandLatencyListener.getCommands()) {
+
+			final String prefix = "latency." + stats.getHistogram().getName() + ".";
+
+			addMetrics(metrics, stats.getHistogram());
+			metrics.add(new Metric<Long>(prefix + "documents", stats.getDocuments()));
+			metrics.add(new Metric<Long>(prefix + "failures", stats.getFailures()));
+		}
+
+		return metrics;
+	}
+
+	private void addMetrics(final List<Metric<?>> metrics, final LatencyHistogram histogram) {
+
+		final String prefix = "latency." + histogram.getName() + ".";
+
+		metrics.add(new Metric<Long>(prefix + "count", histogram.getCount()));
+		metrics.add(new Metric<Double>(prefix + "mean", millis(histogram.getMean())));
+		metrics.add(new Metric<Double>(prefix + "p50", millis(histogram.getPercentile(50))));
+		metrics.add(new Metric<Double>(prefix + "p95", millis(histogram.getPercentile(95))));
+		metrics.add(new Metric<Double>(prefix + "p99", millis(histogram.getPercentile(99))));
+		metrics.add(new Metric<Double>(prefix + "max", millis(histogram.getMax())));
+	}
+
+	private static double millis(final double micros) {
+		return micros / 1000;
+	}
+
+}
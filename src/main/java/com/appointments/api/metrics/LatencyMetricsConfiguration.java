@@ -0,0 +1,47 @@
+package com.appointments.api.metrics;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+import com.mongodb.MongoClientOptions;
+
+/**
+ * Wires the latency recording of the controllers and of the Mongo commands,
+ * unless "appointments.metrics.latency.enabled" is false.
+ */
+@Configuration
+@ConditionalOnProperty(name = "appointments.metrics.latency.enabled", matchIfMissing = true)
+public class LatencyMetricsConfiguration extends WebMvcConfigurerAdapter {
+
+	@Bean
+	public EndpointLatencyInterceptor endpointLatencyInterceptor() {
+		return new EndpointLatencyInterceptor();
+	}
+
+	@Bean
+	public MongoCommandLatencyListener mongoCommandLatencyListener() {
+		return new MongoCommandLatencyListener();
+	}
+
+	/**
+	 * Picked up by the Mongo auto-configuration to build the MongoClient.
+	 */
+	@Bean
+	public MongoClientOptions mongoClientOptions() {
+		return MongoClientOptions.builder().addCommandListener(mongoCommandLatencyListener()).build();
+	}
+
+	@Bean
+	public LatencyMetrics latencyMetrics() {
+		return new LatencyMetrics(endpointLatencyInterceptor(), mongoCommandLatencyListener());
+	}
+
+	@Override
+	public void addInterceptors(final InterceptorRegistry registry) {
+		registry.addInterceptor(endpointLatencyInterceptor());
+	}
+
+}
@@ -0,0 +1,127 @@
+package com.appointments.api.metrics;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+
+/**
+ * Records the duration of every command sent to Mongo, per collection and
+ * command name, and the number of documents it returned.
+ * 
+ * The collection is only known when the command starts, so it is kept by
+ * request id until the command completes.
+ */
+public class MongoCommandLatencyListener implements CommandListener {
+
+	private static final String NO_COLLECTION = "$cmd";
+
+	private final ConcurrentMap<Integer, String> collections = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<String, CommandStats> commands = new ConcurrentHashMap<>();
+
+	@Override
+	public void commandStarted(final CommandStartedEvent event) {
+		collections.put(event.getRequestId(), collectionOf(event.getCommandName(), event.getCommand()));
+	}
+
+	@Override
+	public void commandSucceeded(final CommandSucceededEvent event) {
+
+		final CommandStats stats = statsOf(event.getRequestId(), event.getCommandName());
+
+		stats.histogram.record(event.getElapsedTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+		stats.documents.add(documentsOf(event.getResponse()));
+	}
+
+	@Override
+	public void commandFailed(final CommandFailedEvent event) {
+
+		final CommandStats stats = statsOf(event.getRequestId(), event.getCommandName());
+
+		stats.histogram.record(event.getElapsedTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+		stats.failures.increment();
+	}
+
+	public Collection<CommandStats> getCommands() {
+		return commands.values();
+	}
+
+	private CommandStats statsOf(final int requestId, final String commandName) {
+
+		final String collection = collections.remove(requestId);
+		final String name = "mongo." + (collection == null ? NO_COLLECTION : collection) + "." + commandName;
+
+		CommandStats stats = commands.get(name);
+		if (stats == null) {
+			stats = commands.computeIfAbsent(name, CommandStats::new);
+		}
+		return stats;
+	}
+
+	private static String collectionOf(final String commandName, final BsonDocument command) {
+
+		// find, insert, update, delete, count, findAndModify, aggregate... name the collection
+		BsonValue collection = command.get(commandName);
+
+		if (collection == null || !collection.isString()) {
+			// getMore
+			collection = command.get("collection");
+		}
+
+		return collection != null && collection.isString() ? collection.asString().getValue() : NO_COLLECTION;
+	}
+
+	private static long documentsOf(final BsonDocument response) {
+
+		final BsonValue cursor = response.get("cursor");
+
+		if (cursor != null && cursor.isDocument()) {
+
+			final BsonDocument batches = cursor.asDocument();
+			final BsonValue batch = batches.containsKey("firstBatch") ? batches.get("firstBatch")
+					: batches.get("nextBatch");
+
+			return batch != null && batch.isArray() ? batch.asArray().size() : 0;
+		}
+
+		// findAndModify
+		final BsonValue value = response.get("value");
+		return value != null && value.isDocument() ? 1 : 0;
+	}
+
+	public static class CommandStats {
+
+		private final LatencyHistogram histogram;
+
+		private final LongAdder documents = new LongAdder();
+
+		private final LongAdder failures = new LongAdder();
+
+		CommandStats(final String name) {
+			this.histogram = new LatencyHistogram(name);
+		}
+
+		public LatencyHistogram getHistogram() {
+			return histogram;
+		}
+
+		public long getDocuments() {
+			return documents.sum();
+		}
+
+		public long getFailures() {
+			return failures.sum();
+		}
+	}
+
+}
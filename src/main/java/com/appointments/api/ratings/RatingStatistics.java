@@ -0,0 +1,359 @@
+package com.appointments.api.ratings;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Component;
+
+import com.appointments.api.archive.AppointmentArchive;
+import com.appointments.api.dtos.RatingSummary;
+import com.appointments.api.entities.Appointment;
+import com.appointments.api.entities.RatingStats;
+
+/**
+ * Rating statistics globally, per patient and per day of the appointment
+ * start.
+ * 
+ * Every rating applies its delta to the three scopes with one unordered bulk
+ * of $inc upserts: a first rate counts the appointment, a re-rate moves it
+ * from the previous rate to the new one. Reading a scope is a lookup by id.
+ * 
+ * The counters are rebuilt from the appointments at startup until a rebuild
+ * is recorded as completed in the "migrations" collection, e.g. on the first
+ * deployment. The rebuild is written to a temporary collection renamed over
+ * the counters once complete, by a single instance holding the rebuild lock:
+ * the other instances starting meanwhile wait for it, so no rating is applied
+ * between the read of the appointments and the rename. Counters found without
+ * the record, written by a version without it, are taken as rebuilt.
+ */
+@Component
+public class RatingStatistics {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(RatingStatistics.class);
+
+	public static final int MAX_RATE = 10;
+
+	private static final String GLOBAL = "global";
+	private static final String PATIENT_PREFIX = "patient:";
+	private static final String DAY_PREFIX = "day:";
+
+	private static final String REBUILD_COLLECTION = "ratingStatsRebuild";
+	private static final String LOCKS_COLLECTION = "locks";
+	private static final String REBUILD_LOCK = "ratingStats.rebuild";
+
+	private static final String MIGRATIONS_COLLECTION = "migrations";
+	private static final String REBUILT = "ratingStatsRebuild";
+
+	private static final long LOCK_POLL_MILLIS = 500;
+
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+	@Autowired
+	private AppointmentArchive appointmentArchive;
+
+	@Value("${appointments.ratings.rebuild-if-empty:true}")
+	private boolean rebuildIfEmpty;
+
+	/**
+	 * Lifetime of the rebuild lock, after which an instance that died while
+	 * rebuilding is taken over. Longer than a rebuild.
+	 */
+	@Value("${appointments.ratings.rebuild-lock-seconds:600}")
+	private long rebuildLockSeconds;
+
+	private final String instanceId = UUID.randomUUID().toString();
+
+	@PostConstruct
+	public void init() {
+
+		while (rebuildIfEmpty && !isRebuilt()) {
+
+			if (acquireRebuildLock()) {
+				try {
+					// rebuilt by another instance since the check
+					if (!isRebuilt()) {
+						rebuild();
+						markRebuilt();
+					}
+				} finally {
+					releaseRebuildLock();
+				}
+				return;
+			}
+
+			LOGGER.info("Waiting for the rating statistics rebuilt by another instance");
+
+			try {
+				TimeUnit.MILLISECONDS.sleep(LOCK_POLL_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted waiting for the rating statistics", e);
+			}
+		}
+	}
+
+	/**
+	 * Applies a rating to the statistics.
+	 * 
+	 * @param rated
+	 *            appointment with its new rate
+	 * @param previousRate
+	 *            rate before the rating, null if it wasn't rated
+	 */
+	public void onRated(final Appointment rated, final Integer previousRate) {
+		onRated(Collections.singletonList(rated), Collections.singletonList(previousRate));
+	}
+
+	/**
+	 * Applies several ratings to the statistics, with one upsert per scope
+	 * summing their deltas.
+	 * 
+	 * @param rated
+	 *            appointments with their new rate
+	 * @param previousRates
+	 *            rate of each appointment before its rating, at the same
+	 *            position, null if it wasn't rated
+	 */
+	public void onRated(final List<Appointment> rated, final List<Integer> previousRates) {
+
+		// count, sum and histogram deltas by scope
+		final Map<String, long[]> deltas = new HashMap<>();
+
+		for (int i = 0; i < rated.size(); i++) {
+
+			final int rate = rated.get(i).getRate();
+			final Integer previousRate = previousRates.get(i);
+
+			if (previousRate != null && previousRate == rate) {
+				continue;
+			}
+
+			for (String id : scopesOf(rated.get(i))) {
+
+				final long[] delta = deltas.computeIfAbsent(id, key -> new long[MAX_RATE + 3]);
+				delta[2 + rate]++;
+
+				if (previousRate == null) {
+					delta[0]++;
+					delta[1] += rate;
+				} else {
+					delta[2 + previousRate]--;
+					delta[1] += rate - previousRate;
+				}
+			}
+		}
+
+		if (deltas.isEmpty()) {
+			return;
+		}
+
+		// the bulk operations don't map the queries, the id is the _id
+		final BulkOperations bulk = mongoTemplate.bulkOps(BulkMode.UNORDERED, RatingStats.class);
+		int upserts = 0;
+
+		for (Map.Entry<String, long[]> entry : deltas.entrySet()) {
+
+			final long[] delta = entry.getValue();
+			final Update update = new Update();
+
+			for (int rate = 0; rate <= MAX_RATE; rate++) {
+				if (delta[2 + rate] != 0) {
+					update.inc("histogram." + rate, delta[2 + rate]);
+				}
+			}
+			if (delta[0] != 0) {
+				update.inc("count", delta[0]);
+			}
+			if (delta[1] != 0) {
+				update.inc("sum", delta[1]);
+			}
+
+			if (!update.getUpdateObject().keySet().isEmpty()) {
+				bulk.upsert(new Query(Criteria.where("_id").is(entry.getKey())), update);
+				upserts++;
+			}
+		}
+
+		if (upserts > 0) {
+			bulk.execute();
+		}
+	}
+
+	public RatingSummary getGlobal() {
+		return summaryOf(GLOBAL);
+	}
+
+	public RatingSummary getPatient(final String patientId) {
+		return summaryOf(PATIENT_PREFIX + patientId);
+	}
+
+	public RatingSummary getDay(final LocalDate day) {
+		return summaryOf(DAY_PREFIX + day);
+	}
+
+	/**
+	 * Recomputes every scope from the rated appointments, archived ones
+	 * included, in a single pass, and replaces the counters with them at once.
+	 * 
+	 * Run under the rebuild lock, no instance rating meanwhile: a rating
+	 * applied during the rebuild would be replaced by the rename. Without any
+	 * rated appointment the counters are left as they are.
+	 */
+	public void rebuild() {
+
+		final Map<String, long[]> histograms = new HashMap<>();
+
+		try (CloseableIterator<Appointment> rated = mongoTemplate
+				.stream(new Query(Criteria.where("rate").ne(null)), Appointment.class)) {
+
+			while (rated.hasNext()) {
+
+				count(histograms, rated.next());
+			}
+		}
+
+		if (appointmentArchive.isEnabled()) {
+			try (Stream<Appointment> archived = appointmentArchive.streamAll()) {
+				archived.filter(appointment -> appointment.getRate() != null)
+						.forEach(appointment -> count(histograms, appointment));
+			}
+		}
+
+		// left over by an interrupted rebuild
+		mongoTemplate.dropCollection(REBUILD_COLLECTION);
+
+		if (histograms.isEmpty()) {
+			LOGGER.info("No rated appointment, no rating statistics to rebuild");
+			return;
+		}
+
+		final BulkOperations bulk = mongoTemplate.bulkOps(BulkMode.UNORDERED, RatingStats.class,
+				REBUILD_COLLECTION);
+
+		for (Map.Entry<String, long[]> entry : histograms.entrySet()) {
+
+			final RatingStats stats = new RatingStats();
+			stats.setId(entry.getKey());
+
+			final long[] histogram = entry.getValue();
+			for (int rate = 0; rate <= MAX_RATE; rate++) {
+				if (histogram[rate] > 0) {
+					stats.getHistogram().put(String.valueOf(rate), histogram[rate]);
+					stats.setCount(stats.getCount() + histogram[rate]);
+					stats.setSum(stats.getSum() + rate * histogram[rate]);
+				}
+			}
+
+			bulk.insert(stats);
+		}
+
+		bulk.execute();
+
+		mongoTemplate.getCollection(REBUILD_COLLECTION).rename(mongoTemplate.getCollectionName(RatingStats.class),
+				true);
+
+		LOGGER.info("Rebuilt {} rating statistics", histograms.size());
+	}
+
+	/**
+	 * @return whether a rebuild completed, or counters were maintained before
+	 *         the rebuilds were recorded
+	 */
+	private boolean isRebuilt() {
+
+		if (mongoTemplate.exists(new Query(Criteria.where("_id").is(REBUILT)), MIGRATIONS_COLLECTION)) {
+			return true;
+		}
+
+		if (mongoTemplate.count(new Query(), RatingStats.class) > 0) {
+			markRebuilt();
+			return true;
+		}
+
+		return false;
+	}
+
+	private void markRebuilt() {
+		mongoTemplate.upsert(new Query(Criteria.where("_id").is(REBUILT)),
+				new Update().set("completedAt", new Date()), MIGRATIONS_COLLECTION);
+	}
+
+	/**
+	 * Takes the rebuild lock when free or expired: the upsert matches an
+	 * expired lock, or inserts a new one and fails on a live one.
+	 * 
+	 * @return whether this instance holds the lock
+	 */
+	private boolean acquireRebuildLock() {
+
+		final Date now = new Date();
+
+		try {
+			mongoTemplate.upsert(
+					new Query(Criteria.where("_id").is(REBUILD_LOCK).and("expiresAt").lt(now)),
+					new Update().set("owner", instanceId).set("expiresAt",
+							new Date(now.getTime() + TimeUnit.SECONDS.toMillis(rebuildLockSeconds))),
+					LOCKS_COLLECTION);
+			return true;
+
+		} catch (DuplicateKeyException e) {
+			return false;
+		}
+	}
+
+	private void releaseRebuildLock() {
+		mongoTemplate.remove(new Query(Criteria.where("_id").is(REBUILD_LOCK).and("owner").is(instanceId)),
+				LOCKS_COLLECTION);
+	}
+
+	private static void count(final Map<String, long[]> histograms, final Appointment appointment) {
+
+		for (String id : scopesOf(appointment)) {
+			histograms.computeIfAbsent(id, key -> new long[MAX_RATE + 1])[appointment.getRate()]++;
+		}
+	}
+
+	private static String[] scopesOf(final Appointment appointment) {
+		return new String[] { GLOBAL, PATIENT_PREFIX + appointment.getPatientId(),
+				DAY_PREFIX + appointment.getStart().toLocalDate() };
+	}
+
+	private RatingSummary summaryOf(final String id) {
+
+		final RatingStats stats = mongoTemplate.findById(id, RatingStats.class);
+		final long[] histogram = new long[MAX_RATE + 1];
+
+		if (stats == null || stats.getCount() == 0) {
+			return new RatingSummary(0, null, histogram);
+		}
+
+		for (Map.Entry<String, Long> entry : stats.getHistogram().entrySet()) {
+			histogram[Integer.parseInt(entry.getKey())] = entry.getValue();
+		}
+
+		return new RatingSummary(stats.getCount(), (double) stats.getSum() / stats.getCount(), histogram);
+	}
+
+}
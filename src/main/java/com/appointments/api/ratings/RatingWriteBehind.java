@@ -0,0 +1,320 @@
+package com.appointments.api.ratings;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import com.appointments.api.metrics.LatencyHistogram;
+
+/**
+ * Write-behind queue of the ratings, on when
+ * "appointments.ratings.write-behind.enabled" is true.
+ *
+ * A rating is acknowledged once queued. The queue holds one pending rating
+ * per appointment, a later rating of the same appointment replacing the
+ * queued one, and is bounded by "appointments.ratings.write-behind.capacity"
+ * appointments. A single thread drains it every
+ * "appointments.ratings.write-behind.flush-interval-millis" and hands the
+ * ratings to the writer in batches, so the writes are never concurrent. A
+ * batch failing to be written is queued again, unless a newer rating of the
+ * appointment was queued meanwhile.
+ *
+ * On shutdown the queue closes, rejecting the ratings like a full queue,
+ * and is flushed before the beans are destroyed. It stays running until the
+ * last flush is done, so the ratings are never written by another thread
+ * meanwhile.
+ */
+@Component
+public class RatingWriteBehind implements SmartLifecycle {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(RatingWriteBehind.class);
+
+	@Value("${appointments.ratings.write-behind.enabled:false}")
+	private boolean enabled;
+
+	@Value("${appointments.ratings.write-behind.capacity:100000}")
+	private int capacity;
+
+	@Value("${appointments.ratings.write-behind.flush-interval-millis:200}")
+	private long flushIntervalMillis;
+
+	@Value("${appointments.ratings.write-behind.batch-size:1000}")
+	private int batchSize;
+
+	private final ConcurrentMap<String, PendingRating> pending = new ConcurrentHashMap<>();
+
+	private final LongAdder queued = new LongAdder();
+
+	private final LongAdder coalesced = new LongAdder();
+
+	private final LongAdder rejected = new LongAdder();
+
+	private final LongAdder flushed = new LongAdder();
+
+	private final LongAdder failures = new LongAdder();
+
+	private final LatencyHistogram flushLatency = new LatencyHistogram("ratings.flush");
+
+	private volatile Consumer<List<PendingRating>> writer;
+
+	private volatile boolean running;
+
+	private volatile boolean closing;
+
+	// offers hold the read lock, so none is in progress once closed
+	private final ReadWriteLock closingLock = new ReentrantReadWriteLock();
+
+	private ScheduledExecutorService flusher;
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @param writer
+	 *            writes a batch of ratings, at most one call at a time
+	 */
+	public void setWriter(final Consumer<List<PendingRating>> writer) {
+		this.writer = writer;
+	}
+
+	/**
+	 * Queues a rating, replacing the one pending for the same appointment.
+	 *
+	 * @param appointmentId
+	 * @param patientId
+	 * @param rate
+	 * @return false if the queue is full or closing
+	 */
+	public boolean offer(final String appointmentId, final String patientId, final Integer rate) {
+
+		final Lock lock = closingLock.readLock();
+		lock.lock();
+
+		try {
+			if (closing || !pending.containsKey(appointmentId) && pending.size() >= capacity) {
+				rejected.increment();
+				return false;
+			}
+
+			final PendingRating previous = pending.put(appointmentId,
+					new PendingRating(appointmentId, patientId, rate));
+
+			queued.increment();
+			if (previous != null) {
+				coalesced.increment();
+			}
+
+			return true;
+
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean isAutoStartup() {
+		return enabled;
+	}
+
+	@Override
+	public synchronized void start() {
+
+		if (running) {
+			return;
+		}
+
+		flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+			final Thread thread = new Thread(task, "ratings-flush");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+		closing = false;
+		running = true;
+	}
+
+	@Override
+	public synchronized void stop() {
+
+		if (!running) {
+			return;
+		}
+
+		final Lock lock = closingLock.writeLock();
+		lock.lock();
+
+		try {
+			closing = true;
+		} finally {
+			lock.unlock();
+		}
+
+		flusher.shutdown();
+
+		try {
+			if (!flusher.awaitTermination(30, TimeUnit.SECONDS)) {
+				LOGGER.warn("The ratings flush did not complete on shutdown");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		// the flusher is done, this thread is the only writer left
+		flush();
+		running = false;
+
+		if (!pending.isEmpty()) {
+			LOGGER.error("{} ratings could not be written on shutdown", pending.size());
+		}
+	}
+
+	@Override
+	public void stop(final Runnable callback) {
+		stop();
+		callback.run();
+	}
+
+	/**
+	 * @return whether the ratings go through the queue, from the start until
+	 *         the last flush of the stop
+	 */
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * @return whether the queue rejects the ratings, once stopping
+	 */
+	public boolean isClosing() {
+		return closing;
+	}
+
+	@Override
+	public int getPhase() {
+		return 0;
+	}
+
+	/**
+	 * Writes the pending ratings until the queue is empty or a batch fails.
+	 */
+	void flush() {
+
+		while (!pending.isEmpty()) {
+
+			final List<PendingRating> batch = drain();
+			final long start = System.nanoTime();
+
+			try {
+				writer.accept(batch);
+				flushed.add(batch.size());
+
+			} catch (RuntimeException e) {
+				failures.increment();
+				LOGGER.error("Failed to write " + batch.size() + " ratings, queued again", e);
+
+				for (PendingRating rating : batch) {
+					pending.putIfAbsent(rating.getAppointmentId(), rating);
+				}
+				return;
+
+			} finally {
+				flushLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+			}
+		}
+	}
+
+	private List<PendingRating> drain() {
+
+		final List<PendingRating> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+		final Iterator<String> appointmentIds = pending.keySet().iterator();
+
+		while (batch.size() < batchSize && appointmentIds.hasNext()) {
+
+			final PendingRating rating = pending.remove(appointmentIds.next());
+
+			if (rating != null) {
+				batch.add(rating);
+			}
+		}
+
+		return batch;
+	}
+
+	public int getDepth() {
+		return pending.size();
+	}
+
+	public long getQueued() {
+		return queued.sum();
+	}
+
+	public long getCoalesced() {
+		return coalesced.sum();
+	}
+
+	public long getRejected() {
+		return rejected.sum();
+	}
+
+	public long getFlushed() {
+		return flushed.sum();
+	}
+
+	public long getFailures() {
+		return failures.sum();
+	}
+
+	public LatencyHistogram getFlushLatency() {
+		return flushLatency;
+	}
+
+	/**
+	 * Latest rating of an appointment waiting to be written.
+	 */
+	public static class PendingRating {
+
+		private final String appointmentId;
+
+		private final String patientId;
+
+		private final Integer rate;
+
+		PendingRating(final String appointmentId, final String patientId, final Integer rate) {
+			this.appointmentId = appointmentId;
+			this.patientId = patientId;
+			this.rate = rate;
+		}
+
+		public String getAppointmentId() {
+			return appointmentId;
+		}
+
+		public String getPatientId() {
+			return patientId;
+		}
+
+		public Integer getRate() {
+			return rate;
+		}
+	}
+
+}
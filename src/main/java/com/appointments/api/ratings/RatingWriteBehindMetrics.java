@@ -0,0 +1,53 @@
+package com.appointments.api.ratings;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import com.appointments.api.metrics.LatencyHistogram;
+
+/**
+ * Publishes the depth and the flush latency of the rating write-behind
+ * queue on the /metrics endpoint, when it is enabled.
+ */
+@Component
+public class RatingWriteBehindMetrics implements PublicMetrics {
+
+	@Autowired
+	private RatingWriteBehind ratingWriteBehind;
+
+	@Override
+	public Collection<Metric<?>> metrics() {
+
+		final List<Metric<?>> metrics = new ArrayList<>();
+
+		if (!ratingWriteBehind.isEnabled()) {
+			return metrics;
+		}
+
+		metrics.add(new Metric<Integer>("ratings.queue.depth", ratingWriteBehind.getDepth()));
+		metrics.add(new Metric<Long>("ratings.queue.queued", ratingWriteBehind.getQueued()));
+		metrics.add(new Metric<Long>("ratings.queue.coalesced", ratingWriteBehind.getCoalesced()));
+		metrics.add(new Metric<Long>("ratings.queue.rejected", ratingWriteBehind.getRejected()));
+		metrics.add(new Metric<Long>("ratings.queue.flushed", ratingWriteBehind.getFlushed()));
+		metrics.add(new Metric<Long>("ratings.queue.failures", ratingWriteBehind.getFailures()));
+
+		final LatencyHistogram flush = ratingWriteBehind.getFlushLatency();
+		final String prefix = "latency." + flush.getName() + ".";
+
+		metrics.add(new Metric<Long>(prefix + "count", flush.getCount()));
+		metrics.add(new Metric<Double>(prefix + "mean", flush.getMean() / 1000));
+		metrics.add(new Metric<Double>(prefix + "p50", flush.getPercentile(50) / 1000d));
+		metrics.add(new Metric<Double>(prefix + "p95", flush.getPercentile(95) / 1000d));
+		metrics.add(new Metric<Double>(prefix + "p99", flush.getPercentile(99) / 1000d));
+		metrics.add(new Metric<Double>(prefix + "max", flush.getMax() / 1000d));
+
+		return metrics;
+	}
+
+}
@@ -0,0 +1,104 @@
+package com.appointments.api.reads;
+
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Routes the reads of read-only service methods to the secondaries, when
+ * "appointments.reads.secondary.enabled" is true.
+ * 
+ * The reads run in {@link #onSecondary(Supplier)} go through the secondary
+ * MongoClient of RoutingMongoDbFactory, bounded by
+ * "appointments.reads.secondary.max-staleness-seconds". A request of a
+ * client pinned by ReadYourWritesInterceptor, i.e. which created or rated
+ * shortly before, stays on the primary. The per-instance caches check
+ * {@link #isPinned()} too, so such a request neither gets a 304 nor an
+ * answer from the timelines, the next week cache or the days of the free
+ * slots, which miss the writes made through other instances.
+ */
+@Component
+public class ReadRouting {
+
+	private static final ThreadLocal<Boolean> SECONDARY = new ThreadLocal<>();
+
+	private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+
+	@Value("${appointments.reads.secondary.enabled:false}")
+	private boolean enabled;
+
+	/**
+	 * Runs the reads on a secondary, unless the current request is pinned to
+	 * the primary. Reads meant to be cached must not go through it, a stale
+	 * answer would outlive the staleness bound.
+	 * 
+	 * @param reads
+	 * @return result of the reads
+	 */
+	public <T> T onSecondary(final Supplier<T> reads) {
+
+		if (!enabled || isPinned() || isSecondary()) {
+			return reads.get();
+		}
+
+		SECONDARY.set(Boolean.TRUE);
+
+		try {
+			return reads.get();
+		} finally {
+			SECONDARY.remove();
+		}
+	}
+
+	/**
+	 * @return whether the Mongo operations of the current thread go to a
+	 *         secondary
+	 */
+	static boolean isSecondary() {
+		return SECONDARY.get() != null;
+	}
+
+	/**
+	 * @return whether the current request must see the writes of its client,
+	 *         whatever instance made them
+	 */
+	public static boolean isPinned() {
+		return PINNED.get() != null;
+	}
+
+	/**
+	 * Keeps the reads of the current request on the primary.
+	 */
+	static void pin() {
+		PINNED.set(Boolean.TRUE);
+	}
+
+	static void unpin() {
+		PINNED.remove();
+	}
+
+	/**
+	 * Carries the pin of the submitting request to a task run on another
+	 * thread, e.g. by the asynchronous mode.
+	 * 
+	 * @param task
+	 * @return decorated task
+	 */
+	public static Runnable propagate(final Runnable task) {
+
+		if (!isPinned()) {
+			return task;
+		}
+
+		return () -> {
+			pin();
+			try {
+				task.run();
+			} finally {
+				unpin();
+			}
+		};
+	}
+
+}
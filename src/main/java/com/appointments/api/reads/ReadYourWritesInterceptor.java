@@ -0,0 +1,88 @@
+package com.appointments.api.reads;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+/**
+ * Pins to the primary the reads of a client which wrote shortly before.
+ * 
+ * Every create or rate sets a cookie holding the end of the pin, as long as
+ * the staleness bound of the secondaries, and the requests carrying a
+ * running pin read from the primary. The pin travels with the client, so it
+ * holds whatever instance serves the following requests: the routed reads
+ * stay on the primary, and the conditional GETs, the timelines, the next
+ * week cache and the days of the free slots, which only see the writes of
+ * their own instance, are skipped.
+ */
+class ReadYourWritesInterceptor extends HandlerInterceptorAdapter {
+
+	static final String COOKIE = "appointments-read-primary";
+
+	private final int pinSeconds;
+
+	ReadYourWritesInterceptor(final int pinSeconds) {
+		this.pinSeconds = pinSeconds;
+	}
+
+	@Override
+	public boolean preHandle(final HttpServletRequest request, final HttpServletResponse response,
+			final Object handler) {
+
+		final long now = System.currentTimeMillis();
+
+		if (HttpMethod.GET.matches(request.getMethod()) || HttpMethod.HEAD.matches(request.getMethod())) {
+
+			if (pinnedUntil(request) > now) {
+				ReadRouting.pin();
+			}
+			return true;
+		}
+
+		// set before the handler, the response is committed by the time it
+		// returns; a failed write only costs a few reads on the primary
+		final Cookie cookie = new Cookie(COOKIE, String.valueOf(now + pinSeconds * 1000L));
+		cookie.setMaxAge(pinSeconds);
+		cookie.setPath("/");
+		cookie.setHttpOnly(true);
+		response.addCookie(cookie);
+
+		ReadRouting.pin();
+		return true;
+	}
+
+	@Override
+	public void afterConcurrentHandlingStarted(final HttpServletRequest request, final HttpServletResponse response,
+			final Object handler) {
+		ReadRouting.unpin();
+	}
+
+	@Override
+	public void afterCompletion(final HttpServletRequest request, final HttpServletResponse response,
+			final Object handler, final Exception ex) {
+		ReadRouting.unpin();
+	}
+
+	private static long pinnedUntil(final HttpServletRequest request) {
+
+		if (request.getCookies() == null) {
+			return 0;
+		}
+
+		for (Cookie cookie : request.getCookies()) {
+			if (COOKIE.equals(cookie.getName())) {
+				try {
+					return Long.parseLong(cookie.getValue());
+				} catch (NumberFormatException e) {
+					return 0;
+				}
+			}
+		}
+
+		return 0;
+	}
+
+}
@@ -0,0 +1,59 @@
+package com.appointments.api.reads;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.support.PersistenceExceptionTranslator;
+import org.springframework.data.mongodb.MongoDbFactory;
+import org.springframework.data.mongodb.core.SimpleMongoDbFactory;
+
+import com.mongodb.DB;
+import com.mongodb.MongoClient;
+
+/**
+ * Hands the MongoTemplate the database of the secondary MongoClient inside
+ * ReadRouting.onSecondary, of the primary one otherwise. The template
+ * resolves the database on every operation, so the repositories are routed
+ * without knowing it.
+ * 
+ * The secondary MongoClient is owned by the factory, it is not a bean so the
+ * Mongo auto-configuration still creates the primary one.
+ */
+class RoutingMongoDbFactory implements MongoDbFactory, DisposableBean {
+
+	private final MongoDbFactory primary;
+
+	private final MongoClient secondaryClient;
+
+	private final MongoDbFactory secondary;
+
+	RoutingMongoDbFactory(final MongoDbFactory primary, final MongoClient secondaryClient, final String database) {
+		this.primary = primary;
+		this.secondaryClient = secondaryClient;
+		this.secondary = new SimpleMongoDbFactory(secondaryClient, database);
+	}
+
+	@Override
+	public DB getDb() throws DataAccessException {
+		return current().getDb();
+	}
+
+	@Override
+	public DB getDb(final String dbName) throws DataAccessException {
+		return current().getDb(dbName);
+	}
+
+	@Override
+	public PersistenceExceptionTranslator getExceptionTranslator() {
+		return primary.getExceptionTranslator();
+	}
+
+	@Override
+	public void destroy() {
+		secondaryClient.close();
+	}
+
+	private MongoDbFactory current() {
+		return ReadRouting.isSecondary() ? secondary : primary;
+	}
+
+}
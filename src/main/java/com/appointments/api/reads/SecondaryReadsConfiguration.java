@@ -0,0 +1,71 @@
+package com.appointments.api.reads;
+
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.mongo.MongoProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.env.Environment;
+import org.springframework.data.mongodb.MongoDbFactory;
+import org.springframework.data.mongodb.core.SimpleMongoDbFactory;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientOptions;
+import com.mongodb.ReadPreference;
+
+/**
+ * Wires the secondary reads when "appointments.reads.secondary.enabled" is
+ * true: the RoutingMongoDbFactory, replacing the one of the Mongo
+ * auto-configuration, with a second MongoClient reading from
+ * secondaryPreferred within the max staleness, and the
+ * ReadYourWritesInterceptor, registered first so the pin is known to the
+ * other interceptors.
+ */
+@Configuration
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(name = "appointments.reads.secondary.enabled")
+public class SecondaryReadsConfiguration extends WebMvcConfigurerAdapter {
+
+	@Autowired
+	private MongoProperties mongoProperties;
+
+	@Autowired
+	private Environment environment;
+
+	@Autowired(required = false)
+	private MongoClientOptions mongoClientOptions;
+
+	/**
+	 * The driver accepts no bound under 90 seconds.
+	 */
+	@Value("${appointments.reads.secondary.max-staleness-seconds:90}")
+	private int maxStalenessSeconds;
+
+	@Bean
+	public MongoDbFactory mongoDbFactory(final MongoClient mongo) throws UnknownHostException {
+
+		final MongoClientOptions.Builder options = mongoClientOptions == null ? MongoClientOptions.builder()
+				: MongoClientOptions.builder(mongoClientOptions);
+
+		options.readPreference(ReadPreference.secondaryPreferred(maxStalenessSeconds, TimeUnit.SECONDS));
+
+		final MongoClient secondary = mongoProperties.createMongoClient(options.build(), environment);
+		final String database = mongoProperties.getMongoClientDatabase();
+
+		return new RoutingMongoDbFactory(new SimpleMongoDbFactory(mongo, database), secondary, database);
+	}
+
+	@Override
+	public void addInterceptors(final InterceptorRegistry registry) {
+		registry.addInterceptor(new ReadYourWritesInterceptor(maxStalenessSeconds));
+	}
+
+}
@@ -2,17 +2,32 @@ package com.appointments.api.repositories;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 
 import com.appointments.api.entities.Appointment;
 
-public interface AppointmentRepository extends MongoRepository<Appointment, String> {
+public interface AppointmentRepository extends MongoRepository<Appointment, String>, AppointmentRepositoryCustom {
 
 	List<Appointment> findByStartBetween(LocalDateTime from, LocalDateTime to);
 
-	Appointment findFirstByPatientIdAndStartAfterOrderByStartAsc(String id, LocalDateTime now);
+	List<Appointment> findAllBy(Pageable pageable);
 
-	Appointment findFirstByPatientIdAndStartBeforeOrderByStartDesc(String id, LocalDateTime now);
+	/**
+	 * Reads every appointment through a Mongo cursor. The stream must be
+	 * closed after its consumption.
+	 */
+	Stream<Appointment> streamAllByOrderByStartAsc();
+
+	/**
+	 * Keyset pagination on (start desc, id desc): appointments strictly
+	 * after the given key.
+	 */
+	@Query("{ $or : [ { start : { $lt : ?0 } }, { start : ?0, _id : { $lt : ?1 } } ] }")
+	List<Appointment> findPageAfter(LocalDateTime start, ObjectId id, Pageable pageable);
 
 }
@@ -0,0 +1,108 @@
+package com.appointments.api.repositories;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bson.types.ObjectId;
+
+import com.appointments.api.entities.Appointment;
+
+/**
+ * Appointment operations that cannot be derived by Spring Data, implemented
+ * by AppointmentRepositoryImpl.
+ */
+public interface AppointmentRepositoryCustom {
+
+	/*
+	 * The patient queries are written by hand as the patient id is stored as
+	 * an ObjectId by the compact layout, see AppointmentStorage.
+	 */
+
+	Appointment findFirstByPatientIdAndStartAfterOrderByStartAsc(String patientId, LocalDateTime now);
+
+	Appointment findFirstByPatientIdAndStartBeforeOrderByStartDesc(String patientId, LocalDateTime now);
+
+	List<Appointment> findByPatientId(String patientId);
+
+	Appointment findFirstByPatientIdAndStartLessThanAndEndGreaterThan(String patientId, LocalDateTime end,
+			LocalDateTime start);
+
+	List<Appointment> findByPatientIdAndStartGreaterThanEqual(String patientId, LocalDateTime from);
+
+	Appointment findByIdAndPatientId(String id, String patientId);
+
+	/**
+	 * Atomically sets the rate of the given appointment of the patient.
+	 * 
+	 * @param id
+	 *            appointment id
+	 * @param patientId
+	 * @param rate
+	 * @return the appointment before the update, null if the patient has no
+	 *         such appointment
+	 */
+	Appointment rateById(String id, String patientId, Integer rate);
+
+	/**
+	 * Sets the rates of several appointments with one unordered bulk write,
+	 * for the write-behind ratings. Each appointment is only rated if its
+	 * rate is still the expected one.
+	 * 
+	 * @param rates
+	 *            rate by appointment id
+	 * @param expectedRates
+	 *            current rate by appointment id, null if not rated
+	 * @return number of appointments rated
+	 */
+	int setRates(Map<String, Integer> rates, Map<String, Integer> expectedRates);
+
+	/**
+	 * Atomically sets the rate of the latest appointment of the patient
+	 * started before the given date.
+	 * 
+	 * @param patientId
+	 * @param before
+	 * @param rate
+	 * @return the appointment before the update, null if the patient has no
+	 *         appointment started before the date
+	 */
+	Appointment rateLastStartedBefore(String patientId, LocalDateTime before, Integer rate);
+
+	/**
+	 * Inserts the appointments with one unordered bulk write, assigning their
+	 * ids beforehand.
+	 * 
+	 * @param appointments
+	 * @return error message by position of the appointments not inserted
+	 */
+	Map<Integer, String> insertUnordered(List<Appointment> appointments);
+
+	/**
+	 * Page of appointments by start desc, id desc, like findAllBy and
+	 * findPageAfter, projecting only the given fields.
+	 * 
+	 * @param start
+	 *            start of the last appointment of the previous page, null for
+	 *            the first page
+	 * @param id
+	 *            id of the last appointment of the previous page
+	 * @param limit
+	 * @param fields
+	 * @return appointments holding only the given fields
+	 */
+	List<Appointment> findProjectedPage(LocalDateTime start, ObjectId id, int limit, Set<String> fields);
+
+	/**
+	 * Appointments started between two dates, like findByStartBetween,
+	 * projecting only the given fields.
+	 * 
+	 * @param from
+	 * @param to
+	 * @param fields
+	 * @return appointments holding only the given fields
+	 */
+	List<Appointment> findProjectedBetween(LocalDateTime from, LocalDateTime to, Set<String> fields);
+
+}
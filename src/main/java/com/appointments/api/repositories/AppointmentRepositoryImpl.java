@@ -0,0 +1,193 @@
+package com.appointments.api.repositories;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.appointments.api.entities.Appointment;
+import com.appointments.api.storage.AppointmentStorage;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+
+/**
+ * Rates appointments with a single findAndModify matching the appointment and
+ * its patient together, so only the rate is written and concurrent raters
+ * can't overwrite each other's documents. The document is returned as it was
+ * before the update, so the previous rate is known atomically. Batches are
+ * inserted, and the write-behind ratings set, with one unordered bulk write.
+ * The projected queries mirror the derived ones, so they run on the same
+ * indexes.
+ * 
+ * The patient id is matched through AppointmentStorage, and the batches are
+ * written in its layout as the bulk writes skip the mapping events.
+ */
+public class AppointmentRepositoryImpl implements AppointmentRepositoryCustom {
+
+	private static final Sort START_ASC = new Sort(Direction.ASC, "start");
+
+	private static final Sort START_DESC = new Sort(Direction.DESC, "start");
+
+	private static final Sort START_ID_DESC = new Sort(Direction.DESC, "start", "id");
+
+	private static final FindAndModifyOptions RETURN_OLD = FindAndModifyOptions.options().returnNew(false);
+
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+	@Autowired
+	private AppointmentStorage storage;
+
+	@Override
+	public Appointment findFirstByPatientIdAndStartAfterOrderByStartAsc(final String patientId,
+			final LocalDateTime now) {
+
+		return first(new Query(byPatient(patientId).and("start").gt(now)).with(START_ASC));
+	}
+
+	@Override
+	public Appointment findFirstByPatientIdAndStartBeforeOrderByStartDesc(final String patientId,
+			final LocalDateTime now) {
+
+		return first(new Query(byPatient(patientId).and("start").lt(now)).with(START_DESC));
+	}
+
+	@Override
+	public List<Appointment> findByPatientId(final String patientId) {
+
+		return mongoTemplate.find(new Query(byPatient(patientId)), Appointment.class);
+	}
+
+	@Override
+	public Appointment findFirstByPatientIdAndStartLessThanAndEndGreaterThan(final String patientId,
+			final LocalDateTime end, final LocalDateTime start) {
+
+		return first(new Query(byPatient(patientId).and("start").lt(end).and("end").gt(start)));
+	}
+
+	@Override
+	public List<Appointment> findByPatientIdAndStartGreaterThanEqual(final String patientId,
+			final LocalDateTime from) {
+
+		return mongoTemplate.find(new Query(byPatient(patientId).and("start").gte(from)), Appointment.class);
+	}
+
+	@Override
+	public Appointment findByIdAndPatientId(final String id, final String patientId) {
+
+		return mongoTemplate.findOne(new Query(Criteria.where("id").is(id).and("patientId")
+				.is(storage.patientIdValue(patientId))), Appointment.class);
+	}
+
+	@Override
+	public Appointment rateById(final String id, final String patientId, final Integer rate) {
+
+		final Query query = new Query(Criteria.where("id").is(id).and("patientId")
+				.is(storage.patientIdValue(patientId)));
+
+		return mongoTemplate.findAndModify(query, Update.update("rate", rate), RETURN_OLD, Appointment.class);
+	}
+
+	@Override
+	public Appointment rateLastStartedBefore(final String patientId, final LocalDateTime before, final Integer rate) {
+
+		final Query query = new Query(byPatient(patientId).and("start").lt(before))
+				.with(START_DESC);
+
+		return mongoTemplate.findAndModify(query, Update.update("rate", rate), RETURN_OLD, Appointment.class);
+	}
+
+	@Override
+	public int setRates(final Map<String, Integer> rates, final Map<String, Integer> expectedRates) {
+
+		if (rates.isEmpty()) {
+			return 0;
+		}
+
+		// the bulk operations don't map the queries and updates
+		final BulkOperations bulk = mongoTemplate.bulkOps(BulkMode.UNORDERED, Appointment.class);
+
+		for (Map.Entry<String, Integer> rate : rates.entrySet()) {
+			bulk.updateOne(
+					new Query(Criteria.where("_id").is(new ObjectId(rate.getKey())).and(storage.field("rate"))
+							.is(expectedRates.get(rate.getKey()))),
+					Update.update(storage.field("rate"), rate.getValue()));
+		}
+
+		return bulk.execute().getMatchedCount();
+	}
+
+	@Override
+	public Map<Integer, String> insertUnordered(final List<Appointment> appointments) {
+
+		for (Appointment appointment : appointments) {
+			appointment.setId(new ObjectId().toHexString());
+		}
+
+		if (!storage.isCompact()) {
+			return UnorderedBulkInsert.insert(mongoTemplate, appointments, Appointment.class);
+		}
+
+		final List<DBObject> documents = new ArrayList<>(appointments.size());
+
+		for (Appointment appointment : appointments) {
+			final BasicDBObject document = new BasicDBObject();
+			mongoTemplate.getConverter().write(appointment, document);
+			documents.add(AppointmentStorage.compact(document));
+		}
+
+		return UnorderedBulkInsert.insert(mongoTemplate, documents, Appointment.class);
+	}
+
+	@Override
+	public List<Appointment> findProjectedPage(final LocalDateTime start, final ObjectId id, final int limit,
+			final Set<String> fields) {
+
+		final Query query = start == null ? new Query()
+				: new Query(new Criteria().orOperator(Criteria.where("start").lt(start),
+						Criteria.where("start").is(start).and("id").lt(id)));
+
+		return mongoTemplate.find(project(query.with(START_ID_DESC).limit(limit), fields), Appointment.class);
+	}
+
+	@Override
+	public List<Appointment> findProjectedBetween(final LocalDateTime from, final LocalDateTime to,
+			final Set<String> fields) {
+
+		final Query query = new Query(Criteria.where("start").gt(from).lt(to));
+
+		return mongoTemplate.find(project(query, fields), Appointment.class);
+	}
+
+	private Criteria byPatient(final String patientId) {
+		return Criteria.where("patientId").is(storage.patientIdValue(patientId));
+	}
+
+	private Appointment first(final Query query) {
+
+		final List<Appointment> appointments = mongoTemplate.find(query.limit(1), Appointment.class);
+		return appointments.isEmpty() ? null : appointments.get(0);
+	}
+
+	private static Query project(final Query query, final Set<String> fields) {
+
+		for (String field : fields) {
+			query.fields().include(field);
+		}
+		return query;
+	}
+
+}
@@ -1,9 +1,14 @@
 package com.appointments.api.repositories;
 
+import java.util.Collection;
+import java.util.List;
+
 import org.springframework.data.mongodb.repository.MongoRepository;
 
 import com.appointments.api.entities.Patient;
 
-public interface PatientRepository extends MongoRepository<Patient, String> {
+public interface PatientRepository extends MongoRepository<Patient, String>, PatientRepositoryCustom {
+
+	List<Patient> findByIdIn(Collection<String> ids);
 
 }
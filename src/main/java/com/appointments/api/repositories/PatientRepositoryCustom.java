@@ -0,0 +1,47 @@
+package com.appointments.api.repositories;
+
+import java.util.List;
+import java.util.Map;
+
+import com.appointments.api.entities.Patient;
+
+/**
+ * Patient operations that cannot be derived by Spring Data, implemented by
+ * PatientRepositoryImpl.
+ */
+public interface PatientRepositoryCustom {
+
+	/**
+	 * Inserts the patients with one unordered bulk write, assigning their ids
+	 * beforehand.
+	 * 
+	 * @param patients
+	 * @return error message by position of the patients not inserted
+	 */
+	Map<Integer, String> insertUnordered(List<Patient> patients);
+
+	/**
+	 * Patients whose surname starts with a prefix, and name with another one
+	 * when given, by surname, name and id. Backed by the surnameKey_nameKey
+	 * index, both prefixes being folded by Patient.searchKey.
+	 * 
+	 * @param surnamePrefix
+	 * @param namePrefix
+	 *            null to match any name
+	 * @param limit
+	 * @return patients
+	 */
+	List<Patient> findBySurnamePrefix(String surnamePrefix, String namePrefix, int limit);
+
+	/**
+	 * The same by name first, backed by the nameKey_surnameKey index.
+	 * 
+	 * @param namePrefix
+	 * @param surnamePrefix
+	 *            null to match any surname
+	 * @param limit
+	 * @return patients
+	 */
+	List<Patient> findByNamePrefix(String namePrefix, String surnamePrefix, int limit);
+
+}
@@ -0,0 +1,68 @@
+package com.appointments.api.repositories;
+
+import java.util.List;
+import java.util.Map;
+
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import com.appointments.api.entities.Patient;
+
+public class PatientRepositoryImpl implements PatientRepositoryCustom {
+
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+	@Override
+	public Map<Integer, String> insertUnordered(final List<Patient> patients) {
+
+		for (Patient patient : patients) {
+			patient.setId(new ObjectId().toHexString());
+		}
+
+		return UnorderedBulkInsert.insert(mongoTemplate, patients, Patient.class);
+	}
+
+	@Override
+	public List<Patient> findBySurnamePrefix(final String surnamePrefix, final String namePrefix, final int limit) {
+		return findByPrefixes("surnameKey", surnamePrefix, "nameKey", namePrefix, limit);
+	}
+
+	@Override
+	public List<Patient> findByNamePrefix(final String namePrefix, final String surnamePrefix, final int limit) {
+		return findByPrefixes("nameKey", namePrefix, "surnameKey", surnamePrefix, limit);
+	}
+
+	/**
+	 * Prefixes are matched as key ranges rather than regular expressions, so
+	 * the index bounds are tight and the index order serves the sort.
+	 */
+	private List<Patient> findByPrefixes(final String field, final String prefix, final String otherField,
+			final String otherPrefix, final int limit) {
+
+		final Criteria criteria = Criteria.where(field).gte(prefix).lt(successor(prefix));
+
+		if (otherPrefix != null) {
+			criteria.and(otherField).gte(otherPrefix).lt(successor(otherPrefix));
+		}
+
+		final Query query = new Query(criteria).with(new Sort(Direction.ASC, field, otherField, "id")).limit(limit);
+
+		return mongoTemplate.find(query, Patient.class);
+	}
+
+	/**
+	 * @return the first string after every string starting with the prefix
+	 */
+	private static String successor(final String prefix) {
+
+		final int last = prefix.length() - 1;
+		return prefix.substring(0, last) + (char) (prefix.charAt(last) + 1);
+	}
+
+}
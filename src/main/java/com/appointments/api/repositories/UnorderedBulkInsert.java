@@ -0,0 +1,54 @@
+package com.appointments.api.repositories;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import com.mongodb.BulkWriteError;
+
+/**
+ * Inserts documents with one unordered bulk write, so a failing document
+ * doesn't stop the others.
+ */
+final class UnorderedBulkInsert {
+
+	private UnorderedBulkInsert() {
+	}
+
+	/**
+	 * @param mongoTemplate
+	 * @param documents
+	 *            documents with their ids already assigned
+	 * @param type
+	 *            entity type
+	 * @return error message by position of the documents not inserted
+	 */
+	static Map<Integer, String> insert(final MongoTemplate mongoTemplate, final List<?> documents,
+			final Class<?> type) {
+
+		if (documents.isEmpty()) {
+			return Collections.emptyMap();
+		}
+
+		try {
+			mongoTemplate.bulkOps(BulkMode.UNORDERED, type).insert(documents).execute();
+			return Collections.emptyMap();
+
+		} catch (BulkOperationException e) {
+
+			final Map<Integer, String> errors = new HashMap<>();
+
+			for (BulkWriteError error : e.getErrors()) {
+				errors.put(error.getIndex(), error.getMessage());
+			}
+
+			return errors;
+		}
+	}
+
+}
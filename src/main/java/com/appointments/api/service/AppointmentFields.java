@@ -0,0 +1,105 @@
+package com.appointments.api.service;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.http.converter.json.MappingJacksonValue;
+
+import com.appointments.api.exceptions.InvalidFieldsException;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+
+/**
+ * Appointment fields requested through the "fields" parameter of the list
+ * endpoints.
+ * 
+ * The fields are pushed down to the Mongo query as a projection, and the
+ * response is serialized through the APPOINTMENT_FILTER so the fields not
+ * requested are left out rather than written as null.
+ */
+public final class AppointmentFields {
+
+	/**
+	 * Jackson filter id of Appointment, see JacksonConfiguration.
+	 */
+	public static final String APPOINTMENT_FILTER = "appointmentFields";
+
+	private static final List<String> NAMES = Arrays.asList("id", "patientId", "start", "end", "rate");
+
+	public static final AppointmentFields ALL = new AppointmentFields(null);
+
+	// null when all fields are requested
+	private final Set<String> names;
+
+	private AppointmentFields(final Set<String> names) {
+		this.names = names;
+	}
+
+	/**
+	 * Parses a comma separated list of fields.
+	 * 
+	 * @param fields
+	 *            e.g. "id,start,end", null or blank for all fields
+	 * @return requested fields
+	 * @throws InvalidFieldsException
+	 */
+	public static AppointmentFields parse(final String fields) throws InvalidFieldsException {
+
+		if (fields == null || fields.trim().isEmpty()) {
+			return ALL;
+		}
+
+		final Set<String> names = new LinkedHashSet<>();
+
+		for (String name : fields.split(",")) {
+
+			final String trimmed = name.trim();
+
+			if (!NAMES.contains(trimmed)) {
+				throw new InvalidFieldsException();
+			}
+			names.add(trimmed);
+		}
+
+		return new AppointmentFields(Collections.unmodifiableSet(names));
+	}
+
+	public boolean isAll() {
+		return names == null;
+	}
+
+	/**
+	 * Fields to project in the Mongo query.
+	 * 
+	 * @param required
+	 *            fields needed by the service itself, e.g. the page token key
+	 * @return field names, the requested ones plus the required ones
+	 */
+	public Set<String> projection(final String... required) {
+
+		final Set<String> projection = new LinkedHashSet<>(names);
+		projection.addAll(Arrays.asList(required));
+
+		return projection;
+	}
+
+	/**
+	 * Wraps a response body holding appointments so only the requested fields
+	 * are serialized.
+	 * 
+	 * @param body
+	 * @return body with the serialization filter
+	 */
+	public MappingJacksonValue filter(final Object body) {
+
+		final MappingJacksonValue value = new MappingJacksonValue(body);
+		value.setFilters(new SimpleFilterProvider().addFilter(APPOINTMENT_FILTER,
+				isAll() ? SimpleBeanPropertyFilter.serializeAll() : SimpleBeanPropertyFilter.filterOutAllExcept(names)));
+
+		return value;
+	}
+
+}
@@ -0,0 +1,79 @@
+package com.appointments.api.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+import org.bson.types.ObjectId;
+
+import com.appointments.api.entities.Appointment;
+import com.appointments.api.exceptions.InvalidPageTokenException;
+
+/**
+ * Opaque continuation token of the appointments pagination.
+ * 
+ * It holds the (start, id) key of the last appointment returned, so the
+ * following page is fetched by seeking the index instead of skipping.
+ */
+public final class AppointmentPageToken {
+
+	private static final String SEPARATOR = "|";
+
+	private final LocalDateTime start;
+
+	private final ObjectId id;
+
+	private AppointmentPageToken(final LocalDateTime start, final ObjectId id) {
+		this.start = start;
+		this.id = id;
+	}
+
+	public LocalDateTime getStart() {
+		return start;
+	}
+
+	public ObjectId getId() {
+		return id;
+	}
+
+	/**
+	 * Encodes the key of the given appointment.
+	 * 
+	 * @param appointment
+	 *            last appointment of a page
+	 * @return token
+	 */
+	public static String encode(final Appointment appointment) {
+
+		final String key = appointment.getStart() + SEPARATOR + appointment.getId();
+
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Decodes a token previously created by {@link #encode(Appointment)}.
+	 * 
+	 * @param token
+	 * @return page token
+	 * @throws InvalidPageTokenException
+	 */
+	public static AppointmentPageToken decode(final String token) throws InvalidPageTokenException {
+
+		try {
+			final String key = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+			final int separator = key.indexOf(SEPARATOR);
+
+			if (separator < 0) {
+				throw new InvalidPageTokenException();
+			}
+
+			return new AppointmentPageToken(LocalDateTime.parse(key.substring(0, separator)),
+					new ObjectId(key.substring(separator + 1)));
+
+		} catch (IllegalArgumentException | DateTimeParseException e) {
+			throw new InvalidPageTokenException();
+		}
+	}
+
+}
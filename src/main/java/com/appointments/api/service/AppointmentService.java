@@ -1,40 +1,260 @@
 package com.appointments.api.service;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import javax.annotation.PostConstruct;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.Sort.Direction;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
+import com.appointments.api.archive.AppointmentArchive;
+import com.appointments.api.cache.NextWeekAppointmentsCache;
+import com.appointments.api.cache.PatientExistenceCache;
+import com.appointments.api.dtos.AppointmentPage;
+import com.appointments.api.dtos.BatchItemResult;
+import com.appointments.api.dtos.FreeSlot;
 import com.appointments.api.dtos.InputRate;
+import com.appointments.api.dtos.RatingSummary;
+import com.appointments.api.dtos.ValidationError;
 import com.appointments.api.entities.Appointment;
+import com.appointments.api.etag.AppointmentsVersion;
+import com.appointments.api.exceptions.AppointmentConflictException;
+import com.appointments.api.exceptions.AppointmentNotFoundException;
+import com.appointments.api.exceptions.BatchSizeExceededException;
 import com.appointments.api.exceptions.InvalidAppointmentDatesException;
+import com.appointments.api.exceptions.InvalidPageTokenException;
+import com.appointments.api.exceptions.InvalidSlotSearchException;
 import com.appointments.api.exceptions.PatientNotFoundException;
+import com.appointments.api.exceptions.ServiceOverloadedException;
+import com.appointments.api.ratings.RatingStatistics;
+import com.appointments.api.ratings.RatingWriteBehind;
+import com.appointments.api.ratings.RatingWriteBehind.PendingRating;
+import com.appointments.api.reads.ReadRouting;
 import com.appointments.api.repositories.AppointmentRepository;
-import com.appointments.api.repositories.PatientRepository;
+import com.appointments.api.slots.FreeSlots;
+import com.appointments.api.timeline.AppointmentConflicts;
+import com.appointments.api.timeline.AppointmentConflicts.PatientsLock;
+import com.appointments.api.timeline.IntervalTree;
+import com.appointments.api.timeline.PatientTimelines;
 
 @Service
 public class AppointmentService {
 
-	private static final Sort APPOINTMENT_START_DESC = new Sort(Direction.DESC, "start");
+	private static final Sort APPOINTMENT_START_ID_DESC = new Sort(Direction.DESC, "start", "id");
 
 	@Autowired
 	private AppointmentRepository appointmentRepository;
 
 	@Autowired
-	private PatientRepository patientRepository;
+	private PatientExistenceCache patientExistenceCache;
+
+	@Autowired
+	private NextWeekAppointmentsCache nextWeekAppointmentsCache;
+
+	@Autowired
+	private PatientTimelines patientTimelines;
+
+	@Autowired
+	private AppointmentConflicts appointmentConflicts;
+
+	@Autowired
+	private RatingStatistics ratingStatistics;
+
+	@Autowired
+	private AppointmentsVersion appointmentsVersion;
+
+	@Autowired
+	private AppointmentArchive appointmentArchive;
+
+	@Autowired
+	private ReadRouting readRouting;
+
+	@Autowired
+	private RatingWriteBehind ratingWriteBehind;
+
+	@Autowired
+	private FreeSlots freeSlots;
+
+	@Value("${appointments.page.max-size:500}")
+	private int maxPageSize;
+
+	@Value("${appointments.batch.max-size:1000}")
+	private int maxBatchSize;
+
+	@Value("${appointments.slots.max-range-days:31}")
+	private int maxSlotRangeDays;
+
+	@Value("${appointments.slots.max-results:100}")
+	private int maxFreeSlots;
+
+	private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+	@PostConstruct
+	public void init() {
+
+		if (ratingWriteBehind.isEnabled()) {
+			ratingWriteBehind.setWriter(this::writeRatings);
+		}
+	}
 
 	public Appointment createAppointment(final Appointment appointment)
-			throws PatientNotFoundException, InvalidAppointmentDatesException {
+			throws PatientNotFoundException, InvalidAppointmentDatesException, AppointmentConflictException {
 
 		validateAppointment(appointment);
 
-		return appointmentRepository.save(appointment);
+		try (PatientsLock lock = appointmentConflicts.lock(Collections.singleton(appointment.getPatientId()))) {
+
+			if (appointmentConflicts.findConflict(appointment) != null) {
+				throw new AppointmentConflictException();
+			}
+
+			final Appointment created = appointmentRepository.save(appointment);
+			afterWrite(created);
+
+			return created;
+		}
 
 	}
 
+	/**
+	 * Creates a batch of appointments.
+	 * 
+	 * Every appointment goes through the same validations of
+	 * {@link #createAppointment(Appointment)}, overlaps included, a null one
+	 * failing as invalid, but the patients are checked with a single query and
+	 * the valid appointments are inserted with one unordered bulk write.
+	 * 
+	 * @param appointments
+	 * @return the result of every appointment, in the request order
+	 * @throws BatchSizeExceededException
+	 */
+	public List<BatchItemResult<Appointment>> createAppointments(final List<Appointment> appointments)
+			throws BatchSizeExceededException {
+
+		if (appointments.size() > maxBatchSize) {
+			throw new BatchSizeExceededException();
+		}
+
+		final List<BatchItemResult<Appointment>> results = new ArrayList<>(
+				Collections.nCopies(appointments.size(), null));
+		final Set<String> patientIds = new HashSet<>();
+
+		for (int i = 0; i < appointments.size(); i++) {
+
+			final Appointment appointment = appointments.get(i);
+
+			if (appointment == null) {
+				results.set(i, BatchItemResult.missing(i));
+				continue;
+			}
+
+			final Set<ConstraintViolation<Appointment>> violations = validator.validate(appointment);
+
+			if (violations.isEmpty()) {
+				patientIds.add(appointment.getPatientId());
+			} else {
+				results.set(i, BatchItemResult.failed(i, HttpStatus.BAD_REQUEST, ValidationError.of(violations)));
+			}
+		}
+
+		final Set<String> existingPatientIds = patientExistenceCache.findExisting(patientIds);
+
+		final List<Appointment> validAppointments = new ArrayList<>();
+		final List<Integer> validIndexes = new ArrayList<>();
+
+		for (int i = 0; i < appointments.size(); i++) {
+
+			if (results.get(i) != null) {
+				continue;
+			}
+
+			final Appointment appointment = appointments.get(i);
+
+			try {
+				if (!existingPatientIds.contains(appointment.getPatientId())) {
+					throw new PatientNotFoundException();
+				}
+
+				validateAppointmentDates(appointment);
+
+				validAppointments.add(appointment);
+				validIndexes.add(i);
+
+			} catch (PatientNotFoundException | InvalidAppointmentDatesException e) {
+				results.set(i, BatchItemResult.failed(i, e));
+			}
+		}
+
+		final Set<String> validPatientIds = validAppointments.stream().map(Appointment::getPatientId)
+				.collect(Collectors.toSet());
+
+		try (PatientsLock lock = appointmentConflicts.lock(validPatientIds)) {
+
+			// overlaps are checked against the stored appointments and the
+			// ones accepted earlier in the same batch
+			final Map<String, IntervalTree<Appointment>> batchIntervals = new HashMap<>();
+			final List<Appointment> insertedAppointments = new ArrayList<>();
+			final List<Integer> insertedIndexes = new ArrayList<>();
+
+			for (int i = 0; i < validAppointments.size(); i++) {
+
+				final Appointment appointment = validAppointments.get(i);
+				final IntervalTree<Appointment> intervals = batchIntervals
+						.computeIfAbsent(appointment.getPatientId(), id -> new IntervalTree<>());
+
+				if (intervals.findOverlap(appointment.getStart(), appointment.getEnd()) != null
+						|| appointmentConflicts.findConflict(appointment) != null) {
+					results.set(validIndexes.get(i), BatchItemResult.failed(validIndexes.get(i),
+							new AppointmentConflictException()));
+				} else {
+					intervals.put(appointment.getStart(), appointment.getEnd(), String.valueOf(i), appointment);
+					insertedAppointments.add(appointment);
+					insertedIndexes.add(validIndexes.get(i));
+				}
+			}
+
+			final Map<Integer, String> insertErrors = appointmentRepository.insertUnordered(insertedAppointments);
+
+			for (int i = 0; i < insertedAppointments.size(); i++) {
+
+				final int index = insertedIndexes.get(i);
+				final String insertError = insertErrors.get(i);
+
+				if (insertError == null) {
+					afterWrite(insertedAppointments.get(i));
+					results.set(index, BatchItemResult.created(index, insertedAppointments.get(i)));
+				} else {
+					results.set(index, BatchItemResult.failed(index, HttpStatus.INTERNAL_SERVER_ERROR,
+							new ValidationError(insertError)));
+				}
+			}
+		}
+
+		return results;
+	}
+
 	private void validateAppointment(Appointment appointment)
 			throws PatientNotFoundException, InvalidAppointmentDatesException {
 
@@ -57,58 +277,532 @@ public class AppointmentService {
 
 	}
 
-	public List<Appointment> getAllAppointmens() {
+	/**
+	 * Streams every appointment ordered by start from a Mongo cursor, so
+	 * the collection is never materialized in memory. The archived ones come
+	 * first, loaded a month at a time. The caller must close the stream.
+	 * 
+	 * @return stream of appointments
+	 */
+	public Stream<Appointment> streamAllAppointments() {
+
+		if (appointmentArchive.isEnabled()) {
+			return Stream.concat(appointmentArchive.streamAll(),
+					appointmentRepository.streamAllByOrderByStartAsc());
+		}
+
+		return appointmentRepository.streamAllByOrderByStartAsc();
+	}
+
+	/**
+	 * Gets a page of appointments ordered by start desc, seeking from the key
+	 * held by the page token so every page costs the same regardless of its
+	 * depth.
+	 * 
+	 * @param pageToken
+	 *            continuation token of a previous page, null for the first
+	 *            page
+	 * @param limit
+	 *            page size, capped to appointments.page.max-size
+	 * @return page of appointments
+	 * @throws InvalidPageTokenException
+	 */
+	public AppointmentPage getAppointmentsPage(final String pageToken, final int limit)
+			throws InvalidPageTokenException {
+		return getAppointmentsPage(pageToken, limit, AppointmentFields.ALL);
+	}
+
+	/**
+	 * Gets a page of appointments holding only the requested fields, projected
+	 * by the Mongo query. The start and id are always read since they make
+	 * the page token. Read from a secondary when routed.
+	 * 
+	 * @param pageToken
+	 * @param limit
+	 * @param fields
+	 * @return page of appointments
+	 * @throws InvalidPageTokenException
+	 */
+	public AppointmentPage getAppointmentsPage(final String pageToken, final int limit, final AppointmentFields fields)
+			throws InvalidPageTokenException {
+
+		final int pageSize = Math.max(1, Math.min(limit, maxPageSize));
+
+		final AppointmentPageToken token = pageToken == null ? null : AppointmentPageToken.decode(pageToken);
+
+		List<Appointment> appointments = readRouting.onSecondary(() -> findPage(token, pageSize, fields));
+
+		String next = null;
+
+		if (appointments.size() > pageSize) {
+			appointments = appointments.subList(0, pageSize);
+			next = AppointmentPageToken.encode(appointments.get(pageSize - 1));
+		}
+
+		return new AppointmentPage(appointments, next);
+	}
+
+	private List<Appointment> findPage(final AppointmentPageToken token, final int pageSize,
+			final AppointmentFields fields) {
+
+		// one extra appointment tells whether there is a following page
+		final Pageable pageable = new PageRequest(0, pageSize + 1, APPOINTMENT_START_ID_DESC);
+
+		List<Appointment> appointments;
+
+		if (!fields.isAll()) {
+			appointments = appointmentRepository.findProjectedPage(token == null ? null : token.getStart(),
+					token == null ? null : token.getId(), pageSize + 1, fields.projection("id", "start"));
+		} else if (token == null) {
+			appointments = appointmentRepository.findAllBy(pageable);
+		} else {
+			appointments = appointmentRepository.findPageAfter(token.getStart(), token.getId(), pageable);
+		}
+
+		if (appointments.size() <= pageSize && appointmentArchive.isEnabled()) {
+			// the appointment collection is exhausted, the page goes on in
+			// the archive
+			appointments = continueInArchive(appointments, token, pageSize + 1);
+		}
+
+		return appointments;
+	}
+
+	/**
+	 * Gets the appointments from next Monday to the subsequent Sunday,
+	 * answered from the next week cache when possible. A request pinned to the
+	 * primary reloads the week, the cache missing the writes of the other
+	 * instances.
+	 * 
+	 * @return unmodifiable list of appointments
+	 */
+	public List<Appointment> getNextWeekAppointments() {
+		// loaded from the primary, a stale week read from a secondary would
+		// stay cached
+		if (ReadRouting.isPinned()) {
+			return nextWeekAppointmentsCache.reload(this::findAppointmentsBetween);
+		}
+
+		return nextWeekAppointmentsCache.get(this::findAppointmentsBetween);
+	}
+
+	/**
+	 * Gets the appointments from next Monday to the subsequent Sunday holding
+	 * the requested fields.
+	 * 
+	 * A cached week is answered as is, the response serialization leaving the
+	 * other fields out. On a miss the fields are projected by the Mongo query
+	 * and the partial appointments are not cached.
+	 * 
+	 * @param fields
+	 * @return list of appointments
+	 */
+	public List<Appointment> getNextWeekAppointments(final AppointmentFields fields) {
+
+		if (fields.isAll()) {
+			return getNextWeekAppointments();
+		}
+
+		final BiFunction<LocalDateTime, LocalDateTime, List<Appointment>> loader = (from,
+				to) -> appointmentRepository.findProjectedBetween(from, to, fields.projection());
 
-		return appointmentRepository.findAll(APPOINTMENT_START_DESC);
+		return ReadRouting.isPinned() ? nextWeekAppointmentsCache.load(loader)
+				: nextWeekAppointmentsCache.peekOrLoad(loader);
 	}
 
+	/**
+	 * Gets the appointments started between two dates, reading the archive
+	 * only when the range reaches before its horizon. Read from a secondary
+	 * when routed.
+	 * 
+	 * @param start
+	 * @param end
+	 * @return list of appointments
+	 */
 	public List<Appointment> getAppointmentsBetween(final LocalDateTime start, final LocalDateTime end) {
-		return appointmentRepository.findByStartBetween(start, end);
+		return readRouting.onSecondary(() -> findAppointmentsBetween(start, end));
+	}
+
+	private List<Appointment> findAppointmentsBetween(final LocalDateTime start, final LocalDateTime end) {
+
+		final List<Appointment> appointments = appointmentRepository.findByStartBetween(start, end);
+
+		if (appointmentArchive.reaches(start)) {
+			return merge(appointments, appointmentArchive.findBetween(start, end));
+		}
+
+		return appointments;
+	}
+
+	/**
+	 * Finds the first free slots between two dates, time booked by no
+	 * appointment, see FreeSlots.
+	 * 
+	 * @param from
+	 *            now when null or past
+	 * @param to
+	 *            a week after from when null
+	 * @param lengthMinutes
+	 *            length of the slots
+	 * @param limit
+	 *            maximum number of slots, capped by
+	 *            "appointments.slots.max-results"
+	 * @return free slots ordered by start
+	 * @throws InvalidSlotSearchException
+	 */
+	public List<FreeSlot> findFreeSlots(final LocalDateTime from, final LocalDateTime to, final int lengthMinutes,
+			final int limit) throws InvalidSlotSearchException {
+
+		final LocalDateTime now = LocalDateTime.now();
+		final LocalDateTime start = from == null || from.isBefore(now) ? now : from;
+		final LocalDateTime end = to == null ? start.plusWeeks(1) : to;
+
+		if (!end.isAfter(start) || end.isAfter(start.plusDays(maxSlotRangeDays)) || lengthMinutes <= 0
+				|| limit <= 0) {
+			throw new InvalidSlotSearchException();
+		}
+
+		// loaded from the primary, a stale day read from a secondary would
+		// stay cached
+		return freeSlots.find(start, end, lengthMinutes, Math.min(limit, maxFreeSlots),
+				this::findAppointmentsBetween);
 	}
 
 	public Appointment getNextAppointmentByPatient(final String patientId) throws PatientNotFoundException {
 
 		if (isPatientFound(patientId)) {
 			LocalDateTime now = LocalDateTime.now();
-			Appointment appointment = appointmentRepository
-					.findFirstByPatientIdAndStartAfterOrderByStartAsc(patientId, now);
-			return appointment;
+
+			// the timeline misses the writes of the other instances
+			if (patientTimelines.isEnabled() && !ReadRouting.isPinned()) {
+				return patientTimelines.getNextAppointment(patientId, now);
+			}
+
+			return readRouting.onSecondary(
+					() -> appointmentRepository.findFirstByPatientIdAndStartAfterOrderByStartAsc(patientId, now));
 		} else {
 			throw new PatientNotFoundException();
 		}
 
 	}
 
-	public Appointment rateAppointment(final String patientId, final InputRate inputRate) throws PatientNotFoundException {
-		
-		// This update action is not atomic, however since the rating is always
-		// for one patient, possible race conditions wouldn't cause major
-		// issues.
-		// For simplicity I'm keeping like this, otherwise I would have to write
-		// a custom update implementation.
-		
+	/**
+	 * Rates an appointment of the patient, the given one or the last started.
+	 * 
+	 * With the write-behind ratings the appointment is only looked up and
+	 * the rating queued, see {@link #writeRatings(List)}.
+	 * 
+	 * @param patientId
+	 * @param inputRate
+	 * @return the rated appointment
+	 * @throws PatientNotFoundException
+	 * @throws AppointmentNotFoundException
+	 * @throws ServiceOverloadedException
+	 *             if the write-behind queue is full or closing
+	 */
+	public Appointment rateAppointment(final String patientId, final InputRate inputRate)
+			throws PatientNotFoundException, AppointmentNotFoundException, ServiceOverloadedException {
+
+		// The rate is applied by a single findAndModify matching the
+		// appointment and its patient, so concurrent ratings never overwrite
+		// each other's documents.
+
 		if (isPatientFound(patientId)) {
 
+			if (ratingWriteBehind.isRunning()) {
+
+				final Appointment queued = queueRating(patientId, inputRate);
+
+				if (queued != null) {
+					return queued;
+				}
+				// archived or not found, rated synchronously
+			}
+
 			Appointment appointment = null;
-	
-			if (inputRate.getAppointmentId() == null) {
-				// get the last
-				appointment = appointmentRepository.findFirstByPatientIdAndStartBeforeOrderByStartDesc(
-						patientId, LocalDateTime.now());
+			String lastId = null;
+
+			if (inputRate.getAppointmentId() == null && patientTimelines.isEnabled()) {
+				// rate the last, found in the patient's timeline
+				Appointment last = patientTimelines.getLastAppointment(patientId, LocalDateTime.now());
+				lastId = last == null ? null : last.getId();
+				appointment = last == null ? null
+						: appointmentRepository.rateById(last.getId(), patientId, inputRate.getRate());
+			} else if (inputRate.getAppointmentId() == null) {
+				// rate the last
+				appointment = appointmentRepository.rateLastStartedBefore(patientId, LocalDateTime.now(),
+						inputRate.getRate());
 			} else {
-				appointment = appointmentRepository.findOne(inputRate.getAppointmentId());
+				appointment = appointmentRepository.rateById(inputRate.getAppointmentId(), patientId,
+						inputRate.getRate());
+			}
+
+			if (appointment == null && appointmentArchive.isEnabled()) {
+				// archived, or archived since the patient's timeline was loaded
+				final String appointmentId = inputRate.getAppointmentId() != null ? inputRate.getAppointmentId()
+						: lastId;
+				appointment = appointmentId != null
+						? appointmentArchive.rateById(appointmentId, patientId, inputRate.getRate())
+						: appointmentArchive.rateLastStartedBefore(patientId, LocalDateTime.now(),
+								inputRate.getRate());
+			}
+
+			if (appointment == null) {
+				throw new AppointmentNotFoundException();
 			}
+
+			// the repository returns the appointment as it was before the rate
+			final Integer previousRate = appointment.getRate();
 			appointment.setRate(inputRate.getRate());
-	
-			return appointmentRepository.save(appointment);
-		
+
+			ratingStatistics.onRated(appointment, previousRate);
+			afterWrite(appointment);
+
+			return appointment;
+
 		} else {
 			throw new PatientNotFoundException();
 		}
 	}
 
+	/**
+	 * Queues the rating of an appointment of the appointment collection.
+	 * 
+	 * @return the appointment with its new rate, null if not found
+	 * @throws ServiceOverloadedException
+	 *             if the queue is full or closing, the last flush running
+	 */
+	private Appointment queueRating(final String patientId, final InputRate inputRate)
+			throws ServiceOverloadedException {
+
+		if (ratingWriteBehind.isClosing()) {
+			// not rated synchronously, concurrently with the last flush
+			throw new ServiceOverloadedException();
+		}
+
+		final Appointment appointment;
+
+		if (inputRate.getAppointmentId() != null) {
+			appointment = appointmentRepository.findByIdAndPatientId(inputRate.getAppointmentId(), patientId);
+		} else if (patientTimelines.isEnabled()) {
+			appointment = patientTimelines.getLastAppointment(patientId, LocalDateTime.now());
+		} else {
+			appointment = appointmentRepository.findFirstByPatientIdAndStartBeforeOrderByStartDesc(patientId,
+					LocalDateTime.now());
+		}
+
+		if (appointment == null) {
+			return null;
+		}
+
+		if (!ratingWriteBehind.offer(appointment.getId(), patientId, inputRate.getRate())) {
+			throw new ServiceOverloadedException();
+		}
+
+		// a copy, the timeline's one is updated once written
+		final Appointment rated = new Appointment();
+		rated.setId(appointment.getId());
+		rated.setPatientId(appointment.getPatientId());
+		rated.setStart(appointment.getStart());
+		rated.setEnd(appointment.getEnd());
+		rated.setRate(inputRate.getRate());
+
+		return rated;
+	}
+
+	/**
+	 * Writes a batch of queued ratings, called by the RatingWriteBehind flush
+	 * thread only.
+	 * 
+	 * The previous rates are read with one query and the new ones set with
+	 * one bulk write, each conditional on the previous rate read: an
+	 * appointment rated meanwhile by another instance is read again and its
+	 * rating written over the rate found, so the statistics move every
+	 * rating from the rate it actually replaced. After a partial write an
+	 * appointment found at its new rate is taken as written. While the queue
+	 * runs, closing included, the appointment collection is only rated here:
+	 * the synchronous path is left to the appointments not found in it. The
+	 * appointments archived since their rating was queued are rated in the
+	 * archive.
+	 * 
+	 * @param ratings
+	 */
+	private void writeRatings(final List<PendingRating> ratings) {
+
+		final Map<String, PendingRating> batch = new HashMap<>();
+
+		for (PendingRating rating : ratings) {
+			batch.put(rating.getAppointmentId(), rating);
+		}
+
+		// the ratings not found in the appointment collection
+		final Map<String, PendingRating> pending = new HashMap<>();
+
+		final List<Appointment> ratedAppointments = new ArrayList<>();
+		final List<Integer> previousRates = new ArrayList<>();
+
+		Set<String> ids = new HashSet<>(batch.keySet());
+
+		while (!ids.isEmpty()) {
+
+			final Map<String, Appointment> found = new HashMap<>();
+			final Map<String, Integer> expectedRates = new HashMap<>();
+			final Map<String, Integer> rates = new HashMap<>();
+
+			for (Appointment appointment : appointmentRepository.findAll(ids)) {
+				found.put(appointment.getId(), appointment);
+				expectedRates.put(appointment.getId(), appointment.getRate());
+				rates.put(appointment.getId(), batch.get(appointment.getId()).getRate());
+			}
+
+			final Set<String> written = new HashSet<>(found.keySet());
+			final Set<String> retried = new HashSet<>();
+
+			if (appointmentRepository.setRates(rates, expectedRates) < rates.size()) {
+
+				// rated by another instance or archived between the read and the write
+				written.clear();
+
+				for (Appointment appointment : appointmentRepository.findAll(found.keySet())) {
+					if (Objects.equals(appointment.getRate(), rates.get(appointment.getId()))) {
+						written.add(appointment.getId());
+					} else {
+						retried.add(appointment.getId());
+					}
+				}
+			}
+
+			for (String id : ids) {
+
+				if (written.contains(id)) {
+					final Appointment appointment = found.get(id);
+					previousRates.add(appointment.getRate());
+					appointment.setRate(rates.get(id));
+					ratedAppointments.add(appointment);
+
+				} else if (!retried.contains(id)) {
+					pending.put(id, batch.get(id));
+				}
+			}
+
+			ids = retried;
+		}
+
+		ratingStatistics.onRated(ratedAppointments, previousRates);
+		ratedAppointments.forEach(this::afterWrite);
+
+		if (!appointmentArchive.isEnabled()) {
+			return;
+		}
+
+		for (PendingRating rating : pending.values()) {
+
+			final Appointment archived = appointmentArchive.rateById(rating.getAppointmentId(),
+					rating.getPatientId(), rating.getRate());
+
+			if (archived != null) {
+				final Integer previousRate = archived.getRate();
+				archived.setRate(rating.getRate());
+
+				ratingStatistics.onRated(archived, previousRate);
+				afterWrite(archived);
+			}
+		}
+	}
+
+	/**
+	 * Rating statistics of all appointments, read in O(1).
+	 * 
+	 * @return count, mean and histogram of the rates
+	 */
+	public RatingSummary getRatingSummary() {
+		return ratingStatistics.getGlobal();
+	}
+
+	/**
+	 * Rating statistics of the appointments of a patient, read in O(1).
+	 * 
+	 * @param patientId
+	 * @return count, mean and histogram of the rates
+	 * @throws PatientNotFoundException
+	 */
+	public RatingSummary getPatientRatingSummary(final String patientId) throws PatientNotFoundException {
+
+		if (!isPatientFound(patientId)) {
+			throw new PatientNotFoundException();
+		}
+
+		return ratingStatistics.getPatient(patientId);
+	}
+
+	/**
+	 * Rating statistics of the appointments started on a day, read in O(1).
+	 * 
+	 * @param day
+	 * @return count, mean and histogram of the rates
+	 */
+	public RatingSummary getDayRatingSummary(final LocalDate day) {
+		return ratingStatistics.getDay(day);
+	}
+
+	/**
+	 * Completes a page with the archived appointments following the last
+	 * one of the page, or the page token for an empty page.
+	 */
+	private List<Appointment> continueInArchive(final List<Appointment> appointments,
+			final AppointmentPageToken token, final int limit) {
+
+		final LocalDateTime start;
+		final ObjectId id;
+
+		if (!appointments.isEmpty()) {
+			final Appointment last = appointments.get(appointments.size() - 1);
+			start = last.getStart();
+			id = new ObjectId(last.getId());
+		} else {
+			start = token == null ? null : token.getStart();
+			id = token == null ? null : token.getId();
+		}
+
+		return merge(appointments, appointmentArchive.findPageAfter(start, id, limit - appointments.size()));
+	}
+
+	/**
+	 * Appends the archived appointments not present in the appointment
+	 * collection, an appointment being in both while it is archived.
+	 */
+	private static List<Appointment> merge(final List<Appointment> appointments, final List<Appointment> archived) {
+
+		if (archived.isEmpty()) {
+			return appointments;
+		}
+
+		final Set<String> ids = appointments.stream().map(Appointment::getId).collect(Collectors.toSet());
+		final List<Appointment> merged = new ArrayList<>(appointments);
+
+		for (Appointment appointment : archived) {
+			if (!ids.contains(appointment.getId())) {
+				merged.add(appointment);
+			}
+		}
+
+		return merged;
+	}
+
+	/**
+	 * Keeps the read models in sync with an appointment created or rated.
+	 */
+	private void afterWrite(final Appointment appointment) {
+		nextWeekAppointmentsCache.onAppointmentChanged(appointment);
+		patientTimelines.onAppointmentSaved(appointment);
+		freeSlots.onAppointmentSaved(appointment);
+
+		// last, so an entity tag is never newer than the data it stands for
+		appointmentsVersion.increment();
+	}
+
 	private boolean isPatientFound(final String id) {
-		return patientRepository.exists(id);
+		return patientExistenceCache.exists(id);
 	}
 
 }
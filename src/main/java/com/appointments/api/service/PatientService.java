@@ -0,0 +1,164 @@
+package com.appointments.api.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import com.appointments.api.cache.PatientExistenceCache;
+import com.appointments.api.dtos.BatchItemResult;
+import com.appointments.api.dtos.ValidationError;
+import com.appointments.api.entities.Patient;
+import com.appointments.api.exceptions.BatchSizeExceededException;
+import com.appointments.api.repositories.PatientRepository;
+
+@Service
+public class PatientService {
+
+	@Autowired
+	private PatientRepository patientRepository;
+
+	@Autowired
+	private PatientExistenceCache patientExistenceCache;
+
+	@Value("${appointments.batch.max-size:1000}")
+	private int maxBatchSize;
+
+	@Value("${appointments.patients.search.max-size:50}")
+	private int maxSearchSize;
+
+	private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+	public Patient createPatient(final Patient patient) {
+
+		final Patient created = patientRepository.save(patient);
+		patientExistenceCache.add(created.getId());
+
+		return created;
+	}
+
+	/**
+	 * Creates a batch of patients.
+	 * 
+	 * Every patient goes through the bean validation of the single creation,
+	 * a null one failing as invalid, the valid ones are inserted with one
+	 * unordered bulk write.
+	 * 
+	 * @param patients
+	 * @return the result of every patient, in the request order
+	 * @throws BatchSizeExceededException
+	 */
+	public List<BatchItemResult<Patient>> createPatients(final List<Patient> patients)
+			throws BatchSizeExceededException {
+
+		if (patients.size() > maxBatchSize) {
+			throw new BatchSizeExceededException();
+		}
+
+		final List<BatchItemResult<Patient>> results = new ArrayList<>(Collections.nCopies(patients.size(), null));
+
+		final List<Patient> validPatients = new ArrayList<>();
+		final List<Integer> validIndexes = new ArrayList<>();
+
+		for (int i = 0; i < patients.size(); i++) {
+
+			if (patients.get(i) == null) {
+				results.set(i, BatchItemResult.missing(i));
+				continue;
+			}
+
+			final Set<ConstraintViolation<Patient>> violations = validator.validate(patients.get(i));
+
+			if (violations.isEmpty()) {
+				validPatients.add(patients.get(i));
+				validIndexes.add(i);
+			} else {
+				results.set(i, BatchItemResult.failed(i, HttpStatus.BAD_REQUEST, ValidationError.of(violations)));
+			}
+		}
+
+		final Map<Integer, String> insertErrors = patientRepository.insertUnordered(validPatients);
+
+		for (int i = 0; i < validPatients.size(); i++) {
+
+			final int index = validIndexes.get(i);
+			final String insertError = insertErrors.get(i);
+
+			if (insertError == null) {
+				patientExistenceCache.add(validPatients.get(i).getId());
+				results.set(index, BatchItemResult.created(index, validPatients.get(i)));
+			} else {
+				results.set(index, BatchItemResult.failed(index, HttpStatus.INTERNAL_SERVER_ERROR,
+						new ValidationError(insertError)));
+			}
+		}
+
+		return results;
+	}
+
+	/**
+	 * Type-ahead search of the patients by name and surname prefixes, case
+	 * and accent insensitive.
+	 * 
+	 * A single term is matched against the surnames, then the names. Two
+	 * terms, e.g. "andrew col", are read as a name and a surname prefix, then
+	 * as a surname and a name prefix. Each reading is one query on its index
+	 * limited to the page, so the cost doesn't depend on the number of
+	 * patients.
+	 * 
+	 * @param query
+	 * @param limit
+	 *            maximum number of patients, capped by
+	 *            "appointments.patients.search.max-size"
+	 * @return patients, empty for a blank query
+	 */
+	public List<Patient> searchPatients(final String query, final int limit) {
+
+		final String key = Patient.searchKey(query);
+
+		if (key == null || key.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		final int size = Math.max(1, Math.min(limit, maxSearchSize));
+		final String[] terms = key.split("\\s+", 2);
+
+		final List<Patient> first;
+		final List<Patient> second;
+
+		if (terms.length == 1) {
+			first = patientRepository.findBySurnamePrefix(terms[0], null, size);
+			second = patientRepository.findByNamePrefix(terms[0], null, size);
+		} else {
+			first = patientRepository.findByNamePrefix(terms[0], terms[1], size);
+			second = patientRepository.findBySurnamePrefix(terms[0], terms[1], size);
+		}
+
+		final Map<String, Patient> patients = new LinkedHashMap<>();
+
+		for (Patient patient : first) {
+			patients.put(patient.getId(), patient);
+		}
+
+		for (Patient patient : second) {
+			if (patients.size() == size) {
+				break;
+			}
+			patients.putIfAbsent(patient.getId(), patient);
+		}
+
+		return new ArrayList<>(patients.values());
+	}
+
+}
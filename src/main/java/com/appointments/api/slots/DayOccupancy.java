@@ -0,0 +1,94 @@
+package com.appointments.api.slots;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Booked time of one day as a bitmap, one bit per slot of the granularity
+ * (288 slots of 5 minutes, i.e. 5 words, by default). A set bit is a slot
+ * at least partially booked.
+ *
+ * Bits are only ever set, with word-level atomic ORs, so bookings never
+ * block the searches reading the words.
+ */
+public class DayOccupancy {
+
+	static final int MINUTES_PER_DAY = 24 * 60;
+
+	private final int slots;
+
+	private final AtomicLongArray words;
+
+	/**
+	 * The Constructor.
+	 *
+	 * @param granularityMinutes
+	 *            length of a slot, dividing a day
+	 */
+	public DayOccupancy(final int granularityMinutes) {
+
+		if (granularityMinutes <= 0 || MINUTES_PER_DAY % granularityMinutes != 0) {
+			throw new IllegalArgumentException("The slot granularity must divide a day: " + granularityMinutes);
+		}
+
+		this.slots = MINUTES_PER_DAY / granularityMinutes;
+		this.words = new AtomicLongArray((slots + 63) >>> 6);
+	}
+
+	/**
+	 * Marks the slots [from, to) as booked.
+	 *
+	 * @param from
+	 *            first slot, inclusive
+	 * @param to
+	 *            last slot, exclusive
+	 */
+	public void book(final int from, final int to) {
+
+		final int first = Math.max(from, 0);
+		final int last = Math.min(to, slots);
+
+		if (first >= last) {
+			return;
+		}
+
+		final int firstWord = first >>> 6;
+		final int lastWord = (last - 1) >>> 6;
+
+		for (int word = firstWord; word <= lastWord; word++) {
+
+			long mask = -1L;
+
+			if (word == firstWord) {
+				mask &= -1L << (first & 63);
+			}
+			if (word == lastWord) {
+				mask &= -1L >>> (63 - ((last - 1) & 63));
+			}
+
+			words.accumulateAndGet(word, mask, (current, booked) -> current | booked);
+		}
+	}
+
+	/**
+	 * @param word
+	 *            index of the word, slot / 64
+	 * @return booked bits of the slots of the word, the bit i being the slot
+	 *         word * 64 + i
+	 */
+	public long word(final int word) {
+		return words.get(word);
+	}
+
+	public int getSlots() {
+		return slots;
+	}
+
+	public int getWords() {
+		return words.length();
+	}
+
+	public boolean isBooked(final int slot) {
+		return (words.get(slot >>> 6) & (1L << (slot & 63))) != 0;
+	}
+
+}
@@ -0,0 +1,290 @@
+package com.appointments.api.slots;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.appointments.api.cache.BoundedCache;
+import com.appointments.api.dtos.FreeSlot;
+import com.appointments.api.entities.Appointment;
+import com.appointments.api.reads.ReadRouting;
+
+/**
+ * Searches the time not booked by any appointment.
+ *
+ * The booked time of every day searched is kept as a DayOccupancy bitmap of
+ * "appointments.slots.granularity-minutes" slots, loaded with one query for
+ * the missing days of a search and then kept current by the write paths of
+ * AppointmentService. A search walks the bitmaps a 64 bit word at a time,
+ * jumping from a booked slot to the next free one and back with
+ * numberOfTrailingZeros, so an empty or a full day costs a handful of word
+ * operations whatever its appointments.
+ *
+ * The days are bounded by an LRU and expire after
+ * "appointments.slots.ttl-seconds", which bounds the staleness of writes
+ * made by other instances.
+ */
+@Component
+public class FreeSlots {
+
+	@Value("${appointments.slots.granularity-minutes:5}")
+	private int granularityMinutes;
+
+	@Value("${appointments.slots.max-days:366}")
+	private int maxDays;
+
+	@Value("${appointments.slots.ttl-seconds:300}")
+	private long ttlSeconds;
+
+	/**
+	 * Appointments started that long before a loaded day are looked up, a
+	 * longer one overlapping the day is missed.
+	 */
+	@Value("${appointments.slots.max-duration-hours:24}")
+	private long maxDurationHours;
+
+	private int slotsPerDay;
+
+	private BoundedCache<LocalDate, DayOccupancy> days;
+
+	// bumped by every write, so a load racing with a write isn't cached
+	private long version;
+
+	@PostConstruct
+	public void init() {
+		slotsPerDay = new DayOccupancy(granularityMinutes).getSlots();
+		days = new BoundedCache<>("slots", maxDays, ttlSeconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Finds the first free slots of the given length between two dates. The
+	 * slots are aligned on the granularity and don't overlap each other, a
+	 * free period holding several of them back to back.
+	 *
+	 * @param from
+	 *            inclusive
+	 * @param to
+	 *            exclusive
+	 * @param lengthMinutes
+	 *            length of a slot, rounded up to the granularity
+	 * @param limit
+	 *            maximum number of slots
+	 * @param loader
+	 *            loads the appointments started between two dates
+	 * @return free slots ordered by start
+	 */
+	public List<FreeSlot> find(final LocalDateTime from, final LocalDateTime to, final int lengthMinutes,
+			final int limit, final BiFunction<LocalDateTime, LocalDateTime, List<Appointment>> loader) {
+
+		final LocalDate firstDay = from.toLocalDate();
+		final LocalDateTime origin = firstDay.atStartOfDay();
+
+		// slots numbered from the first day's midnight
+		final long fromSlot = ceilSlot(ChronoUnit.SECONDS.between(origin, from));
+		final long toSlot = ChronoUnit.SECONDS.between(origin, to) / (granularityMinutes * 60L);
+		final long length = ceilSlot(lengthMinutes * 60L);
+
+		final List<FreeSlot> slots = new ArrayList<>();
+
+		if (toSlot - fromSlot < length || limit <= 0) {
+			return slots;
+		}
+
+		final List<DayOccupancy> occupancies = getDays(firstDay, firstDay.plusDays((toSlot - 1) / slotsPerDay),
+				loader);
+
+		long runStart = -1;
+
+		for (int day = 0; day < occupancies.size(); day++) {
+
+			final DayOccupancy occupancy = occupancies.get(day);
+			final long base = (long) day * slotsPerDay;
+			final int lo = (int) Math.max(fromSlot - base, 0);
+			final int hi = (int) Math.min(toSlot - base, slotsPerDay);
+
+			for (int word = lo >>> 6; lo < hi && word <= (hi - 1) >>> 6; word++) {
+
+				final int wordStart = word << 6;
+				final int a = Math.max(lo - wordStart, 0);
+				final int b = Math.min(hi - wordStart, 64);
+
+				final long inRange = (-1L << a) & (-1L >>> (64 - b));
+				final long booked = occupancy.word(word) & inRange;
+				final long free = ~booked & inRange;
+
+				int bit = a;
+
+				while (bit < b) {
+
+					if (runStart < 0) {
+
+						final long nextFree = free & (-1L << bit);
+
+						if (nextFree == 0) {
+							break;
+						}
+
+						bit = Long.numberOfTrailingZeros(nextFree);
+						runStart = base + wordStart + bit;
+					}
+
+					final long nextBooked = booked & (-1L << bit);
+
+					if (nextBooked == 0) {
+						// the free run goes on in the next word
+						break;
+					}
+
+					bit = Long.numberOfTrailingZeros(nextBooked);
+					addSlots(slots, origin, runStart, base + wordStart + bit, length, limit);
+					runStart = -1;
+
+					if (slots.size() == limit) {
+						return slots;
+					}
+				}
+			}
+		}
+
+		if (runStart >= 0) {
+			addSlots(slots, origin, runStart, toSlot, length, limit);
+		}
+
+		return slots;
+	}
+
+	/**
+	 * Books the time of an appointment created in the resident days.
+	 *
+	 * @param appointment
+	 */
+	public void onAppointmentSaved(final Appointment appointment) {
+
+		synchronized (this) {
+			version++;
+		}
+
+		book(appointment, days::peek);
+	}
+
+	public BoundedCache<LocalDate, DayOccupancy> getCache() {
+		return days;
+	}
+
+	/**
+	 * Gets the occupancy of the days, loading the missing ones with a single
+	 * query. A request pinned to the primary reloads them all, the resident
+	 * days missing the writes of the other instances.
+	 */
+	private List<DayOccupancy> getDays(final LocalDate firstDay, final LocalDate lastDay,
+			final BiFunction<LocalDateTime, LocalDateTime, List<Appointment>> loader) {
+
+		final long loadVersion = getVersion();
+		final boolean reload = ReadRouting.isPinned();
+
+		final List<DayOccupancy> occupancies = new ArrayList<>();
+		LocalDate firstMissing = null;
+		LocalDate lastMissing = null;
+
+		for (LocalDate day = firstDay; !day.isAfter(lastDay); day = day.plusDays(1)) {
+
+			final DayOccupancy occupancy = reload ? null : days.get(day);
+			occupancies.add(occupancy);
+
+			if (occupancy == null) {
+				firstMissing = firstMissing == null ? day : firstMissing;
+				lastMissing = day;
+			}
+		}
+
+		if (firstMissing == null) {
+			return occupancies;
+		}
+
+		final Map<LocalDate, DayOccupancy> loaded = new HashMap<>();
+
+		for (LocalDate day = firstMissing; !day.isAfter(lastMissing); day = day.plusDays(1)) {
+			loaded.put(day, new DayOccupancy(granularityMinutes));
+		}
+
+		for (Appointment appointment : loader.apply(firstMissing.atStartOfDay().minusHours(maxDurationHours),
+				lastMissing.plusDays(1).atStartOfDay())) {
+			book(appointment, loaded::get);
+		}
+
+		synchronized (this) {
+			if (version == loadVersion) {
+				loaded.forEach(days::put);
+			}
+		}
+
+		for (int day = 0; day < occupancies.size(); day++) {
+			if (occupancies.get(day) == null) {
+				occupancies.set(day, loaded.get(firstDay.plusDays(day)));
+			}
+		}
+
+		return occupancies;
+	}
+
+	/**
+	 * Books the slots of the appointment in every day it overlaps, as found
+	 * by the given lookup.
+	 */
+	private void book(final Appointment appointment, final Function<LocalDate, DayOccupancy> lookup) {
+
+		final LocalDateTime start = appointment.getStart();
+		final LocalDateTime end = appointment.getEnd();
+
+		if (start == null || end == null || !end.isAfter(start)) {
+			return;
+		}
+
+		final LocalDate lastDay = end.minusNanos(1).toLocalDate();
+
+		for (LocalDate day = start.toLocalDate(); !day.isAfter(lastDay); day = day.plusDays(1)) {
+
+			final DayOccupancy occupancy = lookup.apply(day);
+
+			if (occupancy != null) {
+
+				final LocalDateTime midnight = day.atStartOfDay();
+				final long from = ChronoUnit.SECONDS.between(midnight, start) / (granularityMinutes * 60L);
+
+				occupancy.book((int) Math.max(from, 0),
+						(int) Math.min(ceilSlot(ChronoUnit.SECONDS.between(midnight, end)), slotsPerDay));
+			}
+		}
+	}
+
+	private void addSlots(final List<FreeSlot> slots, final LocalDateTime origin, final long runStart,
+			final long runEnd, final long length, final int limit) {
+
+		for (long start = runStart; start + length <= runEnd && slots.size() < limit; start += length) {
+			slots.add(new FreeSlot(origin.plusMinutes(start * granularityMinutes),
+					origin.plusMinutes((start + length) * granularityMinutes)));
+		}
+	}
+
+	private long ceilSlot(final long seconds) {
+		final long slotSeconds = granularityMinutes * 60L;
+		return Math.floorDiv(seconds + slotSeconds - 1, slotSeconds);
+	}
+
+	private synchronized long getVersion() {
+		return version;
+	}
+
+}
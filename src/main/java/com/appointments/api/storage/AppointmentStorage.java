@@ -0,0 +1,143 @@
+package com.appointments.api.storage;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+
+/**
+ * Storage layout of the appointments, legacy or compact depending on
+ * "appointments.storage.compact".
+ *
+ * The legacy layout keeps the property names as field names, the patient id
+ * as its hex string and the "_class" type hint. The compact layout lives in
+ * its own collection, filled by CompactStorageMigration, and stores:
+ *
+ * <pre>
+ * { _id, p : ObjectId(patientId), s : start, e : end, r : rate }
+ * </pre>
+ *
+ * The dates are BSON dates in both layouts, already 8 bytes each.
+ */
+@Component("appointmentStorage")
+public class AppointmentStorage {
+
+	public static final String LEGACY_COLLECTION = "appointment";
+	public static final String COMPACT_COLLECTION = "appointmentCompact";
+
+	public static final String PATIENT_ID = "patientId";
+
+	private static final String TYPE_KEY = "_class";
+
+	private static final Map<String, String> COMPACT_FIELDS;
+
+	static {
+		final Map<String, String> fields = new HashMap<>();
+		fields.put(PATIENT_ID, "p");
+		fields.put("start", "s");
+		fields.put("end", "e");
+		fields.put("rate", "r");
+		COMPACT_FIELDS = Collections.unmodifiableMap(fields);
+	}
+
+	@Value("${appointments.storage.compact:false}")
+	private boolean compact;
+
+	public boolean isCompact() {
+		return compact;
+	}
+
+	/**
+	 * Resolves the collection of the Appointment entity.
+	 *
+	 * @return collection of the current layout
+	 */
+	public String getCollection() {
+		return compact ? COMPACT_COLLECTION : LEGACY_COLLECTION;
+	}
+
+	/**
+	 * @param property
+	 *            Appointment property
+	 * @return its field name in the current layout
+	 */
+	public String field(final String property) {
+		return field(property, compact);
+	}
+
+	/**
+	 * @param property
+	 *            Appointment property
+	 * @param compact
+	 *            layout
+	 * @return its field name in the given layout
+	 */
+	public static String field(final String property, final boolean compact) {
+		return compact ? COMPACT_FIELDS.getOrDefault(property, property) : property;
+	}
+
+	/**
+	 * Value to match the patientId field against in queries, the derived
+	 * queries of Spring Data would compare the string with the ObjectId.
+	 *
+	 * @param patientId
+	 * @return the patient id as stored in the current layout
+	 */
+	public Object patientIdValue(final String patientId) {
+		return compact ? toObjectId(patientId) : patientId;
+	}
+
+	/**
+	 * Rewrites a document into the compact layout: the fields are renamed,
+	 * the patient id becomes an ObjectId and the type hint is dropped, the
+	 * entity type being known from the collection. Documents already compact
+	 * are left as they are.
+	 *
+	 * @param document
+	 *            appointment document, modified in place
+	 * @return the document
+	 */
+	public static DBObject compact(final DBObject document) {
+
+		document.removeField(TYPE_KEY);
+
+		for (Map.Entry<String, String> field : COMPACT_FIELDS.entrySet()) {
+			if (document.containsField(field.getKey())) {
+				document.put(field.getValue(), document.removeField(field.getKey()));
+			}
+		}
+
+		final String patientIdField = COMPACT_FIELDS.get(PATIENT_ID);
+		final Object patientId = document.get(patientIdField);
+
+		if (patientId instanceof String) {
+			document.put(patientIdField, toObjectId((String) patientId));
+		}
+
+		return document;
+	}
+
+	/**
+	 * @param document
+	 *            legacy appointment document, not modified
+	 * @return a compact copy of the document
+	 */
+	public static DBObject compactCopy(final DBObject document) {
+		return compact(new BasicDBObject(document.toMap()));
+	}
+
+	/**
+	 * Patient ids are ObjectIds generated by the repository, any other id is
+	 * kept as a string so it still matches.
+	 */
+	private static Object toObjectId(final String patientId) {
+		return ObjectId.isValid(patientId) ? new ObjectId(patientId) : patientId;
+	}
+
+}
@@ -0,0 +1,26 @@
+package com.appointments.api.storage;
+
+import org.springframework.data.mapping.PersistentProperty;
+import org.springframework.data.mapping.model.FieldNamingStrategy;
+import org.springframework.data.mapping.model.PropertyNameFieldNamingStrategy;
+
+import com.appointments.api.entities.Appointment;
+
+/**
+ * Short field names for the Appointment properties, the other entities keep
+ * their property names. As the names are resolved by the mapping context,
+ * the derived queries, the updates and the sorts follow the compact layout.
+ */
+class CompactFieldNamingStrategy implements FieldNamingStrategy {
+
+	@Override
+	public String getFieldName(final PersistentProperty<?> property) {
+
+		if (Appointment.class.equals(property.getOwner().getType())) {
+			return AppointmentStorage.field(property.getName(), true);
+		}
+
+		return PropertyNameFieldNamingStrategy.INSTANCE.getFieldName(property);
+	}
+
+}
@@ -0,0 +1,65 @@
+package com.appointments.api.storage;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.BeforeSaveEvent;
+
+import com.appointments.api.entities.Appointment;
+
+/**
+ * Maps the appointments on the compact layout of AppointmentStorage when
+ * "appointments.storage.compact" is true.
+ */
+@Configuration
+@ConditionalOnProperty(name = "appointments.storage.compact")
+public class CompactStorageConfiguration {
+
+	/**
+	 * Sets the naming strategy on the mapping context of the Mongo
+	 * auto-configuration before its entities are built.
+	 */
+	@Bean
+	public static BeanPostProcessor compactFieldNamingPostProcessor() {
+
+		return new BeanPostProcessor() {
+
+			@Override
+			public Object postProcessBeforeInitialization(final Object bean, final String beanName)
+					throws BeansException {
+
+				if (bean instanceof MongoMappingContext) {
+					((MongoMappingContext) bean).setFieldNamingStrategy(new CompactFieldNamingStrategy());
+				}
+				return bean;
+			}
+
+			@Override
+			public Object postProcessAfterInitialization(final Object bean, final String beanName)
+					throws BeansException {
+				return bean;
+			}
+		};
+	}
+
+	/**
+	 * The fields are already renamed by the mapping, the patient id and the
+	 * type hint are rewritten before every save.
+	 */
+	@Bean
+	public AbstractMongoEventListener<Appointment> compactAppointmentListener() {
+
+		return new AbstractMongoEventListener<Appointment>() {
+
+			@Override
+			public void onBeforeSave(final BeforeSaveEvent<Appointment> event) {
+				AppointmentStorage.compact(event.getDBObject());
+			}
+		};
+	}
+
+}
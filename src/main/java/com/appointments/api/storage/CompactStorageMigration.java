@@ -0,0 +1,310 @@
+package com.appointments.api.storage;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.IndexOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.stereotype.Component;
+
+import com.appointments.api.indexes.AppointmentIndexManager;
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.CommandResult;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+
+/**
+ * Copies the legacy appointment collection into the compact one, while the
+ * application keeps serving from the legacy collection.
+ *
+ * A run is one pass over the legacy documents by _id, in batches. Each batch
+ * is compared to the compact documents of the same _id range: the missing
+ * or different ones are replaced and the ones deleted meanwhile are removed,
+ * with one unordered bulk write. The last _id of the pass is checkpointed
+ * after every batch in the "migrations" collection, so an interrupted run
+ * resumes where it stopped. Once a pass is complete the next run starts a
+ * new one, which only writes what changed since: running it again right
+ * before switching "appointments.storage.compact" on catches up the writes
+ * made during the first pass.
+ */
+@Component
+public class CompactStorageMigration {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(CompactStorageMigration.class);
+
+	static final String MIGRATIONS_COLLECTION = "migrations";
+
+	static final String MIGRATION_ID = "appointmentCompactStorage";
+
+	private static final String ID = "_id";
+
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+	@Autowired
+	private AppointmentIndexManager appointmentIndexManager;
+
+	@Value("${appointments.storage.migration.batch-size:1000}")
+	private int batchSize;
+
+	/**
+	 * Pause between the batches, leaving room to the application traffic.
+	 */
+	@Value("${appointments.storage.migration.pause-millis:0}")
+	private long pauseMillis;
+
+	/**
+	 * Runs or resumes a migration pass.
+	 *
+	 * @return sizes before and after the pass and documents written
+	 * @throws InterruptedException
+	 *             while pausing between the batches, the pass is resumable
+	 */
+	public Report migrate() throws InterruptedException {
+
+		final DBCollection legacy = mongoTemplate.getCollection(AppointmentStorage.LEGACY_COLLECTION);
+		final DBCollection compact = mongoTemplate.getCollection(AppointmentStorage.COMPACT_COLLECTION);
+		final DBCollection migrations = mongoTemplate.getCollection(MIGRATIONS_COLLECTION);
+
+		final Report report = new Report();
+		report.legacyBefore = collectionSize(AppointmentStorage.LEGACY_COLLECTION);
+		report.compactBefore = collectionSize(AppointmentStorage.COMPACT_COLLECTION);
+
+		final DBObject checkpoint = migrations.findOne(new BasicDBObject(ID, MIGRATION_ID));
+		Object lastId = checkpoint == null ? null : checkpoint.get("lastId");
+
+		if (lastId != null) {
+			LOGGER.info("Resuming the compact storage migration after _id {}", lastId);
+		}
+
+		while (true) {
+
+			final List<DBObject> batch = nextBatch(legacy, lastId);
+
+			if (batch.isEmpty()) {
+				// removes the compact documents after the last legacy one
+				report.removed += compact.remove(idRange(lastId, null)).getN();
+				break;
+			}
+
+			final Object batchLastId = batch.get(batch.size() - 1).get(ID);
+
+			sync(compact, batch, idRange(lastId, batchLastId), report);
+
+			lastId = batchLastId;
+			report.read += batch.size();
+
+			migrations.update(new BasicDBObject(ID, MIGRATION_ID),
+					new BasicDBObject("$set", new BasicDBObject("lastId", lastId).append("updatedAt", new Date())),
+					true, false);
+
+			if (pauseMillis > 0) {
+				Thread.sleep(pauseMillis);
+			}
+		}
+
+		final IndexOperations indexOperations = mongoTemplate.indexOps(AppointmentStorage.COMPACT_COLLECTION);
+
+		for (Index index : appointmentIndexManager.getIndexes(true)) {
+			indexOperations.ensureIndex(index);
+		}
+
+		final DBObject completed = new BasicDBObject("$set",
+				new BasicDBObject("lastId", null).append("completedAt", new Date()))
+						.append("$inc", new BasicDBObject("passes", 1));
+
+		migrations.update(new BasicDBObject(ID, MIGRATION_ID), completed, true, false);
+
+		report.legacyAfter = collectionSize(AppointmentStorage.LEGACY_COLLECTION);
+		report.compactAfter = collectionSize(AppointmentStorage.COMPACT_COLLECTION);
+
+		return report;
+	}
+
+	private List<DBObject> nextBatch(final DBCollection legacy, final Object lastId) {
+
+		final List<DBObject> batch = new ArrayList<>(batchSize);
+
+		try (DBCursor cursor = legacy.find(idRange(lastId, null)).sort(new BasicDBObject(ID, 1)).limit(batchSize)) {
+			while (cursor.hasNext()) {
+				batch.add(cursor.next());
+			}
+		}
+
+		return batch;
+	}
+
+	/**
+	 * Brings the compact documents of the range in line with the legacy
+	 * batch.
+	 */
+	private void sync(final DBCollection compact, final List<DBObject> batch, final DBObject range,
+			final Report report) {
+
+		final Map<Object, DBObject> existing = new HashMap<>();
+
+		for (DBObject document : compact.find(range)) {
+			existing.put(document.get(ID), document);
+		}
+
+		final BulkWriteOperation bulk = compact.initializeUnorderedBulkOperation();
+		int writes = 0;
+
+		for (DBObject document : batch) {
+
+			final Object id = document.get(ID);
+			final DBObject converted = AppointmentStorage.compact(document);
+
+			if (!converted.equals(existing.remove(id))) {
+				bulk.find(new BasicDBObject(ID, id)).upsert().replaceOne(converted);
+				writes++;
+			}
+		}
+
+		for (Object deleted : existing.keySet()) {
+			bulk.find(new BasicDBObject(ID, deleted)).removeOne();
+			writes++;
+		}
+
+		if (writes > 0) {
+			bulk.execute();
+		}
+
+		report.written += writes - existing.size();
+		report.removed += existing.size();
+	}
+
+	/**
+	 * @return _id in (from, to], unbounded when null
+	 */
+	private static DBObject idRange(final Object from, final Object to) {
+
+		final BasicDBObject range = new BasicDBObject();
+
+		if (from != null) {
+			range.append("$gt", from);
+		}
+		if (to != null) {
+			range.append("$lte", to);
+		}
+
+		return range.isEmpty() ? new BasicDBObject() : new BasicDBObject(ID, range);
+	}
+
+	private CollectionSize collectionSize(final String collection) {
+
+		final CommandResult stats = mongoTemplate.getDb().command(new BasicDBObject("collStats", collection));
+
+		final CollectionSize size = new CollectionSize();
+
+		// a missing collection fails on recent servers and is empty on older ones
+		if (stats.ok()) {
+			size.count = longOf(stats.get("count"));
+			size.size = longOf(stats.get("size"));
+			size.storageSize = longOf(stats.get("storageSize"));
+			size.totalIndexSize = longOf(stats.get("totalIndexSize"));
+		}
+
+		return size;
+	}
+
+	private static long longOf(final Object value) {
+		return value instanceof Number ? ((Number) value).longValue() : 0;
+	}
+
+	/**
+	 * Outcome of a migration pass.
+	 */
+	public static class Report {
+
+		private CollectionSize legacyBefore;
+		private CollectionSize legacyAfter;
+		private CollectionSize compactBefore;
+		private CollectionSize compactAfter;
+
+		private long read;
+		private long written;
+		private long removed;
+
+		public CollectionSize getLegacyBefore() {
+			return legacyBefore;
+		}
+
+		public CollectionSize getLegacyAfter() {
+			return legacyAfter;
+		}
+
+		public CollectionSize getCompactBefore() {
+			return compactBefore;
+		}
+
+		public CollectionSize getCompactAfter() {
+			return compactAfter;
+		}
+
+		public long getRead() {
+			return read;
+		}
+
+		public long getWritten() {
+			return written;
+		}
+
+		public long getRemoved() {
+			return removed;
+		}
+
+		@Override
+		public String toString() {
+			return "read " + read + ", written " + written + ", removed " + removed + "\n" //
+					+ "  legacy  before " + legacyBefore + "\n" //
+					+ "  legacy  after  " + legacyAfter + "\n" //
+					+ "  compact before " + compactBefore + "\n" //
+					+ "  compact after  " + compactAfter;
+		}
+	}
+
+	/**
+	 * Sizes in bytes reported by collStats.
+	 */
+	public static class CollectionSize {
+
+		private long count;
+		private long size;
+		private long storageSize;
+		private long totalIndexSize;
+
+		public long getCount() {
+			return count;
+		}
+
+		public long getSize() {
+			return size;
+		}
+
+		public long getStorageSize() {
+			return storageSize;
+		}
+
+		public long getTotalIndexSize() {
+			return totalIndexSize;
+		}
+
+		@Override
+		public String toString() {
+			return "count=" + count + " size=" + size + " storageSize=" + storageSize + " totalIndexSize="
+					+ totalIndexSize;
+		}
+	}
+
+}
@@ -0,0 +1,35 @@
+package com.appointments.api.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs a CompactStorageMigration pass at startup when
+ * "appointments.storage.migrate" is true, usually from a process started
+ * without the web environment next to the serving instances.
+ */
+@Component
+@ConditionalOnProperty(name = "appointments.storage.migrate")
+public class CompactStorageMigrationRunner implements ApplicationRunner {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(CompactStorageMigrationRunner.class);
+
+	@Autowired
+	private CompactStorageMigration migration;
+
+	@Override
+	public void run(final ApplicationArguments args) throws Exception {
+
+		LOGGER.info("Compact storage migration pass started");
+
+		final CompactStorageMigration.Report report = migration.migrate();
+
+		LOGGER.info("Compact storage migration pass completed: {}", report);
+	}
+
+}
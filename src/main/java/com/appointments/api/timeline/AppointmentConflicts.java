@@ -0,0 +1,129 @@
+package com.appointments.api.timeline;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.appointments.api.entities.Appointment;
+import com.appointments.api.repositories.AppointmentRepository;
+
+/**
+ * Detects appointments overlapping another appointment of the same patient.
+ * 
+ * When the patient's timeline is resident and was loaded less than
+ * "appointments.conflicts.timeline-max-age-millis" ago the check is an
+ * O(log n) lookup on its interval tree. An older timeline may miss the
+ * appointments created by other instances, so the indexed range query on
+ * (patientId, start) is run instead. When the timeline is not resident,
+ * depending on "appointments.conflicts.fallback", either it is loaded
+ * ("load") or the range query is run ("query").
+ * 
+ * Checks and inserts of the same patient must run under
+ * {@link #lock(Collection)}, otherwise two concurrent creations could both
+ * pass the check. The locks are per instance: two instances creating
+ * overlapping appointments of the same patient at the same moment can still
+ * both pass it.
+ */
+@Component
+public class AppointmentConflicts {
+
+	private static final int LOCK_STRIPES = 256;
+
+	@Autowired
+	private PatientTimelines patientTimelines;
+
+	@Autowired
+	private AppointmentRepository appointmentRepository;
+
+	@Value("${appointments.conflicts.enabled:true}")
+	private boolean enabled;
+
+	@Value("${appointments.conflicts.fallback:query}")
+	private String fallback;
+
+	@Value("${appointments.conflicts.timeline-max-age-millis:1000}")
+	private long timelineMaxAgeMillis;
+
+	private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+	public AppointmentConflicts() {
+		for (int i = 0; i < LOCK_STRIPES; i++) {
+			locks[i] = new ReentrantLock();
+		}
+	}
+
+	/**
+	 * @param appointment
+	 *            appointment about to be created
+	 * @return an existing appointment of the patient overlapping it, null if
+	 *         none.
+	 */
+	public Appointment findConflict(final Appointment appointment) {
+
+		if (!enabled) {
+			return null;
+		}
+
+		final String patientId = appointment.getPatientId();
+		final LocalDateTime start = appointment.getStart();
+		final LocalDateTime end = appointment.getEnd();
+
+		PatientTimeline timeline = patientTimelines.isEnabled() ? patientTimelines.getResidentTimeline(patientId)
+				: null;
+
+		if (timeline != null && !timeline.isLoadedWithin(timelineMaxAgeMillis)) {
+			// may miss the appointments created by other instances
+			return appointmentRepository.findFirstByPatientIdAndStartLessThanAndEndGreaterThan(patientId, end, start);
+		}
+
+		if (timeline == null && patientTimelines.isEnabled() && "load".equalsIgnoreCase(fallback)) {
+			timeline = patientTimelines.getTimeline(patientId);
+		}
+
+		if (timeline != null) {
+			return timeline.findOverlap(start, end);
+		}
+
+		return appointmentRepository.findFirstByPatientIdAndStartLessThanAndEndGreaterThan(patientId, end, start);
+	}
+
+	/**
+	 * Locks the given patients, in a fixed order so batches can't deadlock.
+	 * 
+	 * @param patientIds
+	 * @return the lock to be released after the insertion
+	 */
+	public PatientsLock lock(final Collection<String> patientIds) {
+
+		final TreeSet<Integer> stripes = new TreeSet<>();
+
+		for (String patientId : patientIds) {
+			stripes.add((patientId.hashCode() & Integer.MAX_VALUE) % LOCK_STRIPES);
+		}
+
+		for (Integer stripe : stripes) {
+			locks[stripe].lock();
+		}
+
+		return () -> {
+			for (Integer stripe : stripes.descendingSet()) {
+				locks[stripe].unlock();
+			}
+		};
+	}
+
+	/**
+	 * Lock over a set of patients, released by try-with-resources.
+	 */
+	public interface PatientsLock extends AutoCloseable {
+
+		@Override
+		void close();
+	}
+
+}
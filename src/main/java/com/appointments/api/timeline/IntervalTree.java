@@ -0,0 +1,167 @@
+package com.appointments.api.timeline;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Interval tree of [start, end) intervals, as a treap ordered by (start, id)
+ * where every node keeps the maximum end of its subtree.
+ * 
+ * Insertions and overlap lookups are O(log n) expected. Not thread safe.
+ *
+ * @param <V>
+ *            value held by every interval
+ */
+public class IntervalTree<V> {
+
+	private Node<V> root;
+
+	private int size;
+
+	/**
+	 * Adds an interval, replacing the one with the same start and id.
+	 * 
+	 * @param start
+	 * @param end
+	 * @param id
+	 * @param value
+	 */
+	public void put(final LocalDateTime start, final LocalDateTime end, final String id, final V value) {
+		root = insert(root, new Node<>(start, end, id, value));
+	}
+
+	/**
+	 * Finds an interval overlapping [start, end). Intervals only touching at
+	 * their ends don't overlap.
+	 * 
+	 * @param start
+	 * @param end
+	 * @return the value of an overlapping interval, null if none.
+	 */
+	public V findOverlap(final LocalDateTime start, final LocalDateTime end) {
+
+		Node<V> node = root;
+
+		while (node != null) {
+
+			if (node.start.isBefore(end) && start.isBefore(node.end)) {
+				return node.value;
+			}
+
+			// if the left subtree reaches start and holds no overlap, no
+			// interval on the right starts before end either
+			if (node.left != null && node.left.maxEnd.isAfter(start)) {
+				node = node.left;
+			} else {
+				node = node.right;
+			}
+		}
+
+		return null;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	private Node<V> insert(final Node<V> node, final Node<V> inserted) {
+
+		if (node == null) {
+			size++;
+			return inserted;
+		}
+
+		final int comparison = compare(inserted, node);
+
+		if (comparison == 0) {
+			node.end = inserted.end;
+			node.value = inserted.value;
+			update(node);
+			return node;
+		}
+
+		Node<V> result = node;
+
+		if (comparison < 0) {
+			node.left = insert(node.left, inserted);
+			if (node.left.priority > node.priority) {
+				result = rotateRight(node);
+			}
+		} else {
+			node.right = insert(node.right, inserted);
+			if (node.right.priority > node.priority) {
+				result = rotateLeft(node);
+			}
+		}
+
+		update(node);
+		update(result);
+		return result;
+	}
+
+	private Node<V> rotateRight(final Node<V> node) {
+
+		final Node<V> left = node.left;
+		node.left = left.right;
+		left.right = node;
+		update(node);
+		return left;
+	}
+
+	private Node<V> rotateLeft(final Node<V> node) {
+
+		final Node<V> right = node.right;
+		node.right = right.left;
+		right.left = node;
+		update(node);
+		return right;
+	}
+
+	private static <V> void update(final Node<V> node) {
+
+		LocalDateTime maxEnd = node.end;
+
+		if (node.left != null && node.left.maxEnd.isAfter(maxEnd)) {
+			maxEnd = node.left.maxEnd;
+		}
+		if (node.right != null && node.right.maxEnd.isAfter(maxEnd)) {
+			maxEnd = node.right.maxEnd;
+		}
+
+		node.maxEnd = maxEnd;
+	}
+
+	private static int compare(final Node<?> a, final Node<?> b) {
+
+		final int byStart = a.start.compareTo(b.start);
+		return byStart != 0 ? byStart : a.id.compareTo(b.id);
+	}
+
+	private static final class Node<V> {
+
+		private final LocalDateTime start;
+
+		private final String id;
+
+		private final int priority = ThreadLocalRandom.current().nextInt();
+
+		private LocalDateTime end;
+
+		private LocalDateTime maxEnd;
+
+		private V value;
+
+		private Node<V> left;
+
+		private Node<V> right;
+
+		Node(final LocalDateTime start, final LocalDateTime end, final String id, final V value) {
+			this.start = start;
+			this.end = end;
+			this.maxEnd = end;
+			this.id = id;
+			this.value = value;
+		}
+	}
+
+}
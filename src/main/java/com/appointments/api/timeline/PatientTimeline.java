@@ -0,0 +1,139 @@
+package com.appointments.api.timeline;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import com.appointments.api.entities.Appointment;
+
+/**
+ * Appointments of one patient sorted by start, from a given date on.
+ * 
+ * Appointments started before {@link #getLoadedFrom()} are not resident, so
+ * a "last appointment" lookup finding nothing is only conclusive when the
+ * timeline has been loaded from the beginning. The same appointments are
+ * indexed by an interval tree for the overlap lookups.
+ */
+public class PatientTimeline {
+
+	private final LocalDateTime loadedFrom;
+
+	private final long loadedAt = System.currentTimeMillis();
+
+	private final ConcurrentSkipListMap<Key, Appointment> appointments = new ConcurrentSkipListMap<>();
+
+	private final IntervalTree<Appointment> intervals = new IntervalTree<>();
+
+	/**
+	 * The Constructor.
+	 * 
+	 * @param loadedFrom
+	 *            the start date from which the appointments are resident,
+	 *            null if all of them are.
+	 */
+	public PatientTimeline(final LocalDateTime loadedFrom) {
+		this.loadedFrom = loadedFrom;
+	}
+
+	/**
+	 * Adds an appointment, replacing its previous version.
+	 * 
+	 * @param appointment
+	 */
+	public synchronized void put(final Appointment appointment) {
+
+		if (loadedFrom != null && appointment.getStart().isBefore(loadedFrom)) {
+			return;
+		}
+
+		appointments.put(new Key(appointment.getStart(), appointment.getId()), appointment);
+		intervals.put(appointment.getStart(), appointment.getEnd(), appointment.getId(), appointment);
+	}
+
+	/**
+	 * @param start
+	 * @param end
+	 * @return a resident appointment overlapping [start, end), null if none.
+	 */
+	public synchronized Appointment findOverlap(final LocalDateTime start, final LocalDateTime end) {
+		return intervals.findOverlap(start, end);
+	}
+
+	/**
+	 * @param now
+	 * @return the first appointment started after now, null if none.
+	 */
+	public Appointment next(final LocalDateTime now) {
+
+		final Map.Entry<Key, Appointment> entry = appointments.higherEntry(new Key(now, Key.MAX_ID));
+		return entry == null ? null : entry.getValue();
+	}
+
+	/**
+	 * @param now
+	 * @return the latest appointment started before now, null if none is
+	 *         resident.
+	 */
+	public Appointment last(final LocalDateTime now) {
+
+		final Map.Entry<Key, Appointment> entry = appointments.lowerEntry(new Key(now, Key.MIN_ID));
+		return entry == null ? null : entry.getValue();
+	}
+
+	/**
+	 * @return true if every appointment of the patient is resident.
+	 */
+	public boolean isComplete() {
+		return loadedFrom == null;
+	}
+
+	public LocalDateTime getLoadedFrom() {
+		return loadedFrom;
+	}
+
+	/**
+	 * @param maxAgeMillis
+	 * @return true if the timeline was loaded less than maxAgeMillis ago, so
+	 *         it misses at most the writes other instances made since then.
+	 */
+	public boolean isLoadedWithin(final long maxAgeMillis) {
+		return System.currentTimeMillis() - loadedAt < maxAgeMillis;
+	}
+
+	public int size() {
+		return appointments.size();
+	}
+
+	private static final class Key implements Comparable<Key> {
+
+		private static final String MIN_ID = "";
+		private static final String MAX_ID = "\uffff";
+
+		private final LocalDateTime start;
+
+		private final String id;
+
+		Key(final LocalDateTime start, final String id) {
+			this.start = start;
+			this.id = id;
+		}
+
+		@Override
+		public int compareTo(final Key other) {
+
+			final int byStart = start.compareTo(other.start);
+			return byStart != 0 ? byStart : id.compareTo(other.id);
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			return obj instanceof Key && compareTo((Key) obj) == 0;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * start.hashCode() + id.hashCode();
+		}
+	}
+
+}
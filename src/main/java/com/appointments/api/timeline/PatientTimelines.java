@@ -0,0 +1,169 @@
+package com.appointments.api.timeline;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.appointments.api.cache.BoundedCache;
+import com.appointments.api.entities.Appointment;
+import com.appointments.api.repositories.AppointmentRepository;
+
+/**
+ * In-process read model answering the "nearest appointment to now" lookups of
+ * a patient.
+ * 
+ * The timeline of a patient is loaded lazily on the first lookup, with the
+ * appointments started in the last "appointments.timeline.horizon-days" (or
+ * all of them when the horizon is 0), and then kept current by the write
+ * paths of AppointmentService. Timelines are bounded by an LRU on patients
+ * and expire after "appointments.timeline.ttl-seconds", which bounds the
+ * staleness of writes made by other instances.
+ */
+@Component
+public class PatientTimelines {
+
+	private static final int VERSION_STRIPES = 1024;
+
+	@Autowired
+	private AppointmentRepository appointmentRepository;
+
+	@Value("${appointments.timeline.enabled:true}")
+	private boolean enabled;
+
+	@Value("${appointments.timeline.max-patients:10000}")
+	private int maxPatients;
+
+	@Value("${appointments.timeline.ttl-seconds:300}")
+	private long ttlSeconds;
+
+	@Value("${appointments.timeline.horizon-days:90}")
+	private long horizonDays;
+
+	private BoundedCache<String, PatientTimeline> timelines;
+
+	// bumped by every write of a patient, so a load racing with a write isn't
+	// cached with the write missing
+	private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+
+	@PostConstruct
+	public void init() {
+		timelines = new BoundedCache<>("timelines", maxPatients, ttlSeconds, TimeUnit.SECONDS);
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @param patientId
+	 * @param now
+	 * @return the first appointment of the patient started after now, null if
+	 *         none.
+	 */
+	public Appointment getNextAppointment(final String patientId, final LocalDateTime now) {
+		return getTimeline(patientId).next(now);
+	}
+
+	/**
+	 * @param patientId
+	 * @param now
+	 * @return the latest appointment of the patient started before now, null
+	 *         if none.
+	 */
+	public Appointment getLastAppointment(final String patientId, final LocalDateTime now) {
+
+		final PatientTimeline timeline = getTimeline(patientId);
+		final Appointment last = timeline.last(now);
+
+		if (last != null || timeline.isComplete()) {
+			return last;
+		}
+
+		// older than the resident horizon
+		return appointmentRepository.findFirstByPatientIdAndStartBeforeOrderByStartDesc(patientId, now);
+	}
+
+	/**
+	 * Applies an appointment created or rated to the resident timeline of
+	 * its patient, if any.
+	 * 
+	 * @param appointment
+	 */
+	public void onAppointmentSaved(final Appointment appointment) {
+
+		versions.incrementAndGet(stripe(appointment.getPatientId()));
+
+		final PatientTimeline timeline = timelines.peek(appointment.getPatientId());
+
+		if (timeline != null) {
+			timeline.put(appointment);
+		}
+	}
+
+	/**
+	 * @param patientId
+	 * @return the timeline of the patient if resident, null otherwise.
+	 */
+	public PatientTimeline getResidentTimeline(final String patientId) {
+		return timelines.peek(patientId);
+	}
+
+	public BoundedCache<String, PatientTimeline> getCache() {
+		return timelines;
+	}
+
+	/**
+	 * Gets the timeline of the patient, loading it on a miss.
+	 * 
+	 * @param patientId
+	 * @return timeline
+	 */
+	public PatientTimeline getTimeline(final String patientId) {
+
+		final PatientTimeline cached = timelines.get(patientId);
+
+		if (cached != null) {
+			return cached;
+		}
+
+		final int stripe = stripe(patientId);
+		final long version = versions.get(stripe);
+
+		final PatientTimeline timeline = load(patientId);
+		timelines.put(patientId, timeline);
+
+		if (versions.get(stripe) != version) {
+			// a write may have been missed by both the load and the timeline
+			timelines.invalidate(patientId);
+		}
+
+		return timeline;
+	}
+
+	private PatientTimeline load(final String patientId) {
+
+		if (horizonDays <= 0) {
+
+			final PatientTimeline timeline = new PatientTimeline(null);
+			appointmentRepository.findByPatientId(patientId).forEach(timeline::put);
+			return timeline;
+		}
+
+		final LocalDateTime from = LocalDateTime.now().minusDays(horizonDays);
+
+		final PatientTimeline timeline = new PatientTimeline(from);
+		appointmentRepository.findByPatientIdAndStartGreaterThanEqual(patientId, from).forEach(timeline::put);
+		return timeline;
+	}
+
+	private static int stripe(final String patientId) {
+		return (patientId.hashCode() & Integer.MAX_VALUE) % VERSION_STRIPES;
+	}
+
+}
@@ -0,0 +1,165 @@
+package com.appointments.api.reads;
+
+import java.util.concurrent.CompletableFuture;
+
+import javax.servlet.http.Cookie;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.method.HandlerMethod;
+
+import com.appointments.api.etag.AppointmentsVersion;
+import com.appointments.api.etag.ConditionalGetInterceptor;
+import com.appointments.api.etag.VersionedResource;
+
+/**
+ * In the package of ReadRouting, whose pin is package-private.
+ */
+public class ReadRoutingTest {
+
+	private static final int PIN_SECONDS = 90;
+
+	private final ReadRouting readRouting = new ReadRouting();
+
+	private final ReadYourWritesInterceptor interceptor = new ReadYourWritesInterceptor(PIN_SECONDS);
+
+	@Before
+	public void setUp() {
+		ReflectionTestUtils.setField(readRouting, "enabled", true);
+	}
+
+	@After
+	public void tearDown() {
+		ReadRouting.unpin();
+	}
+
+	/**
+	 * Tests the reads are routed to a secondary only inside onSecondary and
+	 * when enabled
+	 */
+	@Test
+	public void onSecondaryTest() {
+
+		Assert.assertTrue(readRouting.onSecondary(ReadRouting::isSecondary));
+		Assert.assertFalse(ReadRouting.isSecondary());
+
+		ReflectionTestUtils.setField(readRouting, "enabled", false);
+		Assert.assertFalse(readRouting.onSecondary(ReadRouting::isSecondary));
+	}
+
+	/**
+	 * Tests a pinned request stays on the primary, on its thread and on the
+	 * threads its tasks are propagated to
+	 */
+	@Test
+	public void pinnedTest() throws Exception {
+
+		ReadRouting.pin();
+		Assert.assertFalse(readRouting.onSecondary(ReadRouting::isSecondary));
+
+		final CompletableFuture<Boolean> pinned = new CompletableFuture<>();
+		final Thread thread = new Thread(ReadRouting.propagate(() -> pinned.complete(ReadRouting.isPinned())));
+		thread.start();
+		thread.join();
+
+		Assert.assertTrue(pinned.get());
+
+		ReadRouting.unpin();
+		Assert.assertTrue(readRouting.onSecondary(ReadRouting::isSecondary));
+	}
+
+	/**
+	 * Tests a write sets the pin cookie and pins its own request until
+	 * completion
+	 */
+	@Test
+	public void writePinsTest() throws Exception {
+
+		final MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/appointments");
+		final MockHttpServletResponse response = new MockHttpServletResponse();
+
+		final long before = System.currentTimeMillis();
+		Assert.assertTrue(interceptor.preHandle(request, response, null));
+
+		final Cookie cookie = response.getCookie(ReadYourWritesInterceptor.COOKIE);
+		Assert.assertNotNull(cookie);
+		Assert.assertEquals(PIN_SECONDS, cookie.getMaxAge());
+		Assert.assertTrue(Long.parseLong(cookie.getValue()) >= before + PIN_SECONDS * 1000L);
+		Assert.assertTrue(ReadRouting.isPinned());
+
+		interceptor.afterCompletion(request, response, null, null);
+		Assert.assertFalse(ReadRouting.isPinned());
+	}
+
+	/**
+	 * Tests a read is pinned by a running cookie only
+	 */
+	@Test
+	public void readPinTest() throws Exception {
+
+		final long now = System.currentTimeMillis();
+
+		Assert.assertTrue(isPinnedBy(String.valueOf(now + 10000)));
+		Assert.assertFalse(isPinnedBy(String.valueOf(now - 1)));
+		Assert.assertFalse(isPinnedBy("not a date"));
+		Assert.assertFalse(isPinnedBy(null));
+	}
+
+	/**
+	 * Tests a pinned request is answered in full even with a matching tag,
+	 * the version missing the writes of the other instances
+	 */
+	@Test
+	public void pinnedConditionalGetTest() throws Exception {
+
+		final AppointmentsVersion version = new AppointmentsVersion();
+		ReflectionTestUtils.setField(version, "windowSeconds", 3600L);
+		final ConditionalGetInterceptor conditionalGet = new ConditionalGetInterceptor(version);
+		final HandlerMethod handler = new HandlerMethod(this, getClass().getDeclaredMethod("versioned"));
+
+		final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/appointments");
+		request.addHeader(HttpHeaders.IF_NONE_MATCH, version.getETag());
+
+		final MockHttpServletResponse notModified = new MockHttpServletResponse();
+		Assert.assertFalse(conditionalGet.preHandle(request, notModified, handler));
+		Assert.assertEquals(HttpStatus.NOT_MODIFIED.value(), notModified.getStatus());
+
+		ReadRouting.pin();
+
+		final MockHttpServletResponse full = new MockHttpServletResponse();
+		Assert.assertTrue(conditionalGet.preHandle(request, full, handler));
+		Assert.assertEquals(version.getETag(), full.getHeader(HttpHeaders.ETAG));
+	}
+
+	@VersionedResource
+	private void versioned() {
+	}
+
+	private boolean isPinnedBy(final String cookie) throws Exception {
+
+		final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/appointments");
+		final MockHttpServletResponse response = new MockHttpServletResponse();
+
+		if (cookie != null) {
+			request.setCookies(new Cookie(ReadYourWritesInterceptor.COOKIE, cookie));
+		}
+
+		interceptor.preHandle(request, response, null);
+
+		try {
+			// a read doesn't extend the pin
+			Assert.assertNull(response.getCookie(ReadYourWritesInterceptor.COOKIE));
+			return ReadRouting.isPinned();
+		} finally {
+			interceptor.afterCompletion(request, response, null, null);
+		}
+	}
+
+}
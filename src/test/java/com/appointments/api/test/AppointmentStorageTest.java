@@ -0,0 +1,62 @@
+package com.appointments.api.test;
+
+import java.util.Date;
+
+import org.bson.types.ObjectId;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.appointments.api.storage.AppointmentStorage;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+
+public class AppointmentStorageTest {
+
+	/**
+	 * Tests a legacy document is renamed, its patient id converted and its
+	 * type hint dropped
+	 */
+	@Test
+	public void compactTest() {
+
+		final ObjectId id = new ObjectId();
+		final ObjectId patientId = new ObjectId();
+		final Date start = new Date();
+		final Date end = new Date(start.getTime() + 3600000);
+
+		final DBObject legacy = new BasicDBObject("_id", id).append("_class", "Appointment")
+				.append("patientId", patientId.toHexString()).append("start", start).append("end", end)
+				.append("rate", 7);
+
+		final DBObject compact = AppointmentStorage.compactCopy(legacy);
+
+		Assert.assertEquals(new BasicDBObject("_id", id).append("p", patientId).append("s", start).append("e", end)
+				.append("r", 7), compact);
+		Assert.assertTrue(legacy.containsField("patientId"));
+
+		Assert.assertEquals(compact, AppointmentStorage.compact(new BasicDBObject(compact.toMap())));
+	}
+
+	/**
+	 * Tests a patient id which isn't an ObjectId is kept as a string
+	 */
+	@Test
+	public void compactCustomPatientIdTest() {
+
+		final DBObject compact = AppointmentStorage.compact(new BasicDBObject("patientId", "patient-1"));
+
+		Assert.assertEquals("patient-1", compact.get("p"));
+	}
+
+	/**
+	 * Tests the field names of both layouts
+	 */
+	@Test
+	public void fieldTest() {
+
+		Assert.assertEquals("s", AppointmentStorage.field("start", true));
+		Assert.assertEquals("start", AppointmentStorage.field("start", false));
+		Assert.assertEquals("_id", AppointmentStorage.field("_id", true));
+	}
+
+}
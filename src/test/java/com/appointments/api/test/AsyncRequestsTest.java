@@ -0,0 +1,156 @@
+package com.appointments.api.test;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+
+import com.appointments.api.async.AsyncRequests;
+import com.appointments.api.async.BlockingConfiguration;
+import com.appointments.api.exceptions.PatientNotFoundException;
+
+/**
+ * The endpoints are declared once, their futures answered inline in the
+ * blocking mode and through an async dispatch when still running.
+ */
+public class AsyncRequestsTest {
+
+	private static final ExecutorService POOL = Executors.newSingleThreadExecutor();
+
+	private AnnotationConfigWebApplicationContext context;
+
+	private MockMvc mockMvc;
+
+	@Before
+	public void setUp() {
+
+		context = new AnnotationConfigWebApplicationContext();
+		context.setServletContext(new MockServletContext());
+		context.register(WebConfiguration.class, BlockingConfiguration.class);
+		context.refresh();
+
+		mockMvc = MockMvcBuilders.webAppContextSetup(context).build();
+	}
+
+	@After
+	public void tearDown() {
+		context.close();
+	}
+
+	/**
+	 * Tests a completed future is answered without an async dispatch
+	 */
+	@Test
+	public void completedTest() throws Exception {
+		mockMvc.perform(get("/ping")).andExpect(request().asyncNotStarted()).andExpect(status().isCreated())
+				.andExpect(jsonPath("$.status").value("up"));
+	}
+
+	/**
+	 * Tests a failed future is answered as its exception
+	 */
+	@Test
+	public void failedTest() throws Exception {
+		mockMvc.perform(get("/missing")).andExpect(request().asyncNotStarted()).andExpect(status().isNotFound());
+	}
+
+	/**
+	 * Tests a future completed empty is an empty body
+	 */
+	@Test
+	public void emptyTest() throws Exception {
+		mockMvc.perform(get("/empty")).andExpect(request().asyncNotStarted()).andExpect(status().isCreated())
+				.andExpect(content().string(""));
+	}
+
+	/**
+	 * Tests a future still running goes through the async dispatch
+	 */
+	@Test
+	public void runningTest() throws Exception {
+
+		final MvcResult result = mockMvc.perform(get("/pooled")).andExpect(request().asyncStarted()).andReturn();
+
+		PingController.RELEASE.countDown();
+
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isCreated())
+				.andExpect(jsonPath("$.status").value("up"));
+	}
+
+	@Configuration
+	@EnableWebMvc
+	static class WebConfiguration {
+
+		@Bean
+		public PingController pingController() {
+			return new PingController();
+		}
+	}
+
+	@RestController
+	static class PingController {
+
+		static final CountDownLatch RELEASE = new CountDownLatch(1);
+
+		@Autowired
+		private AsyncRequests asyncRequests;
+
+		private final AsyncRequests pooled = new AsyncRequests(POOL);
+
+		@RequestMapping("/ping")
+		@ResponseStatus(HttpStatus.CREATED)
+		public CompletableFuture<Map<String, String>> ping() {
+			return asyncRequests.supply(() -> Collections.singletonMap("status", "up"));
+		}
+
+		@RequestMapping("/missing")
+		@ResponseStatus(HttpStatus.CREATED)
+		public CompletableFuture<Map<String, String>> missing() {
+			return asyncRequests.supply(() -> {
+				throw new PatientNotFoundException();
+			});
+		}
+
+		@RequestMapping("/empty")
+		@ResponseStatus(HttpStatus.CREATED)
+		public CompletableFuture<Map<String, String>> empty() {
+			return asyncRequests.supply(() -> null);
+		}
+
+		@RequestMapping("/pooled")
+		@ResponseStatus(HttpStatus.CREATED)
+		public CompletableFuture<Map<String, String>> pooled() {
+			return pooled.supply(() -> {
+				RELEASE.await();
+				return Collections.singletonMap("status", "up");
+			});
+		}
+	}
+
+}
@@ -0,0 +1,105 @@
+package com.appointments.api.test;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.appointments.api.ApiExceptionHandler;
+import com.appointments.api.JacksonBinaryHttpMessageConverter;
+import com.appointments.api.batch.BatchBodyInterceptor;
+import com.appointments.api.batch.BatchRequest;
+import com.appointments.api.errors.ErrorBodyHttpMessageConverter;
+import com.appointments.api.errors.ErrorResponses;
+import com.appointments.api.exceptions.BatchLengthRequiredException;
+import com.appointments.api.exceptions.BatchSizeExceededException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class BatchBodyInterceptorTest {
+
+	private MockMvc mockMvc;
+
+	@Before
+	public void setUp() {
+
+		final ErrorResponses errorResponses = new ErrorResponses();
+		ReflectionTestUtils.setField(errorResponses, "objectMapper", new ObjectMapper());
+		ReflectionTestUtils.setField(errorResponses, "binaryConverters",
+				Arrays.<JacksonBinaryHttpMessageConverter> asList());
+
+		final ApiExceptionHandler handler = new ApiExceptionHandler();
+		ReflectionTestUtils.setField(handler, "errorResponses", errorResponses);
+
+		mockMvc = MockMvcBuilders.standaloneSetup(new BatchController()).setControllerAdvice(handler)
+				.addInterceptors(new BatchBodyInterceptor(16))
+				.setMessageConverters(new HttpMessageConverter<?>[] {
+						new ErrorBodyHttpMessageConverter(Arrays.asList(MediaType.APPLICATION_JSON)),
+						new MappingJackson2HttpMessageConverter() })
+				.build();
+	}
+
+	/**
+	 * Tests a body within the limit reaches the handler
+	 */
+	@Test
+	public void withinLimitTest() throws Exception {
+		mockMvc.perform(post("/batch").contentType(MediaType.APPLICATION_JSON).content("[1,2,3]"))
+				.andExpect(status().isOk()).andExpect(jsonPath("$").value(3));
+	}
+
+	/**
+	 * Tests an oversized body is refused before being read
+	 */
+	@Test
+	public void overLimitTest() throws Exception {
+
+		mockMvc.perform(post("/batch").contentType(MediaType.APPLICATION_JSON).content("[1,2,3,4,5,6,7,8,9]"))
+				.andExpect(status().isPayloadTooLarge())
+				.andExpect(jsonPath("$.errorMessage").value(new BatchSizeExceededException().getReason()));
+
+		// not a batch handler
+		mockMvc.perform(post("/single").contentType(MediaType.APPLICATION_JSON).content("[1,2,3,4,5,6,7,8,9]"))
+				.andExpect(status().isOk());
+	}
+
+	/**
+	 * Tests a body without Content-Length is refused
+	 */
+	@Test
+	public void lengthRequiredTest() throws Exception {
+		mockMvc.perform(post("/batch").contentType(MediaType.APPLICATION_JSON))
+				.andExpect(status().isLengthRequired())
+				.andExpect(jsonPath("$.errorMessage").value(new BatchLengthRequiredException().getReason()));
+	}
+
+	@RestController
+	private static class BatchController {
+
+		@BatchRequest
+		@RequestMapping(method = RequestMethod.POST, path = "/batch")
+		public int batch(@RequestBody final List<Integer> elements) {
+			return elements.size();
+		}
+
+		@RequestMapping(method = RequestMethod.POST, path = "/single")
+		public int single(@RequestBody final List<Integer> elements) {
+			return elements.size();
+		}
+	}
+
+}
@@ -0,0 +1,54 @@
+package com.appointments.api.test;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.appointments.api.cache.BoundedCache;
+
+public class BoundedCacheTest {
+
+	/**
+	 * Tests the least recently used entry is evicted once the cache is full
+	 */
+	@Test
+	public void evictsLeastRecentlyUsedTest() {
+
+		final BoundedCache<String, Boolean> cache = new BoundedCache<>("test", 2, 1, TimeUnit.MINUTES);
+
+		cache.put("a", true);
+		cache.put("b", true);
+		cache.get("a");
+		cache.put("c", true);
+
+		Assert.assertNotNull(cache.get("a"));
+		Assert.assertNull(cache.get("b"));
+		Assert.assertNotNull(cache.get("c"));
+		Assert.assertEquals(1, cache.getEvictions());
+		Assert.assertEquals(3, cache.getHits());
+		Assert.assertEquals(1, cache.getMisses());
+	}
+
+	/**
+	 * Tests expired entries are not returned
+	 * 
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void expiresEntriesTest() throws InterruptedException {
+
+		final BoundedCache<String, Boolean> cache = new BoundedCache<>("test", 10, 1, TimeUnit.MINUTES);
+
+		cache.put("short", false, 1, TimeUnit.MILLISECONDS);
+		cache.put("long", true);
+
+		Thread.sleep(5);
+
+		Assert.assertNull(cache.get("short"));
+		Assert.assertEquals(Boolean.TRUE, cache.get("long"));
+		Assert.assertEquals(1, cache.getEvictions());
+		Assert.assertEquals(0.5, cache.getHitRatio(), 0.001);
+	}
+
+}
@@ -0,0 +1,337 @@
+package com.appointments.api.test;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.bson.types.ObjectId;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import com.appointments.api.entities.Appointment;
+import com.appointments.api.storage.AppointmentStorage;
+import com.appointments.api.storage.CompactStorageMigration;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+
+/**
+ * The user stories of IntegrationTests touching the appointments, served
+ * from the compact collection, and the migration filling it.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "appointments.storage.compact=true")
+@AutoConfigureMockMvc
+public class CompactStorageIntegrationTests extends AbstractTest {
+
+	private static final String MIGRATION_ID = "appointmentCompactStorage";
+
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+	@Autowired
+	private CompactStorageMigration compactStorageMigration;
+
+	/**
+	 * Tests a created appointment is stored in the compact layout
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void createAppointmentTest() throws Exception {
+
+		String idAppointment = null;
+		String idPatient = null;
+
+		try {
+
+			final Appointment appointment = createAppointment("Joseph", LocalDateTime.now().plusHours(2),
+					LocalDateTime.now().plusHours(3));
+
+			final MvcResult result = mockMvc
+					.perform(post(APPOINTMENT_URL).contentType(MediaType.APPLICATION_JSON)
+							.content(mapper.writeValueAsString(appointment)).accept(MediaType.APPLICATION_JSON))
+					.andExpect(status().isCreated()).andDo(print()).andReturn();
+
+			final Appointment appointmentResponse = mapper.readValue(result.getResponse().getContentAsString(),
+					Appointment.class);
+
+			idAppointment = appointmentResponse.getId();
+			idPatient = appointmentResponse.getPatientId();
+
+			Assert.assertEquals(appointmentResponse.getPatientId(), appointment.getPatientId());
+			Assert.assertEquals(appointmentResponse.getStart(), appointment.getStart());
+
+			final DBObject stored = mongoTemplate.getCollection(AppointmentStorage.COMPACT_COLLECTION)
+					.findOne(new BasicDBObject("_id", new ObjectId(idAppointment)));
+
+			Assert.assertEquals(new ObjectId(idPatient), stored.get("p"));
+			Assert.assertFalse(stored.containsField("_class"));
+			Assert.assertEquals(0, mongoTemplate.getCollection(AppointmentStorage.LEGACY_COLLECTION).count());
+		} finally {
+			if (idAppointment != null)
+				appointmentRepository.delete(idAppointment);
+			if (idPatient != null)
+				patientRepository.delete(idPatient);
+		}
+	}
+
+	/**
+	 * Tests a batch creation in the compact layout
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void createAppointmentsBatchTest() throws Exception {
+
+		final Appointment valid = createAppointment("Joseph", LocalDateTime.now().plusHours(2),
+				LocalDateTime.now().plusHours(3));
+		final Appointment invalidPatient = createAppointmentInvalidPatient();
+
+		try {
+			final MvcResult result = mockMvc
+					.perform(post(APPOINTMENT_URL + "batch").contentType(MediaType.APPLICATION_JSON)
+							.content(mapper.writeValueAsString(Arrays.asList(valid, invalidPatient)))
+							.accept(MediaType.APPLICATION_JSON))
+					.andExpect(status().isOk()).andDo(print()).andReturn();
+
+			final JsonNode results = mapper.readTree(result.getResponse().getContentAsString());
+
+			Assert.assertEquals(201, results.get(0).get("status").asInt());
+			Assert.assertEquals(404, results.get(1).get("status").asInt());
+
+			valid.setId(results.get(0).get("item").get("id").asText());
+			Assert.assertEquals(appointmentRepository.findOne(valid.getId()).getPatientId(), valid.getPatientId());
+		} finally {
+			if (valid.getId() != null)
+				appointmentRepository.delete(valid.getId());
+			patientRepository.delete(valid.getPatientId());
+		}
+	}
+
+	/**
+	 * Tests the pages of the overview in the compact layout
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void getAppointmentsTest() throws Exception {
+
+		final List<Appointment> appointments = createAppointments();
+
+		try {
+			final List<Appointment> appointmentsResponse = new ArrayList<>();
+			String pageToken = null;
+
+			do {
+				final MockHttpServletRequestBuilder request = get(APPOINTMENT_URL).param("limit", "5")
+						.contentType(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON);
+				if (pageToken != null) {
+					request.param("pageToken", pageToken);
+				}
+
+				final MvcResult result = mockMvc.perform(request).andExpect(status().isOk()).andDo(print())
+						.andReturn();
+
+				final JsonNode page = mapper.readTree(result.getResponse().getContentAsString());
+				appointmentsResponse.addAll(mapper.convertValue(page.get("appointments"),
+						new TypeReference<List<Appointment>>() {
+						}));
+
+				pageToken = page.get("next").isNull() ? null : page.get("next").asText();
+			} while (pageToken != null);
+
+			Assert.assertEquals(appointments.size(), appointmentsResponse.size());
+
+			for (int i = 1; i < appointmentsResponse.size(); i++) {
+				Assert.assertFalse(
+						appointmentsResponse.get(i).getStart().isAfter(appointmentsResponse.get(i - 1).getStart()));
+			}
+		} finally {
+
+			for (Appointment appointment : appointments) {
+				appointmentRepository.delete(appointment.getId());
+				patientRepository.delete(appointment.getPatientId());
+			}
+
+		}
+	}
+
+	/**
+	 * Tests the next appointment of a patient in the compact layout
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void getNextAppointmentTest() throws Exception {
+
+		final String patientId = createPatient("John", "Stott");
+		final List<Appointment> appointments = createAppointmentsForPatient(patientId);
+
+		try {
+			final MvcResult result = mockMvc.perform(get(PATIENTS_URL + patientId + "/next-appointment")
+					.contentType(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON))
+					.andExpect(status().isOk()).andDo(print()).andReturn();
+
+			final Appointment appointmentResponse = mapper.readValue(result.getResponse().getContentAsString(),
+					Appointment.class);
+
+			final List<Appointment> futureAppointments = appointments.stream()
+					.filter(x -> x.getStart().isAfter(LocalDateTime.now())).collect(Collectors.toList());
+
+			futureAppointments.sort(Comparator.comparing(x -> x.getStart()));
+
+			Assert.assertEquals(appointmentResponse, futureAppointments.get(0));
+		} finally {
+
+			for (Appointment appointment : appointments) {
+				appointmentRepository.delete(appointment.getId());
+			}
+			patientRepository.delete(patientId);
+
+		}
+	}
+
+	/**
+	 * Tests rating the last appointment, then another one by id, in the
+	 * compact layout
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void rateAppointmentsTest() throws Exception {
+
+		final String patientId = createPatient("John", "Stott");
+		final List<Appointment> appointments = createAppointmentsForPatient(patientId);
+
+		try {
+			final List<Appointment> pastAppointments = appointments.stream()
+					.filter(x -> x.getStart().isBefore(LocalDateTime.now())).collect(Collectors.toList());
+
+			pastAppointments.sort(Comparator.comparing(x -> x.getStart()));
+
+			final Appointment last = pastAppointments.get(pastAppointments.size() - 1);
+			final Appointment first = pastAppointments.get(0);
+
+			MvcResult result = mockMvc.perform(put(PATIENTS_URL + patientId + "/rate")
+					.contentType(MediaType.APPLICATION_JSON).content("{\"rate\":\"8\"}")
+					.accept(MediaType.APPLICATION_JSON)).andExpect(status().isOk()).andDo(print()).andReturn();
+
+			Appointment appointmentResponse = mapper.readValue(result.getResponse().getContentAsString(),
+					Appointment.class);
+
+			Assert.assertEquals(last.getId(), appointmentResponse.getId());
+			Assert.assertEquals(new Integer(8), appointmentResponse.getRate());
+
+			result = mockMvc.perform(put(PATIENTS_URL + patientId + "/rate").contentType(MediaType.APPLICATION_JSON)
+					.content("{\"appointmentId\":\"" + first.getId() + "\",\"rate\":\"5\"}")
+					.accept(MediaType.APPLICATION_JSON)).andExpect(status().isOk()).andDo(print()).andReturn();
+
+			appointmentResponse = mapper.readValue(result.getResponse().getContentAsString(), Appointment.class);
+
+			Assert.assertEquals(first.getId(), appointmentResponse.getId());
+			Assert.assertEquals(new Integer(8), appointmentRepository.findOne(last.getId()).getRate());
+			Assert.assertEquals(new Integer(5), appointmentRepository.findOne(first.getId()).getRate());
+			Assert.assertEquals(5, mongoTemplate.getCollection(AppointmentStorage.COMPACT_COLLECTION)
+					.findOne(new BasicDBObject("_id", new ObjectId(first.getId()))).get("r"));
+		} finally {
+
+			for (Appointment appointment : appointments) {
+				appointmentRepository.delete(appointment.getId());
+			}
+			patientRepository.delete(patientId);
+
+		}
+	}
+
+	/**
+	 * Tests a migration pass copies the legacy appointments, then a pass
+	 * interrupted after its first batches resumes from its checkpoint
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void migrationResumeTest() throws Exception {
+
+		final DBCollection legacy = mongoTemplate.getCollection(AppointmentStorage.LEGACY_COLLECTION);
+		final DBCollection compact = mongoTemplate.getCollection(AppointmentStorage.COMPACT_COLLECTION);
+		final DBCollection migrations = mongoTemplate.getCollection("migrations");
+
+		final ObjectId patientId = new ObjectId();
+		final List<ObjectId> ids = new ArrayList<>();
+
+		try {
+			for (int i = 0; i < 3; i++) {
+				ids.add(insertLegacy(legacy, patientId, i));
+			}
+
+			CompactStorageMigration.Report report = compactStorageMigration.migrate();
+
+			Assert.assertEquals(3, report.getRead());
+			Assert.assertEquals(3, report.getWritten());
+			Assert.assertEquals(3, compact.count(new BasicDBObject("p", patientId)));
+			Assert.assertEquals(patientId.toHexString(),
+					appointmentRepository.findOne(ids.get(0).toHexString()).getPatientId());
+
+			DBObject checkpoint = migrations.findOne(new BasicDBObject("_id", MIGRATION_ID));
+			Assert.assertNull(checkpoint.get("lastId"));
+			Assert.assertEquals(1, ((Number) checkpoint.get("passes")).intValue());
+
+			// a second pass stopped after the second appointment, meanwhile the
+			// last one was rated and another one created
+			legacy.update(new BasicDBObject("_id", ids.get(2)), new BasicDBObject("$set", new BasicDBObject("rate", 9)));
+			ids.add(insertLegacy(legacy, patientId, 3));
+			migrations.update(new BasicDBObject("_id", MIGRATION_ID),
+					new BasicDBObject("$set", new BasicDBObject("lastId", ids.get(1))));
+
+			report = compactStorageMigration.migrate();
+
+			Assert.assertEquals(2, report.getRead());
+			Assert.assertEquals(2, report.getWritten());
+			Assert.assertEquals(4, compact.count(new BasicDBObject("p", patientId)));
+			Assert.assertEquals(new Integer(9), appointmentRepository.findOne(ids.get(2).toHexString()).getRate());
+
+			checkpoint = migrations.findOne(new BasicDBObject("_id", MIGRATION_ID));
+			Assert.assertNull(checkpoint.get("lastId"));
+			Assert.assertEquals(2, ((Number) checkpoint.get("passes")).intValue());
+		} finally {
+			legacy.remove(new BasicDBObject("patientId", patientId.toHexString()));
+			compact.remove(new BasicDBObject("p", patientId));
+			migrations.remove(new BasicDBObject("_id", MIGRATION_ID));
+		}
+	}
+
+	private static ObjectId insertLegacy(final DBCollection legacy, final ObjectId patientId, final int day) {
+
+		final ObjectId id = new ObjectId();
+		final Date start = new Date(System.currentTimeMillis() + (day + 1) * 86400000L);
+
+		legacy.insert(new BasicDBObject("_id", id).append("_class", Appointment.class.getName())
+				.append("patientId", patientId.toHexString()).append("start", start)
+				.append("end", new Date(start.getTime() + 3600000)));
+
+		return id;
+	}
+
+}
@@ -0,0 +1,90 @@
+package com.appointments.api.test;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.appointments.api.JacksonBinaryHttpMessageConverter;
+import com.appointments.api.JacksonConfiguration.JsonFirstHttpMessageConverters;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+public class ContentNegotiationTest {
+
+	private MockMvc mockMvc;
+
+	@Before
+	public void setUp() {
+
+		// the converter beans as Spring Boot collects them, binary ones first
+		final List<HttpMessageConverter<?>> beans = Arrays.asList(
+				new JacksonBinaryHttpMessageConverter(new ObjectMapper(new SmileFactory()),
+						JacksonBinaryHttpMessageConverter.APPLICATION_SMILE),
+				new JacksonBinaryHttpMessageConverter(new ObjectMapper(new CBORFactory()),
+						JacksonBinaryHttpMessageConverter.APPLICATION_CBOR),
+				new MappingJackson2HttpMessageConverter());
+
+		mockMvc = MockMvcBuilders.standaloneSetup(new PingController())
+				.setMessageConverters(new JsonFirstHttpMessageConverters(beans).getConverters()
+						.toArray(new HttpMessageConverter<?>[0]))
+				.build();
+	}
+
+	/**
+	 * Tests a request without Accept is answered in JSON
+	 */
+	@Test
+	public void noAcceptTest() throws Exception {
+		mockMvc.perform(get("/ping")).andExpect(status().isOk())
+				.andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+	}
+
+	/**
+	 * Tests a request accepting any type is answered in JSON
+	 */
+	@Test
+	public void acceptAllTest() throws Exception {
+		mockMvc.perform(get("/ping").accept(MediaType.ALL)).andExpect(status().isOk())
+				.andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+	}
+
+	/**
+	 * Tests the binary formats are still served when asked for
+	 */
+	@Test
+	public void binaryAcceptTest() throws Exception {
+
+		mockMvc.perform(get("/ping").accept(JacksonBinaryHttpMessageConverter.APPLICATION_SMILE))
+				.andExpect(status().isOk())
+				.andExpect(content().contentTypeCompatibleWith(JacksonBinaryHttpMessageConverter.APPLICATION_SMILE));
+		mockMvc.perform(get("/ping").accept(JacksonBinaryHttpMessageConverter.APPLICATION_CBOR))
+				.andExpect(status().isOk())
+				.andExpect(content().contentTypeCompatibleWith(JacksonBinaryHttpMessageConverter.APPLICATION_CBOR));
+	}
+
+	@RestController
+	private static class PingController {
+
+		@RequestMapping("/ping")
+		public Map<String, String> ping() {
+			return Collections.singletonMap("status", "up");
+		}
+	}
+
+}
@@ -0,0 +1,178 @@
+package com.appointments.api.test;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.appointments.api.ApiExceptionHandler;
+import com.appointments.api.JacksonBinaryHttpMessageConverter;
+import com.appointments.api.JacksonConfiguration.JsonFirstHttpMessageConverters;
+import com.appointments.api.errors.ErrorBody;
+import com.appointments.api.errors.ErrorBodyHttpMessageConverter;
+import com.appointments.api.errors.ErrorResponses;
+import com.appointments.api.exceptions.AppointmentConflictException;
+import com.appointments.api.exceptions.InvalidAppointmentDatesException;
+import com.appointments.api.exceptions.PatientNotFoundException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+public class ErrorResponsesTest {
+
+	private final ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+
+	private ErrorResponses errorResponses;
+
+	@Before
+	public void setUp() {
+
+		errorResponses = new ErrorResponses();
+		ReflectionTestUtils.setField(errorResponses, "objectMapper", new ObjectMapper());
+		ReflectionTestUtils.setField(errorResponses, "binaryConverters", Arrays.asList(
+				new JacksonBinaryHttpMessageConverter(smileMapper, JacksonBinaryHttpMessageConverter.APPLICATION_SMILE)));
+	}
+
+	/**
+	 * Tests the API exceptions don't capture their stack trace
+	 */
+	@Test
+	public void stacklessExceptionTest() {
+
+		final PatientNotFoundException exception = new PatientNotFoundException();
+
+		Assert.assertEquals(0, exception.getStackTrace().length);
+		Assert.assertEquals(HttpStatus.NOT_FOUND, exception.getStatus());
+		Assert.assertEquals("The Patient informed has not been found", exception.getMessage());
+	}
+
+	/**
+	 * Tests the body of an exception class is serialized once, in every
+	 * format
+	 */
+	@Test
+	public void exceptionBodyTest() throws Exception {
+
+		final ResponseEntity<ErrorBody> first = errorResponses.of(new InvalidAppointmentDatesException());
+		final ResponseEntity<ErrorBody> second = errorResponses.of(new InvalidAppointmentDatesException());
+
+		Assert.assertEquals(HttpStatus.BAD_REQUEST, first.getStatusCode());
+		Assert.assertSame(first.getBody(), second.getBody());
+
+		final String json = new String(first.getBody().getBytes(MediaType.APPLICATION_JSON), StandardCharsets.UTF_8);
+		Assert.assertTrue(json.startsWith("{\"errorMessage\":\"Appoitnment dates are invalid"));
+
+		final byte[] smile = first.getBody().getBytes(JacksonBinaryHttpMessageConverter.APPLICATION_SMILE);
+		Assert.assertEquals(new ObjectMapper().readTree(json), smileMapper.readTree(smile));
+	}
+
+	/**
+	 * Tests the bodies of the same violated constraints are reused
+	 */
+	@Test
+	public void validationBodyTest() {
+
+		final ResponseEntity<ErrorBody> first = errorResponses
+				.validationFailed(Arrays.asList("Patient's surname is mandatory"));
+		final ResponseEntity<ErrorBody> second = errorResponses
+				.validationFailed(Arrays.asList("Patient's surname is mandatory"));
+
+		Assert.assertEquals(HttpStatus.BAD_REQUEST, first.getStatusCode());
+		Assert.assertSame(first.getBody(), second.getBody());
+		Assert.assertNotSame(first.getBody(),
+				errorResponses.validationFailed(Arrays.asList("Patient's name is mandatory")).getBody());
+	}
+
+	/**
+	 * Tests the converter writes the precomputed bytes of the negotiated type
+	 */
+	@Test
+	public void converterTest() throws Exception {
+
+		final ErrorBody body = errorResponses.of(new PatientNotFoundException()).getBody();
+		final ErrorBodyHttpMessageConverter converter = new ErrorBodyHttpMessageConverter(
+				Arrays.asList(MediaType.APPLICATION_JSON, JacksonBinaryHttpMessageConverter.APPLICATION_SMILE));
+
+		final MockHttpOutputMessage message = new MockHttpOutputMessage();
+		converter.write(body, JacksonBinaryHttpMessageConverter.APPLICATION_SMILE, message);
+
+		Assert.assertArrayEquals(body.getBytes(JacksonBinaryHttpMessageConverter.APPLICATION_SMILE),
+				message.getBodyAsBytes());
+		Assert.assertEquals(message.getBodyAsBytes().length, message.getHeaders().getContentLength());
+		Assert.assertFalse(converter.canRead(ErrorBody.class, MediaType.APPLICATION_JSON));
+	}
+
+	/**
+	 * Tests the exceptions thrown by a controller are answered by
+	 * ApiExceptionHandler with their status and the JSON body, unless another
+	 * format is asked for
+	 */
+	@Test
+	public void exceptionHandlerTest() throws Exception {
+
+		final JacksonBinaryHttpMessageConverter smileConverter = new JacksonBinaryHttpMessageConverter(smileMapper,
+				JacksonBinaryHttpMessageConverter.APPLICATION_SMILE);
+		final ApiExceptionHandler handler = new ApiExceptionHandler();
+		ReflectionTestUtils.setField(handler, "errorResponses", errorResponses);
+
+		final MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new FailingController()).setControllerAdvice(handler)
+				.setMessageConverters(new JsonFirstHttpMessageConverters(Arrays.asList(
+						new ErrorBodyHttpMessageConverter(Arrays.asList(MediaType.APPLICATION_JSON,
+								JacksonBinaryHttpMessageConverter.APPLICATION_SMILE)),
+						smileConverter, new MappingJackson2HttpMessageConverter())).getConverters()
+								.toArray(new HttpMessageConverter<?>[0]))
+				.build();
+
+		mockMvc.perform(get("/patient")).andExpect(status().isNotFound())
+				.andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+				.andExpect(jsonPath("$.errorMessage").value("The Patient informed has not been found"));
+
+		mockMvc.perform(get("/dates").accept(MediaType.APPLICATION_JSON)).andExpect(status().isBadRequest())
+				.andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+				.andExpect(jsonPath("$.errorMessage").value(new InvalidAppointmentDatesException().getReason()));
+
+		mockMvc.perform(get("/conflict")).andExpect(status().isConflict())
+				.andExpect(jsonPath("$.errorMessage").value(new AppointmentConflictException().getReason()));
+
+		mockMvc.perform(get("/patient").accept(JacksonBinaryHttpMessageConverter.APPLICATION_SMILE))
+				.andExpect(status().isNotFound())
+				.andExpect(content().contentTypeCompatibleWith(JacksonBinaryHttpMessageConverter.APPLICATION_SMILE));
+	}
+
+	@RestController
+	private static class FailingController {
+
+		@RequestMapping("/patient")
+		public String patient() throws PatientNotFoundException {
+			throw new PatientNotFoundException();
+		}
+
+		@RequestMapping("/dates")
+		public String dates() throws InvalidAppointmentDatesException {
+			throw new InvalidAppointmentDatesException();
+		}
+
+		@RequestMapping("/conflict")
+		public String conflict() throws AppointmentConflictException {
+			throw new AppointmentConflictException();
+		}
+	}
+
+}
@@ -0,0 +1,129 @@
+package com.appointments.api.test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.appointments.api.dtos.FreeSlot;
+import com.appointments.api.entities.Appointment;
+import com.appointments.api.slots.DayOccupancy;
+import com.appointments.api.slots.FreeSlots;
+
+public class FreeSlotsTest {
+
+	private static final LocalDateTime MONDAY = LocalDateTime.of(2017, 2, 13, 0, 0);
+
+	/**
+	 * Tests the booked bits across word boundaries
+	 */
+	@Test
+	public void bookTest() {
+
+		final DayOccupancy day = new DayOccupancy(5);
+		day.book(60, 130);
+
+		Assert.assertEquals(288, day.getSlots());
+		Assert.assertEquals(5, day.getWords());
+		Assert.assertFalse(day.isBooked(59));
+		Assert.assertTrue(day.isBooked(60));
+		Assert.assertTrue(day.isBooked(64));
+		Assert.assertTrue(day.isBooked(129));
+		Assert.assertFalse(day.isBooked(130));
+		Assert.assertEquals(-1L, day.word(1));
+	}
+
+	/**
+	 * Tests the free slots between appointments, partially booked slots
+	 * included
+	 */
+	@Test
+	public void findBetweenAppointmentsTest() {
+
+		final FreeSlots freeSlots = freeSlots();
+		final List<Appointment> appointments = Arrays.asList(
+				appointment(MONDAY.withHour(9), MONDAY.withHour(10).withMinute(2)),
+				appointment(MONDAY.withHour(11), MONDAY.withHour(12)));
+
+		final List<FreeSlot> slots = freeSlots.find(MONDAY.withHour(8), MONDAY.withHour(14), 60, 10,
+				(from, to) -> appointments);
+
+		Assert.assertEquals(3, slots.size());
+		Assert.assertEquals(MONDAY.withHour(8), slots.get(0).getStart());
+		Assert.assertEquals(MONDAY.withHour(9), slots.get(0).getEnd());
+		// 10:02 books the slot up to 10:05, leaving 55 minutes
+		Assert.assertEquals(MONDAY.withHour(12), slots.get(1).getStart());
+		Assert.assertEquals(MONDAY.withHour(13), slots.get(2).getStart());
+	}
+
+	/**
+	 * Tests a free period running across midnight and the limit
+	 */
+	@Test
+	public void findAcrossDaysTest() {
+
+		final FreeSlots freeSlots = freeSlots();
+		final List<Appointment> appointments = Arrays.asList(
+				appointment(MONDAY.withHour(1), MONDAY.withHour(23).withMinute(30)),
+				appointment(MONDAY.plusDays(1).withHour(1), MONDAY.plusDays(1).withHour(12)));
+
+		final List<FreeSlot> slots = freeSlots.find(MONDAY, MONDAY.plusDays(3), 90, 2, (from, to) -> appointments);
+
+		// the hour before the first appointment is too short
+		Assert.assertEquals(2, slots.size());
+		Assert.assertEquals(MONDAY.withHour(23).withMinute(30), slots.get(0).getStart());
+		Assert.assertEquals(MONDAY.plusDays(1).withHour(1), slots.get(0).getEnd());
+		Assert.assertEquals(MONDAY.plusDays(1).withHour(12), slots.get(1).getStart());
+	}
+
+	/**
+	 * Tests the resident days are updated by the creations and not loaded
+	 * again
+	 */
+	@Test
+	public void onAppointmentSavedTest() {
+
+		final FreeSlots freeSlots = freeSlots();
+		final List<LocalDateTime> loads = new ArrayList<>();
+
+		freeSlots.find(MONDAY, MONDAY.plusDays(1), 60, 1, (from, to) -> {
+			loads.add(from);
+			return new ArrayList<>();
+		});
+
+		freeSlots.onAppointmentSaved(appointment(MONDAY, MONDAY.withHour(20)));
+
+		final List<FreeSlot> slots = freeSlots.find(MONDAY, MONDAY.plusDays(1), 60, 10, (from, to) -> {
+			loads.add(from);
+			return new ArrayList<>();
+		});
+
+		Assert.assertEquals(1, loads.size());
+		Assert.assertEquals(4, slots.size());
+		Assert.assertEquals(MONDAY.withHour(20), slots.get(0).getStart());
+	}
+
+	private static FreeSlots freeSlots() {
+
+		final FreeSlots freeSlots = new FreeSlots();
+		ReflectionTestUtils.setField(freeSlots, "granularityMinutes", 5);
+		ReflectionTestUtils.setField(freeSlots, "maxDays", 10);
+		ReflectionTestUtils.setField(freeSlots, "ttlSeconds", 60L);
+		ReflectionTestUtils.setField(freeSlots, "maxDurationHours", 24L);
+		freeSlots.init();
+		return freeSlots;
+	}
+
+	private static Appointment appointment(final LocalDateTime start, final LocalDateTime end) {
+
+		final Appointment appointment = new Appointment();
+		appointment.setStart(start);
+		appointment.setEnd(end);
+		return appointment;
+	}
+
+}
@@ -4,30 +4,74 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.Date;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import org.bson.types.ObjectId;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 
+import com.appointments.api.JacksonBinaryHttpMessageConverter;
+import com.appointments.api.archive.AppointmentArchive;
+import com.appointments.api.archive.AppointmentArchiveJob;
 import com.appointments.api.entities.Appointment;
 import com.appointments.api.entities.Patient;
+import com.appointments.api.entities.RatingStats;
+import com.appointments.api.indexes.AppointmentIndexManager;
+import com.appointments.api.ratings.RatingStatistics;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.mongodb.BasicDBObject;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest
 @AutoConfigureMockMvc
 public class IntegrationTests extends AbstractTest {
 
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+	@Autowired
+	private AppointmentIndexManager appointmentIndexManager;
+
+	@Autowired
+	private RatingStatistics ratingStatistics;
+
+	@Autowired
+	private AppointmentArchive appointmentArchive;
+
+	@Autowired
+	private ApplicationContext applicationContext;
+
 	/**
 	 * as a doctor I want to create my patients
 	 * 
@@ -80,6 +124,49 @@ public class IntegrationTests extends AbstractTest {
 				.accept(MediaType.APPLICATION_JSON)).andExpect(status().isBadRequest()).andDo(print());
 	}
 
+	/**
+	 * Tests a batch of patients reports the validation errors of each patient,
+	 * a null one included, and an oversized body is refused
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void createPatientsBatchTest() throws Exception {
+
+		String id = null;
+
+		try {
+			final String json = mapper
+					.writeValueAsString(Arrays.asList(new Patient("Andrew", "Colins"), new Patient("Noah", null), null));
+
+			final MvcResult result = mockMvc
+					.perform(post(PATIENTS_URL + "batch").contentType(MediaType.APPLICATION_JSON).content(json)
+							.accept(MediaType.APPLICATION_JSON))
+					.andExpect(status().isOk()).andDo(print()).andReturn();
+
+			final JsonNode results = mapper.readTree(result.getResponse().getContentAsString());
+
+			Assert.assertEquals(201, results.get(0).get("status").asInt());
+			Assert.assertEquals(400, results.get(1).get("status").asInt());
+			Assert.assertEquals("Patient's surname is mandatory",
+					results.get(1).get("error").get("errors").get(0).asText());
+			Assert.assertEquals(400, results.get(2).get("status").asInt());
+
+			id = results.get(0).get("item").get("id").asText();
+			Assert.assertEquals(patientRepository.findOne(id).getName(), "Andrew");
+
+			final char[] padding = new char[1024 * 1024];
+			Arrays.fill(padding, ' ');
+
+			mockMvc.perform(post(PATIENTS_URL + "batch").contentType(MediaType.APPLICATION_JSON)
+					.content("[" + new String(padding) + "]").accept(MediaType.APPLICATION_JSON))
+					.andExpect(status().isPayloadTooLarge());
+		} finally {
+			if (id != null)
+				patientRepository.delete(id);
+		}
+	}
+
 	/**
 	 * as a doctor I want to create appointments for a patient
 	 * 
@@ -123,6 +210,32 @@ public class IntegrationTests extends AbstractTest {
 
 	}
 
+	/**
+	 * Tests an appointment overlapping another appointment of the patient is
+	 * refused
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void createOverlappingAppointmentTest() throws Exception {
+
+		final String patientId = createPatient("Joseph", "Default");
+		final Appointment existing = appointmentRepository.save(createAppointmentForPatientId(patientId,
+				LocalDateTime.now().plusHours(2), LocalDateTime.now().plusHours(3)));
+
+		try {
+			final Appointment overlapping = createAppointmentForPatientId(patientId,
+					existing.getStart().plusMinutes(30), existing.getEnd().plusMinutes(30));
+
+			mockMvc.perform(post(APPOINTMENT_URL).contentType(MediaType.APPLICATION_JSON)
+					.content(mapper.writeValueAsString(overlapping)).accept(MediaType.APPLICATION_JSON))
+					.andExpect(status().isConflict()).andDo(print());
+		} finally {
+			appointmentRepository.delete(existing.getId());
+			patientRepository.delete(patientId);
+		}
+	}
+
 	/**
 	 * Tests creating an appointment for an invalid user
 	 * 
@@ -139,6 +252,40 @@ public class IntegrationTests extends AbstractTest {
 				.accept(MediaType.APPLICATION_JSON)).andExpect(status().isNotFound()).andDo(print());
 	}
 
+	/**
+	 * Tests the API exceptions are answered by ApiExceptionHandler with their
+	 * status and a JSON {"errorMessage": reason} body, Accept or not
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void errorBodyTest() throws Exception {
+
+		mockMvc.perform(get(PATIENTS_URL + "58a075d93be8482fd8fec1f9/next-appointment"))
+				.andExpect(status().isNotFound())
+				.andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+				.andExpect(jsonPath("$.errorMessage").value("The Patient informed has not been found"))
+				.andExpect(jsonPath("$.exception").doesNotExist()).andDo(print());
+
+		String patientId = null;
+
+		try {
+
+			final Appointment appointment = createAppointment("Test", LocalDateTime.now().plusHours(2),
+					LocalDateTime.now().plusHours(1));
+			patientId = appointment.getPatientId();
+
+			mockMvc.perform(post(APPOINTMENT_URL).contentType(MediaType.APPLICATION_JSON)
+					.content(mapper.writeValueAsString(appointment)).accept(MediaType.APPLICATION_JSON))
+					.andExpect(status().isBadRequest())
+					.andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+					.andExpect(jsonPath("$.errorMessage").isString()).andDo(print());
+		} finally {
+			if (patientId != null)
+				patientRepository.delete(patientId);
+		}
+	}
+
 	/**
 	 * Tests start time not null protection
 	 * 
@@ -215,6 +362,45 @@ public class IntegrationTests extends AbstractTest {
 		}
 	}
 
+	/**
+	 * Tests a batch creation reports the result of each appointment
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void createAppointmentsBatchTest() throws Exception {
+
+		final Appointment valid = createAppointment("Joseph", LocalDateTime.now().plusHours(2),
+				LocalDateTime.now().plusHours(3));
+		final Appointment invalidPatient = createAppointmentInvalidPatient();
+		final Appointment invalidDates = createAppointment("Noah", LocalDateTime.now().plusHours(2),
+				LocalDateTime.now().plusHours(1));
+
+		try {
+			final String json = mapper.writeValueAsString(Arrays.asList(valid, invalidPatient, invalidDates, null));
+
+			final MvcResult result = mockMvc
+					.perform(post(APPOINTMENT_URL + "batch").contentType(MediaType.APPLICATION_JSON).content(json)
+							.accept(MediaType.APPLICATION_JSON))
+					.andExpect(status().isOk()).andDo(print()).andReturn();
+
+			final JsonNode results = mapper.readTree(result.getResponse().getContentAsString());
+
+			Assert.assertEquals(201, results.get(0).get("status").asInt());
+			Assert.assertEquals(404, results.get(1).get("status").asInt());
+			Assert.assertEquals(400, results.get(2).get("status").asInt());
+			Assert.assertEquals(400, results.get(3).get("status").asInt());
+
+			valid.setId(results.get(0).get("item").get("id").asText());
+			Assert.assertEquals(appointmentRepository.findOne(valid.getId()).getPatientId(), valid.getPatientId());
+		} finally {
+			if (valid.getId() != null)
+				appointmentRepository.delete(valid.getId());
+			patientRepository.delete(valid.getPatientId());
+			patientRepository.delete(invalidDates.getPatientId());
+		}
+	}
+
 	/**
 	 * as a doctor I want to see an overview of all appointments and their
 	 * ratings
@@ -226,15 +412,114 @@ public class IntegrationTests extends AbstractTest {
 
 		List<Appointment> appointments = createAppointments();
 		try {
-			MvcResult result = mockMvc.perform(
-					get(APPOINTMENT_URL).contentType(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON))
-					.andExpect(status().isOk()).andDo(print()).andReturn();
+			List<Appointment> appointmentsResponse = new ArrayList<>();
+			String pageToken = null;
 
-			@SuppressWarnings("unchecked")
-			List<Appointment> appointmentsResponse = mapper.readValue(result.getResponse().getContentAsString(),
-					List.class);
+			do {
+				MockHttpServletRequestBuilder request = get(APPOINTMENT_URL).param("limit", "5")
+						.contentType(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON);
+				if (pageToken != null) {
+					request.param("pageToken", pageToken);
+				}
+
+				MvcResult result = mockMvc.perform(request).andExpect(status().isOk()).andDo(print()).andReturn();
+
+				JsonNode page = mapper.readTree(result.getResponse().getContentAsString());
+				appointmentsResponse.addAll(mapper.convertValue(page.get("appointments"),
+						new TypeReference<List<Appointment>>() {
+						}));
+
+				pageToken = page.get("next").isNull() ? null : page.get("next").asText();
+			} while (pageToken != null);
 
 			Assert.assertEquals(appointmentsResponse.size(), appointmentRepository.count());
+
+			for (int i = 1; i < appointmentsResponse.size(); i++) {
+				Assert.assertFalse(
+						appointmentsResponse.get(i).getStart().isAfter(appointmentsResponse.get(i - 1).getStart()));
+			}
+		} finally {
+
+			for (Appointment appointment : appointments) {
+				appointmentRepository.delete(appointment.getId());
+				patientRepository.delete(appointment.getPatientId());
+			}
+
+		}
+	}
+
+	/**
+	 * Tests an invalid page token
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void getAppointmentsInvalidPageTokenTest() throws Exception {
+		mockMvc.perform(get(APPOINTMENT_URL).param("pageToken", "invalid-token")
+				.contentType(MediaType.APPLICATION_JSON).accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isBadRequest()).andDo(print());
+	}
+
+	/**
+	 * Tests only the requested fields are returned, the page token still
+	 * working
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void getAppointmentsFieldsTest() throws Exception {
+
+		List<Appointment> appointments = createAppointments();
+		try {
+			MvcResult result = mockMvc.perform(get(APPOINTMENT_URL).param("limit", "2").param("fields", "id,start,end")
+					.accept(MediaType.APPLICATION_JSON)).andExpect(status().isOk()).andDo(print()).andReturn();
+
+			JsonNode page = mapper.readTree(result.getResponse().getContentAsString());
+
+			for (JsonNode appointment : page.get("appointments")) {
+				Assert.assertTrue(appointment.has("id"));
+				Assert.assertTrue(appointment.has("start"));
+				Assert.assertTrue(appointment.has("end"));
+				Assert.assertFalse(appointment.has("patientId"));
+				Assert.assertFalse(appointment.has("rate"));
+			}
+
+			mockMvc.perform(get(APPOINTMENT_URL).param("limit", "2").param("fields", "id,start,end")
+					.param("pageToken", page.get("next").asText()).accept(MediaType.APPLICATION_JSON))
+					.andExpect(status().isOk());
+
+			mockMvc.perform(get(APPOINTMENT_URL + "next-week").param("fields", "start")
+					.accept(MediaType.APPLICATION_JSON)).andExpect(status().isOk());
+
+			mockMvc.perform(get(APPOINTMENT_URL).param("fields", "id,password").accept(MediaType.APPLICATION_JSON))
+					.andExpect(status().isBadRequest());
+		} finally {
+			for (Appointment appointment : appointments) {
+				appointmentRepository.delete(appointment.getId());
+			}
+		}
+	}
+
+	/**
+	 * Tests the NDJSON export returns one line per appointment
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void exportAppointmentsTest() throws Exception {
+
+		List<Appointment> appointments = createAppointments();
+		try {
+			MvcResult result = mockMvc.perform(get(APPOINTMENT_URL + "export")).andExpect(status().isOk())
+					.andReturn();
+
+			String[] lines = result.getResponse().getContentAsString().split("\n");
+
+			Assert.assertEquals(lines.length, appointmentRepository.count());
+
+			for (String line : lines) {
+				Assert.assertNotNull(mapper.readValue(line, Appointment.class).getId());
+			}
 		} finally {
 
 			for (Appointment appointment : appointments) {
@@ -276,6 +561,88 @@ public class IntegrationTests extends AbstractTest {
 		}
 	}
 
+	/**
+	 * Tests the next week is answered with a 304 while no appointment is
+	 * written, and in full once one is rated
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void getNextWeekAppointmentsNotModifiedTest() throws Exception {
+
+		List<Appointment> appointments = createAppointments();
+
+		try {
+			MvcResult result = mockMvc.perform(get(APPOINTMENT_URL + "next-week").accept(MediaType.APPLICATION_JSON))
+					.andExpect(status().isOk()).andReturn();
+
+			final String etag = result.getResponse().getHeader(HttpHeaders.ETAG);
+			Assert.assertNotNull(etag);
+
+			mockMvc.perform(get(APPOINTMENT_URL + "next-week").header(HttpHeaders.IF_NONE_MATCH, etag)
+					.accept(MediaType.APPLICATION_JSON)).andExpect(status().isNotModified()).andDo(print());
+
+			final Appointment rated = appointments.get(0);
+			final String json = "{\"appointmentId\":\"" + rated.getId() + "\",\"rate\":\"8\"}";
+
+			mockMvc.perform(put(PATIENTS_URL + rated.getPatientId() + "/rate").contentType(MediaType.APPLICATION_JSON)
+					.content(json).accept(MediaType.APPLICATION_JSON)).andExpect(status().isOk());
+
+			result = mockMvc.perform(get(APPOINTMENT_URL + "next-week").header(HttpHeaders.IF_NONE_MATCH, etag)
+					.accept(MediaType.APPLICATION_JSON)).andExpect(status().isOk()).andReturn();
+
+			Assert.assertNotEquals(etag, result.getResponse().getHeader(HttpHeaders.ETAG));
+		} finally {
+
+			for (Appointment appointment : appointments) {
+				appointmentRepository.delete(appointment.getId());
+				patientRepository.delete(appointment.getPatientId());
+			}
+
+		}
+	}
+
+	/**
+	 * Tests the next week is negotiated as Smile and CBOR, with the same
+	 * date handling as JSON
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void getNextWeekAppointmentsBinaryTest() throws Exception {
+
+		List<Appointment> appointments = createAppointments();
+
+		try {
+			final MediaType[] mediaTypes = { JacksonBinaryHttpMessageConverter.APPLICATION_SMILE,
+					JacksonBinaryHttpMessageConverter.APPLICATION_CBOR };
+			final ObjectMapper[] mappers = { new ObjectMapper(new SmileFactory()), new ObjectMapper(new CBORFactory()) };
+
+			for (int i = 0; i < mediaTypes.length; i++) {
+
+				MvcResult result = mockMvc.perform(get(APPOINTMENT_URL + "next-week").accept(mediaTypes[i]))
+						.andExpect(status().isOk()).andReturn();
+
+				Assert.assertTrue(mediaTypes[i].isCompatibleWith(MediaType.valueOf(result.getResponse().getContentType())));
+
+				mappers[i].registerModule(new JavaTimeModule());
+				List<Appointment> appointmentsResponse = mappers[i].readValue(
+						result.getResponse().getContentAsByteArray(), new TypeReference<List<Appointment>>() {
+						});
+
+				Assert.assertEquals(5, appointmentsResponse.size());
+				Assert.assertNotNull(appointmentsResponse.get(0).getStart());
+			}
+		} finally {
+
+			for (Appointment appointment : appointments) {
+				appointmentRepository.delete(appointment.getId());
+				patientRepository.delete(appointment.getPatientId());
+			}
+
+		}
+	}
+
 	/**
 	 * as a patient I want to see my next appointment
 	 * 
@@ -351,6 +718,207 @@ public class IntegrationTests extends AbstractTest {
 		}
 	}
 
+	/**
+	 * Tests rating an appointment of another patient is refused
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void rateAnotherPatientAppointmentTest() throws Exception {
+
+		final String patientId = createPatient("John", "Stott");
+		final String otherPatientId = createPatient("Mary", "Stott");
+		List<Appointment> appointments = createAppointmentsForPatient(otherPatientId);
+
+		final String json = "{\"appointmentId\":\"" + appointments.get(0).getId() + "\",\"rate\":\"8\"}";
+
+		try {
+			mockMvc.perform(put(PATIENTS_URL + patientId + "/rate").contentType(MediaType.APPLICATION_JSON)
+					.content(json).accept(MediaType.APPLICATION_JSON)).andExpect(status().isNotFound())
+					.andDo(print());
+
+			Assert.assertNull(appointmentRepository.findOne(appointments.get(0).getId()).getRate());
+		} finally {
+
+			for (Appointment appointment : appointments) {
+				appointmentRepository.delete(appointment.getId());
+			}
+			patientRepository.delete(patientId);
+			patientRepository.delete(otherPatientId);
+
+		}
+	}
+
+	/**
+	 * Tests the rating statistics of a patient follow a rate and a re-rate
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void patientRatingsTest() throws Exception {
+
+		final String patientId = createPatient("John", "Stott");
+		List<Appointment> appointments = createAppointmentsForPatient(patientId);
+
+		try {
+			mockMvc.perform(put(PATIENTS_URL + patientId + "/rate").contentType(MediaType.APPLICATION_JSON)
+					.content("{\"rate\":\"8\"}").accept(MediaType.APPLICATION_JSON)).andExpect(status().isOk());
+
+			JsonNode ratings = getPatientRatings(patientId);
+
+			Assert.assertEquals(1, ratings.get("count").asLong());
+			Assert.assertEquals(8.0, ratings.get("mean").asDouble(), 0.0001);
+			Assert.assertEquals(1, ratings.get("histogram").get(8).asLong());
+
+			// re-rating moves the appointment to the new rate
+			mockMvc.perform(put(PATIENTS_URL + patientId + "/rate").contentType(MediaType.APPLICATION_JSON)
+					.content("{\"rate\":\"4\"}").accept(MediaType.APPLICATION_JSON)).andExpect(status().isOk());
+
+			ratings = getPatientRatings(patientId);
+
+			Assert.assertEquals(1, ratings.get("count").asLong());
+			Assert.assertEquals(4.0, ratings.get("mean").asDouble(), 0.0001);
+			Assert.assertEquals(0, ratings.get("histogram").get(8).asLong());
+			Assert.assertEquals(1, ratings.get("histogram").get(4).asLong());
+		} finally {
+
+			for (Appointment appointment : appointments) {
+				appointmentRepository.delete(appointment.getId());
+			}
+			patientRepository.delete(patientId);
+
+		}
+	}
+
+	/**
+	 * Tests the empty rating statistics are rebuilt at startup, an expired
+	 * rebuild lock being taken over and released
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void ratingStatisticsRebuildTest() throws Exception {
+
+		final String patientId = createPatient("Mary", "Stott");
+		List<Appointment> appointments = createAppointmentsForPatient(patientId);
+
+		try {
+			mockMvc.perform(put(PATIENTS_URL + patientId + "/rate").contentType(MediaType.APPLICATION_JSON)
+					.content("{\"rate\":\"6\"}").accept(MediaType.APPLICATION_JSON)).andExpect(status().isOk());
+
+			// left over by an instance that died while rebuilding
+			mongoTemplate.dropCollection(RatingStats.class);
+			mongoTemplate.getCollection("migrations").remove(new BasicDBObject("_id", "ratingStatsRebuild"));
+			mongoTemplate.getCollection("locks").insert(new BasicDBObject("_id", "ratingStats.rebuild")
+					.append("owner", "gone").append("expiresAt", new Date(0)));
+
+			ratingStatistics.init();
+
+			final JsonNode ratings = getPatientRatings(patientId);
+
+			Assert.assertEquals(1, ratings.get("count").asLong());
+			Assert.assertEquals(1, ratings.get("histogram").get(6).asLong());
+			Assert.assertEquals(0, mongoTemplate.getCollection("locks").count());
+			Assert.assertFalse(mongoTemplate.collectionExists("ratingStatsRebuild"));
+			Assert.assertEquals(1, mongoTemplate.getCollection("migrations")
+					.count(new BasicDBObject("_id", "ratingStatsRebuild")));
+
+			// once rebuilt, emptied counters are not rebuilt again
+			mongoTemplate.dropCollection(RatingStats.class);
+			ratingStatistics.init();
+			Assert.assertEquals(0, mongoTemplate.getCollection(mongoTemplate.getCollectionName(RatingStats.class))
+					.count());
+			ratingStatistics.rebuild();
+		} finally {
+
+			for (Appointment appointment : appointments) {
+				appointmentRepository.delete(appointment.getId());
+			}
+			patientRepository.delete(patientId);
+
+		}
+	}
+
+	/**
+	 * Tests the archived appointments are paged by start desc, id desc and
+	 * streamed by start, id through their start entries
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void archivePageAndStreamTest() throws Exception {
+
+		final String patientId = createPatient("Archie", "Stott");
+		final LocalDateTime start = LocalDateTime.now().minusDays(800).withNano(0);
+		final List<Appointment> appointments = new ArrayList<>();
+
+		ReflectionTestUtils.setField(appointmentArchive, "enabled", true);
+
+		try {
+			// two sharing their start, and two months apart
+			appointments.add(createAppointmentForPatientId(patientId, start, start.plusHours(1)));
+			appointments.add(createAppointmentForPatientId(patientId, start, start.plusHours(1)));
+			appointments.add(createAppointmentForPatientId(patientId, start.plusDays(40),
+					start.plusDays(40).plusHours(1)));
+			appointments.add(createAppointmentForPatientId(patientId, start.plusDays(80),
+					start.plusDays(80).plusHours(1)));
+			appointmentRepository.save(appointments);
+
+			appointmentArchive.init();
+
+			final AppointmentArchiveJob job = new AppointmentArchiveJob();
+			applicationContext.getAutowireCapableBeanFactory().autowireBean(job);
+			ReflectionTestUtils.setField(job, "batchSize", 1000);
+			ReflectionTestUtils.setField(job, "lockSeconds", 600L);
+
+			// another instance archiving
+			mongoTemplate.getCollection("locks").insert(new BasicDBObject("_id", "appointmentArchive.job")
+					.append("owner", "other").append("expiresAt", new Date(System.currentTimeMillis() + 60000)));
+			Assert.assertEquals(0, job.archiveBefore(appointmentArchive.getHorizon()));
+			mongoTemplate.getCollection("locks").remove(new BasicDBObject("_id", "appointmentArchive.job"));
+
+			Assert.assertEquals(4, job.archiveBefore(appointmentArchive.getHorizon()));
+			Assert.assertEquals(0, mongoTemplate.getCollection("locks").count());
+
+			final List<String> ascending = appointments.stream()
+					.sorted(Comparator.comparing(Appointment::getStart)
+							.thenComparing(appointment -> new ObjectId(appointment.getId())))
+					.map(Appointment::getId).collect(Collectors.toList());
+
+			final List<Appointment> first = appointmentArchive.findPageAfter(null, null, 3);
+			final Appointment last = first.get(first.size() - 1);
+			final List<Appointment> second = appointmentArchive.findPageAfter(last.getStart(),
+					new ObjectId(last.getId()), 3);
+
+			final List<String> descending = new ArrayList<>(ascending);
+			Collections.reverse(descending);
+
+			Assert.assertEquals(descending.subList(0, 3),
+					first.stream().map(Appointment::getId).collect(Collectors.toList()));
+			Assert.assertEquals(descending.subList(3, 4),
+					second.stream().map(Appointment::getId).collect(Collectors.toList()));
+
+			try (Stream<Appointment> archived = appointmentArchive.streamAll()) {
+				Assert.assertEquals(ascending, archived.map(Appointment::getId).collect(Collectors.toList()));
+			}
+		} finally {
+			ReflectionTestUtils.setField(appointmentArchive, "enabled", false);
+			mongoTemplate.dropCollection(AppointmentArchive.COLLECTION);
+			mongoTemplate.dropCollection(AppointmentArchive.STARTS_COLLECTION);
+			appointments.stream().filter(appointment -> appointment.getId() != null)
+					.forEach(appointment -> appointmentRepository.delete(appointment.getId()));
+			patientRepository.delete(patientId);
+		}
+	}
+
+	private JsonNode getPatientRatings(final String patientId) throws Exception {
+
+		MvcResult result = mockMvc.perform(get(PATIENTS_URL + patientId + "/ratings").accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk()).andDo(print()).andReturn();
+
+		return mapper.readTree(result.getResponse().getContentAsString());
+	}
+
 	/**
 	 * Tests an invalid rate not between 0 and 10
 	 * 
@@ -363,4 +931,52 @@ public class IntegrationTests extends AbstractTest {
 				.accept(MediaType.APPLICATION_JSON)).andExpect(status().isBadRequest()).andDo(print());
 	}
 
+	/**
+	 * Tests the patient search by prefix, case and accent insensitive
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void searchPatientsTest() throws Exception {
+
+		final String zoltan = createPatient("Zoltan", "Quennell");
+		final String zoe = createPatient("Zoë", "Quenby");
+
+		try {
+			Assert.assertEquals(2, searchPatients("quen").size());
+			Assert.assertEquals(1, searchPatients("QUENB").size());
+			Assert.assertEquals(zoe, searchPatients("zoe q").get(0).get("id").asText());
+			Assert.assertEquals(zoltan, searchPatients("quennell zol").get(0).get("id").asText());
+			Assert.assertEquals(1, searchPatients("zo qu&limit=1").size());
+
+		} finally {
+			patientRepository.delete(zoltan);
+			patientRepository.delete(zoe);
+		}
+	}
+
+	private JsonNode searchPatients(final String query) throws Exception {
+
+		final MvcResult result = mockMvc
+				.perform(get(PATIENTS_URL + "search?q=" + query).accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk()).andDo(print()).andReturn();
+
+		return mapper.readTree(result.getResponse().getContentAsString());
+	}
+
+	/**
+	 * Tests the appointment indexes are created at startup and every
+	 * repository query is resolved through an index scan
+	 */
+	@Test
+	public void appointmentIndexesTest() {
+
+		final Set<String> indexNames = mongoTemplate.indexOps(Appointment.class).getIndexInfo().stream()
+				.map(IndexInfo::getName).collect(Collectors.toSet());
+
+		Assert.assertTrue(indexNames.contains(AppointmentIndexManager.START_ID_INDEX));
+		Assert.assertTrue(indexNames.contains(AppointmentIndexManager.PATIENT_START_INDEX));
+		Assert.assertTrue(appointmentIndexManager.findCollscans().isEmpty());
+	}
+
 }
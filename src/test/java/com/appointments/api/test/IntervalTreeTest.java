@@ -0,0 +1,69 @@
+package com.appointments.api.test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.appointments.api.timeline.IntervalTree;
+
+public class IntervalTreeTest {
+
+	private static final LocalDateTime ORIGIN = LocalDateTime.of(2017, 2, 13, 8, 0);
+
+	/**
+	 * Tests touching intervals don't overlap
+	 */
+	@Test
+	public void touchingIntervalsTest() {
+
+		final IntervalTree<String> tree = new IntervalTree<>();
+		tree.put(ORIGIN, ORIGIN.plusHours(1), "a", "a");
+
+		Assert.assertNull(tree.findOverlap(ORIGIN.plusHours(1), ORIGIN.plusHours(2)));
+		Assert.assertNull(tree.findOverlap(ORIGIN.minusHours(1), ORIGIN));
+		Assert.assertEquals("a", tree.findOverlap(ORIGIN.plusMinutes(59), ORIGIN.plusHours(2)));
+		Assert.assertEquals("a", tree.findOverlap(ORIGIN.plusMinutes(10), ORIGIN.plusMinutes(20)));
+	}
+
+	/**
+	 * Tests the overlap lookups against a linear scan
+	 */
+	@Test
+	public void randomIntervalsTest() {
+
+		final Random random = new Random(42);
+		final IntervalTree<Integer> tree = new IntervalTree<>();
+		final List<LocalDateTime[]> intervals = new ArrayList<>();
+
+		for (int i = 0; i < 500; i++) {
+			final LocalDateTime start = ORIGIN.plusMinutes(random.nextInt(100000));
+			final LocalDateTime end = start.plusMinutes(1 + random.nextInt(600));
+			tree.put(start, end, String.valueOf(i), i);
+			intervals.add(new LocalDateTime[] { start, end });
+		}
+
+		Assert.assertEquals(500, tree.size());
+
+		for (int i = 0; i < 2000; i++) {
+			final LocalDateTime start = ORIGIN.plusMinutes(random.nextInt(100000));
+			final LocalDateTime end = start.plusMinutes(1 + random.nextInt(120));
+
+			boolean expected = false;
+			for (LocalDateTime[] interval : intervals) {
+				expected |= interval[0].isBefore(end) && start.isBefore(interval[1]);
+			}
+
+			final Integer found = tree.findOverlap(start, end);
+
+			Assert.assertEquals(expected, found != null);
+			if (found != null) {
+				Assert.assertTrue(intervals.get(found)[0].isBefore(end) && start.isBefore(intervals.get(found)[1]));
+			}
+		}
+	}
+
+}
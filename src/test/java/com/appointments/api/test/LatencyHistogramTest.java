@@ -0,0 +1,63 @@
+package com.appointments.api.test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.appointments.api.metrics.LatencyHistogram;
+
+public class LatencyHistogramTest {
+
+	/**
+	 * Tests small latencies are recorded exactly
+	 */
+	@Test
+	public void exactLatenciesTest() {
+
+		final LatencyHistogram histogram = new LatencyHistogram("test");
+
+		for (int micros = 1; micros <= 10; micros++) {
+			histogram.record(micros, TimeUnit.MICROSECONDS);
+		}
+
+		Assert.assertEquals(10, histogram.getCount());
+		Assert.assertEquals(5.5, histogram.getMean(), 0.0001);
+		Assert.assertEquals(5, histogram.getPercentile(50));
+		Assert.assertEquals(10, histogram.getPercentile(99));
+		Assert.assertEquals(10, histogram.getMax());
+	}
+
+	/**
+	 * Tests the percentiles against the sorted latencies, within the precision
+	 * of the buckets
+	 */
+	@Test
+	public void percentilesPrecisionTest() {
+
+		final Random random = new Random(42);
+		final LatencyHistogram histogram = new LatencyHistogram("test");
+		final long[] latencies = new long[100000];
+
+		for (int i = 0; i < latencies.length; i++) {
+			latencies[i] = (long) Math.exp(random.nextDouble() * 20);
+			histogram.record(latencies[i], TimeUnit.MICROSECONDS);
+		}
+
+		Arrays.sort(latencies);
+
+		for (double percentile : new double[] { 50, 90, 95, 99, 99.9 }) {
+
+			final long expected = latencies[(int) Math.ceil(percentile / 100 * latencies.length) - 1];
+			final long actual = histogram.getPercentile(percentile);
+
+			Assert.assertTrue(percentile + ": " + actual + " < " + expected, actual >= expected);
+			Assert.assertTrue(percentile + ": " + actual + " > " + expected, actual <= expected * 1.04 + 1);
+		}
+
+		Assert.assertEquals(latencies[latencies.length - 1], histogram.getMax());
+	}
+
+}
@@ -0,0 +1,96 @@
+package com.appointments.api.test;
+
+import java.time.LocalDateTime;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.appointments.api.entities.Appointment;
+import com.appointments.api.timeline.PatientTimeline;
+
+public class PatientTimelineTest {
+
+	private static final LocalDateTime NOW = LocalDateTime.of(2017, 2, 15, 12, 0);
+
+	/**
+	 * Tests next and last lookups around now
+	 */
+	@Test
+	public void nextAndLastTest() {
+
+		final PatientTimeline timeline = new PatientTimeline(null);
+
+		timeline.put(appointment("a", NOW.minusDays(2)));
+		timeline.put(appointment("b", NOW.minusDays(1)));
+		timeline.put(appointment("c", NOW));
+		timeline.put(appointment("d", NOW.plusDays(1)));
+		timeline.put(appointment("e", NOW.plusDays(2)));
+
+		Assert.assertEquals("d", timeline.next(NOW).getId());
+		Assert.assertEquals("b", timeline.last(NOW).getId());
+		Assert.assertNull(timeline.next(NOW.plusDays(2)));
+		Assert.assertNull(timeline.last(NOW.minusDays(2)));
+	}
+
+	/**
+	 * Tests a rated appointment replaces its previous version
+	 */
+	@Test
+	public void replaceTest() {
+
+		final PatientTimeline timeline = new PatientTimeline(null);
+
+		timeline.put(appointment("a", NOW.minusDays(1)));
+
+		final Appointment rated = appointment("a", NOW.minusDays(1));
+		rated.setRate(8);
+		timeline.put(rated);
+
+		Assert.assertEquals(1, timeline.size());
+		Assert.assertEquals(Integer.valueOf(8), timeline.last(NOW).getRate());
+	}
+
+	/**
+	 * Tests appointments before the resident horizon are ignored
+	 */
+	@Test
+	public void horizonTest() {
+
+		final PatientTimeline timeline = new PatientTimeline(NOW.minusDays(1));
+
+		timeline.put(appointment("a", NOW.minusDays(2)));
+
+		Assert.assertEquals(0, timeline.size());
+		Assert.assertNull(timeline.last(NOW));
+		Assert.assertFalse(timeline.isComplete());
+	}
+
+	/**
+	 * Tests a timeline stops answering the conflict checks once older than
+	 * the maximum age
+	 */
+	@Test
+	public void loadedWithinTest() throws InterruptedException {
+
+		final PatientTimeline timeline = new PatientTimeline(null);
+
+		Assert.assertTrue(timeline.isLoadedWithin(60000));
+
+		Thread.sleep(5);
+
+		Assert.assertFalse(timeline.isLoadedWithin(1));
+		Assert.assertFalse(timeline.isLoadedWithin(0));
+	}
+
+	private static Appointment appointment(final String id, final LocalDateTime start) {
+
+		final Appointment appointment = new Appointment();
+		appointment.setId(id);
+		appointment.setPatientId("patient");
+		appointment.setStart(start);
+		appointment.setEnd(start.plusHours(1));
+
+		return appointment;
+	}
+
+}
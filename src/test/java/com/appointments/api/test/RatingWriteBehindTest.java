@@ -0,0 +1,122 @@
+package com.appointments.api.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.appointments.api.ratings.RatingWriteBehind;
+import com.appointments.api.ratings.RatingWriteBehind.PendingRating;
+
+public class RatingWriteBehindTest {
+
+	/**
+	 * Tests the ratings of the same appointment are coalesced and the queue is
+	 * bounded by its capacity
+	 */
+	@Test
+	public void coalesceAndCapacityTest() {
+
+		final RatingWriteBehind writeBehind = writeBehind(2);
+
+		Assert.assertTrue(writeBehind.offer("a", "p", 1));
+		Assert.assertTrue(writeBehind.offer("a", "p", 2));
+		Assert.assertTrue(writeBehind.offer("b", "p", 3));
+		Assert.assertFalse(writeBehind.offer("c", "p", 4));
+
+		// a pending appointment is still accepted when full
+		Assert.assertTrue(writeBehind.offer("b", "p", 5));
+
+		Assert.assertEquals(2, writeBehind.getDepth());
+		Assert.assertEquals(4, writeBehind.getQueued());
+		Assert.assertEquals(2, writeBehind.getCoalesced());
+		Assert.assertEquals(1, writeBehind.getRejected());
+	}
+
+	/**
+	 * Tests the pending ratings are written on stop, the latest of each
+	 * appointment only
+	 */
+	@Test
+	public void flushOnStopTest() {
+
+		final RatingWriteBehind writeBehind = writeBehind(10);
+		final List<PendingRating> written = new ArrayList<>();
+		writeBehind.setWriter(written::addAll);
+
+		writeBehind.start();
+		writeBehind.offer("a", "p", 1);
+		writeBehind.offer("a", "p", 4);
+		writeBehind.stop();
+
+		Assert.assertFalse(writeBehind.isRunning());
+		Assert.assertEquals(0, writeBehind.getDepth());
+		Assert.assertEquals(1, written.size());
+		Assert.assertEquals(Integer.valueOf(4), written.get(0).getRate());
+	}
+
+	/**
+	 * Tests the queue rejects the ratings while stopping, and keeps running
+	 * until its last flush is done
+	 */
+	@Test
+	public void closeOnStopTest() {
+
+		final RatingWriteBehind writeBehind = writeBehind(10);
+		final List<Boolean> offeredDuringFlush = new ArrayList<>();
+		final List<Boolean> runningDuringFlush = new ArrayList<>();
+
+		writeBehind.setWriter(ratings -> {
+			offeredDuringFlush.add(writeBehind.offer("b", "p", 2));
+			runningDuringFlush.add(writeBehind.isRunning());
+		});
+
+		writeBehind.start();
+		writeBehind.offer("a", "p", 1);
+		writeBehind.stop();
+
+		Assert.assertEquals(Arrays.asList(false), offeredDuringFlush);
+		Assert.assertEquals(Arrays.asList(true), runningDuringFlush);
+		Assert.assertFalse(writeBehind.isRunning());
+		Assert.assertEquals(0, writeBehind.getDepth());
+		Assert.assertEquals(1, writeBehind.getRejected());
+
+		// started again, the ratings are accepted
+		writeBehind.start();
+		Assert.assertTrue(writeBehind.offer("c", "p", 3));
+		writeBehind.stop();
+	}
+
+	/**
+	 * Tests a failed batch is queued again
+	 */
+	@Test
+	public void failedFlushTest() {
+
+		final RatingWriteBehind writeBehind = writeBehind(10);
+		writeBehind.setWriter(ratings -> {
+			throw new IllegalStateException("down");
+		});
+
+		writeBehind.start();
+		writeBehind.offer("a", "p", 1);
+		writeBehind.stop();
+
+		Assert.assertEquals(1, writeBehind.getDepth());
+		Assert.assertTrue(writeBehind.getFailures() > 0);
+		Assert.assertEquals(0, writeBehind.getFlushed());
+	}
+
+	private static RatingWriteBehind writeBehind(final int capacity) {
+
+		final RatingWriteBehind writeBehind = new RatingWriteBehind();
+		ReflectionTestUtils.setField(writeBehind, "capacity", capacity);
+		ReflectionTestUtils.setField(writeBehind, "flushIntervalMillis", 60000L);
+		ReflectionTestUtils.setField(writeBehind, "batchSize", 1000);
+		return writeBehind;
+	}
+
+}